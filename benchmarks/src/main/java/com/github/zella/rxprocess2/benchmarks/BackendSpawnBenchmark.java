@@ -0,0 +1,85 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import com.github.zella.rxprocess2.IReactiveProcessBuilder;
+import com.github.zella.rxprocess2.common.VirtualThreads;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Concurrent short-lived processes on java.lang, java.lang with virtual threads and NuProcess backends.
+ * <p>
+ * Every op runs {@code concurrency} {@code echo} processes at once and collects stdout. {@code peakThreads}
+ * counter reports peak number of platform threads, allocation per op:
+ * <p>
+ * {@code sbt "benchmarks/jmh:run -prof gc BackendSpawnBenchmark"}
+ * <p>
+ * {@code virtual} backend requires JDK 21+.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BackendSpawnBenchmark {
+
+    @Param({Backends.JAVALANG, Backends.VIRTUAL, Backends.NUPROCESS, Backends.NUPROCESS_NON_BLOCKING})
+    public String backend;
+
+    @Param({"1", "256"})
+    public int concurrency;
+
+    private Supplier<IReactiveProcessBuilder<?>> builder;
+
+    private Scheduler waitScheduler;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Threads {
+        private static final ThreadMXBean MX = ManagementFactory.getThreadMXBean();
+
+        public long peakThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            MX.resetPeakThreadCount();
+            peakThreads = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        waitScheduler = Backends.VIRTUAL.equals(backend) ? VirtualThreads.scheduler() : Schedulers.io();
+        builder = () -> Backends.builder(backend, "echo", "hello");
+    }
+
+    @Benchmark
+    public long spawn(Threads threads) {
+        long bytes = Flowable.range(0, concurrency)
+                .flatMapSingle(i -> builder.get().asStdOutSingle().subscribeOn(waitScheduler), false, concurrency)
+                .map(b -> (long) b.length)
+                .reduce(0L, Long::sum)
+                .blockingGet();
+        threads.peakThreads = Math.max(threads.peakThreads, Threads.MX.getPeakThreadCount());
+        return bytes;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import com.github.zella.rxprocess2.IReactiveProcessBuilder;
+import com.github.zella.rxprocess2.RxProcess;
+import com.github.zella.rxprocess2.spawn.SpawnServer;
+import com.zaxxer.nuprocess.NuProcessBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Backend names used as benchmark {@code @Param} values
+ */
+final class Backends {
+
+    static final String JAVALANG = "javalang";
+    static final String VIRTUAL = "virtual";
+    static final String NUPROCESS = "nuprocess";
+    static final String NUPROCESS_NON_BLOCKING = "nuprocessNonBlocking";
+    static final String SPAWN_SERVER = "spawnServer";
+
+    private Backends() {
+    }
+
+    static IReactiveProcessBuilder<?> builder(String backend, String... command) {
+        switch (backend) {
+            case JAVALANG:
+                return RxProcess.reactive(new ProcessBuilder(command));
+            case VIRTUAL:
+                return RxProcess.reactiveVirtual(new ProcessBuilder(command));
+            case NUPROCESS:
+                return RxProcess.reactive(new NuProcessBuilder(command));
+            case NUPROCESS_NON_BLOCKING:
+                return RxProcess.reactiveNonBlocking(new NuProcessBuilder(command));
+            case SPAWN_SERVER:
+                try {
+                    return RxProcess.reactive(new ProcessBuilder(command), SpawnServer.shared());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+    /**
+     * @return temp file of random bytes, deleted on exit
+     */
+    static Path randomFile(long size) throws IOException {
+        Path file = Files.createTempFile("rxprocess2-bench", ".bin");
+        file.toFile().deleteOnExit();
+        byte[] block = new byte[64 * 1024];
+        new Random(42).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += block.length) {
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        return file;
+    }
+}
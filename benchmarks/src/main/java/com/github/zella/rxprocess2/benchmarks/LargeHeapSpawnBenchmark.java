@@ -0,0 +1,69 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spawn-to-exit latency of {@code /bin/true} from JVM with large touched heap, direct spawn vs spawn server.
+ * {@code concurrent} processes are spawned at once, as under load.
+ * <p>
+ * {@code sbt "benchmarks/jmh:run LargeHeapSpawnBenchmark"}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class LargeHeapSpawnBenchmark {
+
+    @Param({Backends.JAVALANG, Backends.SPAWN_SERVER})
+    public String backend;
+
+    @Param({"0", "4096"})
+    public int heapMegabytes;
+
+    @Param({"1", "16"})
+    public int concurrent;
+
+    private byte[][] ballast;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ballast = new byte[heapMegabytes][];
+        for (int i = 0; i < heapMegabytes; i++) {
+            ballast[i] = new byte[1024 * 1024];
+            //touch pages, so they are mapped in child page tables too
+            for (int j = 0; j < ballast[i].length; j += 4096)
+                ballast[i][j] = 1;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ballast = null;
+    }
+
+    @Benchmark
+    public long asWaitDone() {
+        return Flowable.range(0, concurrent)
+                .flatMapSingle(i -> Backends.builder(backend, "/bin/true").asWaitDone().subscribeOn(Schedulers.io()))
+                .count()
+                .blockingGet();
+    }
+}
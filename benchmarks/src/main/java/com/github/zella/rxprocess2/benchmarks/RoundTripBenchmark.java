@@ -0,0 +1,79 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import com.github.zella.rxprocess2.IReactiveProcess;
+import io.reactivex.disposables.Disposable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stdin-to-stdout round-trip latency through long running {@code cat} in {@code biDirectional} mode.
+ * <p>
+ * {@code sbt "benchmarks/jmh:run -prof gc RoundTripBenchmark"}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    @Param({Backends.JAVALANG, Backends.NUPROCESS, Backends.NUPROCESS_NON_BLOCKING})
+    public String backend;
+
+    @Param({"64", "65536"})
+    public int messageSize;
+
+    private IReactiveProcess<?> process;
+
+    private Disposable done;
+
+    private Disposable stdout;
+
+    private final LinkedBlockingQueue<Integer> received = new LinkedBlockingQueue<>();
+
+    private byte[] message;
+
+    @Setup
+    public void setup() {
+        message = new byte[messageSize];
+        process = Backends.builder(backend, "cat").biDirectional();
+        stdout = process.stdOut().subscribe(b -> received.add(b.length));
+        done = process.waitDone().subscribeOn(io.reactivex.schedulers.Schedulers.io()).subscribe();
+        process.started().blockingGet();
+    }
+
+    @Benchmark
+    public int roundTrip() throws InterruptedException, TimeoutException {
+        process.stdIn().onNext(message);
+        int left = messageSize;
+        while (left > 0) {
+            Integer chunk = received.poll(5, TimeUnit.SECONDS);
+            if (chunk == null)
+                throw new TimeoutException("No echo from process");
+            left -= chunk;
+        }
+        return left;
+    }
+
+    @TearDown
+    public void tearDown() {
+        stdout.dispose();
+        process.stdIn().onComplete();
+        done.dispose();
+    }
+}
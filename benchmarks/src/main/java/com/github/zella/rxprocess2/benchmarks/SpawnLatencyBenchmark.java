@@ -0,0 +1,36 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spawn-to-exit latency of {@code /bin/true}, single process at time.
+ * <p>
+ * {@code sbt "benchmarks/jmh:run -prof gc SpawnLatencyBenchmark"}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpawnLatencyBenchmark {
+
+    @Param({Backends.JAVALANG, Backends.NUPROCESS, Backends.NUPROCESS_NON_BLOCKING, Backends.SPAWN_SERVER})
+    public String backend;
+
+    @Benchmark
+    public int asWaitDone() {
+        return Backends.builder(backend, "/bin/true").asWaitDone().blockingGet().statusCode;
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import com.github.zella.rxprocess2.common.ArrayUtils;
+import com.github.zella.rxprocess2.common.ByteRingBuffer;
+import com.github.zella.rxprocess2.common.CircularFifoQueue;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stderr tail capture: {@link ByteRingBuffer} vs boxed {@link CircularFifoQueue}.
+ * <p>
+ * Every op appends one stderr chunk, every {@code chunksPerExit} op also copies tail out, as it happens on process exit.
+ * {@code bytes} counter reports bytes/sec. Allocation rate:
+ * <p>
+ * {@code sbt "benchmarks/jmh:run -prof gc StderrBufferBenchmark"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StderrBufferBenchmark {
+
+    @Param({"4096"})
+    public int capacity;
+
+    @Param({"64", "8192"})
+    public int chunkSize;
+
+    @Param({"64"})
+    public int chunksPerExit;
+
+    private byte[] chunk;
+
+    private ByteRingBuffer ringBuffer;
+
+    private Collection<Byte> queue;
+
+    private int writes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        chunk = new byte[chunkSize];
+        new Random(42).nextBytes(chunk);
+        ringBuffer = new ByteRingBuffer(capacity);
+        queue = new CircularFifoQueue<>(capacity);
+    }
+
+    @Benchmark
+    public byte[] ringBuffer(Bytes counter) {
+        ringBuffer.write(chunk);
+        counter.bytes += chunk.length;
+        if (++writes % chunksPerExit == 0)
+            return ringBuffer.toByteArray();
+        return chunk;
+    }
+
+    @Benchmark
+    public byte[] circularFifoQueue(Bytes counter) {
+        for (byte b : chunk) {
+            queue.add(b);
+        }
+        counter.bytes += chunk.length;
+        if (++writes % chunksPerExit == 0)
+            return ArrayUtils.toPrimitive(queue.toArray(new Byte[0]));
+        return chunk;
+    }
+}
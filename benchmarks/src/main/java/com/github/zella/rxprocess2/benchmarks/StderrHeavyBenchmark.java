@@ -0,0 +1,78 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process writing large file to stderr, as verbose tools do. {@code asWaitDone} only keeps stderr tail,
+ * {@code asStdErrOut} delivers every chunk. {@code mb} counter reports MB/s.
+ * <p>
+ * {@code sbt "benchmarks/jmh:run -prof gc StderrHeavyBenchmark"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StderrHeavyBenchmark {
+
+    @Param({Backends.JAVALANG, Backends.NUPROCESS, Backends.NUPROCESS_NON_BLOCKING})
+    public String backend;
+
+    @Param({"16"})
+    public int sizeMb;
+
+    private Path file;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Megabytes {
+        public double mb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            mb = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        file = Backends.randomFile(sizeMb * 1024L * 1024L);
+    }
+
+    @Benchmark
+    public int asWaitDone(Megabytes counter) {
+        int code = Backends.builder(backend, "sh", "-c", "cat \"$0\" 1>&2", file.toString())
+                .asWaitDone().blockingGet().statusCode;
+        counter.mb += sizeMb;
+        return code;
+    }
+
+    @Benchmark
+    public long asStdErrOut(Megabytes counter) {
+        long bytes = Backends.builder(backend, "sh", "-c", "cat \"$0\" 1>&2", file.toString())
+                .asStdErrOut()
+                .filter(c -> c.isStdErr)
+                .map(c -> (long) c.data.length)
+                .reduce(0L, Long::sum)
+                .blockingGet();
+        counter.mb += bytes / (1024.0 * 1024.0);
+        return bytes;
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stdout throughput of {@code cat} of large file, via push (Observable), backpressured (Flowable) and zero copy
+ * buffer apis. {@code mb} counter reports MB/s. Allocation per MB is {@code gc.alloc.rate.norm} divided by
+ * {@code sizeMb}:
+ * <p>
+ * {@code sbt "benchmarks/jmh:run -prof gc StdoutThroughputBenchmark"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StdoutThroughputBenchmark {
+
+    @Param({Backends.JAVALANG, Backends.NUPROCESS, Backends.NUPROCESS_NON_BLOCKING})
+    public String backend;
+
+    @Param({"64"})
+    public int sizeMb;
+
+    private Path file;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Megabytes {
+        public double mb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            mb = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        file = Backends.randomFile(sizeMb * 1024L * 1024L);
+    }
+
+    @Benchmark
+    public long observable(Megabytes counter) {
+        return count(counter, Backends.builder(backend, "cat", file.toString()).asStdOut()
+                .map(b -> (long) b.length)
+                .reduce(0L, Long::sum)
+                .blockingGet());
+    }
+
+    @Benchmark
+    public long flowable(Megabytes counter) {
+        return count(counter, Backends.builder(backend, "cat", file.toString()).asStdOutFlowable()
+                .map(b -> (long) b.length)
+                .reduce(0L, Long::sum)
+                .blockingGet());
+    }
+
+    @Benchmark
+    public long buffers(Megabytes counter) {
+        return count(counter, Backends.builder(backend, "cat", file.toString()).asStdErrOutBuffers()
+                .filter(c -> !c.isStdErr)
+                .map(c -> (long) c.data.remaining())
+                .reduce(0L, Long::sum)
+                .blockingGet());
+    }
+
+    private static long count(Megabytes counter, long bytes) {
+        counter.mb += bytes / (1024.0 * 1024.0);
+        return bytes;
+    }
+}
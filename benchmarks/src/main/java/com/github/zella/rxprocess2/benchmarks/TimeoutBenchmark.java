@@ -0,0 +1,86 @@
+package com.github.zella.rxprocess2.benchmarks;
+
+import com.github.zella.rxprocess2.common.TimeoutWheel;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process deadlines on {@link TimeoutWheel} vs computation scheduler, which was used before.
+ * <p>
+ * {@code scheduleCancel}: overhead of deadline for process, which exits in time, with 10000 other deadlines pending.
+ * {@code fire}: time to fire 20ms deadline, lateness is score minus 20ms. Loop schedules right after previous
+ * deadline fired, in phase with wheel ticks, so wheel shows its worst case: one tick late.
+ * <p>
+ * {@code sbt "benchmarks/jmh:run -prof gc TimeoutBenchmark"}
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeoutBenchmark {
+
+    private static final Runnable NOTHING = () -> {
+    };
+
+    @Param({"wheel", "computation"})
+    public String timer;
+
+    private final List<Disposable> background = new ArrayList<>();
+
+    private Disposable schedule(Runnable task, long delay, TimeUnit timeUnit) {
+        return timer.equals("wheel")
+                ? TimeoutWheel.shared().schedule(task, delay, timeUnit)
+                : Schedulers.computation().scheduleDirect(task, delay, timeUnit);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (int i = 0; i < 10000; i++)
+            background.add(schedule(NOTHING, 1, TimeUnit.HOURS));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        background.forEach(Disposable::dispose);
+        background.clear();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Threads(4)
+    public boolean scheduleCancel() {
+        Disposable deadline = schedule(NOTHING, 30, TimeUnit.SECONDS);
+        deadline.dispose();
+        return deadline.isDisposed();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long fire() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        schedule(fired::countDown, 20, TimeUnit.MILLISECONDS);
+        fired.await();
+        return fired.getCount();
+    }
+}
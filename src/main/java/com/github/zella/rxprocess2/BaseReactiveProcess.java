@@ -1,17 +1,26 @@
 package com.github.zella.rxprocess2;
 
-import com.github.zella.rxprocess2.common.CircularFifoQueue;
+import com.github.zella.rxprocess2.common.ByteRingBuffer;
+import com.github.zella.rxprocess2.common.DemandGate;
+import com.github.zella.rxprocess2.common.LineFramer;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
-import io.reactivex.processors.ReplayProcessor;
+import io.reactivex.processors.MulticastProcessor;
+import io.reactivex.processors.UnicastProcessor;
 import io.reactivex.subjects.AsyncSubject;
 import io.reactivex.subjects.PublishSubject;
 import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
-import java.util.Collection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
 
 import static com.github.zella.rxprocess2.RxProcessConfig.DEFAULT_PROCESS_TIMEOUT_MILLIS;
+import static com.github.zella.rxprocess2.RxProcessConfig.FLOWABLE_BUFFER_CHUNKS;
+import static com.github.zella.rxprocess2.RxProcessConfig.MAX_LINE_LENGTH;
+import static com.github.zella.rxprocess2.RxProcessConfig.PUSH_FLOWABLE_BUFFER_CHUNKS;
 import static com.github.zella.rxprocess2.RxProcessConfig.STDERR_BUFF_SIZE;
 
 public abstract class BaseReactiveProcess<T> implements IReactiveProcess<T> {
@@ -20,9 +29,114 @@ public abstract class BaseReactiveProcess<T> implements IReactiveProcess<T> {
 
     protected final PublishSubject<ProcessChunk> stdoutStdErrSubject = PublishSubject.create();
 
-    protected final Collection<Byte> stderrBuffer = new CircularFifoQueue<>(STDERR_BUFF_SIZE);
+    protected final PublishSubject<ProcessBufferChunk> stdoutStdErrBufferSubject = PublishSubject.create();
 
-    protected final ReplayProcessor<byte[]> stdinProcessor = ReplayProcessor.create();
+    protected final MulticastProcessor<ProcessChunk> stdoutStdErrProcessor;
+
+    protected final ByteRingBuffer stderrBuffer = new ByteRingBuffer(STDERR_BUFF_SIZE);
+
+    /**
+     * Single subscriber (stdin writer), buffers until process started and doesn't retain written data
+     */
+    protected final UnicastProcessor<byte[]> stdinProcessor = UnicastProcessor.create();
+
+    private final DemandGate stdoutStdErrGate = new DemandGate(0);
+
+    private volatile ChunkCoalescing coalescing = null;
+
+    /**
+     * Output is pushed to flowable subscribers without waiting, see {@link #BaseReactiveProcess(boolean)}
+     */
+    protected BaseReactiveProcess() {
+        this(false);
+    }
+
+    /**
+     * @param pausableOutput true if producers can stop reading by waiting for {@link #awaitFlowableDemand()} on own
+     *                       threads, flowable buffers {@code rxprocess2.flowableBufferChunks} then. Otherwise output is
+     *                       pushed, e.g. from NuProcess thread shared with other processes, which must never wait, and
+     *                       flowable buffers {@code rxprocess2.pushFlowableBufferChunks}. Subscriber, which is behind
+     *                       more than that, fails with {@link io.reactivex.exceptions.MissingBackpressureException}
+     */
+    protected BaseReactiveProcess(boolean pausableOutput) {
+        stdoutStdErrProcessor = MulticastProcessor.create(pausableOutput ? FLOWABLE_BUFFER_CHUNKS : PUSH_FLOWABLE_BUFFER_CHUNKS);
+        stdoutStdErrProcessor.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                stdoutStdErrGate.request(n);
+            }
+
+            @Override
+            public void cancel() {
+                stdoutStdErrGate.release();
+            }
+        });
+    }
+
+    /**
+     * Wait until flowable subscribers request more output, pausing read. Call it on producer own thread, before
+     * {@link #emitChunk(ProcessChunk, boolean)} and not under lock, which other producers or completion take
+     *
+     * @return true if chunk can be passed to flowable subscribers
+     */
+    protected boolean awaitFlowableDemand() {
+        return stdoutStdErrProcessor.hasSubscribers()
+                && stdoutStdErrGate.acquire(stdoutStdErrProcessor::hasSubscribers, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publish chunk to subscribers without waiting
+     */
+    protected void emitChunk(ProcessChunk chunk) {
+        emitChunk(chunk, true);
+    }
+
+    /**
+     * Publish chunk to subscribers without waiting
+     *
+     * @param toFlowable result of {@link #awaitFlowableDemand()}
+     */
+    protected void emitChunk(ProcessChunk chunk, boolean toFlowable) {
+        if (stdoutStdErrBufferSubject.hasObservers())
+            stdoutStdErrBufferSubject.onNext(ProcessBufferChunk.wrap(chunk));
+        emitCopiedChunk(chunk, toFlowable);
+    }
+
+    /**
+     * Publish zero copy chunk to subscribers. Chunk copied only if someone subscribed to byte[] api
+     */
+    protected void emitBufferChunk(ProcessBufferChunk chunk) {
+        stdoutStdErrBufferSubject.onNext(chunk);
+        if (stdoutStdErrSubject.hasObservers() || stdoutStdErrProcessor.hasSubscribers())
+            emitCopiedChunk(chunk.toProcessChunk(), true);
+    }
+
+    private void emitCopiedChunk(ProcessChunk chunk, boolean toFlowable) {
+        stdoutStdErrSubject.onNext(chunk);
+        //bounded, overflow fails flowable subscribers instead of waiting
+        if (toFlowable && stdoutStdErrProcessor.hasSubscribers())
+            stdoutStdErrProcessor.onNext(chunk);
+    }
+
+    protected void emitError(Throwable e) {
+        stdoutStdErrBufferSubject.onError(e);
+        stdoutStdErrSubject.onError(e);
+        stdoutStdErrProcessor.onError(e);
+        stdoutStdErrGate.release();
+    }
+
+    protected void emitComplete() {
+        stdoutStdErrBufferSubject.onComplete();
+        stdoutStdErrSubject.onComplete();
+        stdoutStdErrProcessor.onComplete();
+        stdoutStdErrGate.release();
+    }
+
+    @Override
+    public IReactiveProcess<T> withCoalescing(ChunkCoalescing coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
 
     @Override
     public Single<Exit> waitDone() {
@@ -42,11 +156,40 @@ public abstract class BaseReactiveProcess<T> implements IReactiveProcess<T> {
 
     @Override
     public Observable<ProcessChunk> stdOutErr() {
-        return stdoutStdErrSubject;
+        ChunkCoalescing coalescing = this.coalescing;
+        return coalescing == null ? stdoutStdErrSubject : coalescing.apply(stdoutStdErrSubject);
     }
 
     @Override
     public Observable<byte[]> stdOut() {
-        return stdoutStdErrSubject.filter(c -> !c.isStdErr).map(c -> c.data);
+        return stdOutErr().filter(c -> !c.isStdErr).map(c -> c.data);
+    }
+
+    @Override
+    public Observable<String> stdOutLines(Charset charset) {
+        return LineFramer.bufferLines(stdOutErrBuffers().filter(c -> !c.isStdErr).map(c -> c.data),
+                charset, MAX_LINE_LENGTH);
+    }
+
+    @Override
+    public Observable<String> stdOutLines() {
+        return stdOutLines(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Observable<ProcessBufferChunk> stdOutErrBuffers() {
+        ChunkCoalescing coalescing = this.coalescing;
+        return coalescing == null ? stdoutStdErrBufferSubject : coalescing.applyBuffers(stdoutStdErrBufferSubject);
+    }
+
+    @Override
+    public Flowable<ProcessChunk> stdOutErrFlowable() {
+        ChunkCoalescing coalescing = this.coalescing;
+        return coalescing == null ? stdoutStdErrProcessor : coalescing.apply(stdoutStdErrProcessor);
+    }
+
+    @Override
+    public Flowable<byte[]> stdOutFlowable() {
+        return stdOutErrFlowable().filter(c -> !c.isStdErr).map(c -> c.data);
     }
 }
@@ -1,28 +1,125 @@
 package com.github.zella.rxprocess2;
 
+import com.github.zella.rxprocess2.common.ArrayUtils;
+import com.github.zella.rxprocess2.common.LineFramer;
 import com.github.zella.rxprocess2.common.RxUtils;
+import com.github.zella.rxprocess2.metrics.RxProcessMetrics;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
 
 import static com.github.zella.rxprocess2.RxProcessConfig.DEFAULT_PROCESS_TIMEOUT_MILLIS;
+import static com.github.zella.rxprocess2.RxProcessConfig.MAX_LINE_LENGTH;
+import static com.github.zella.rxprocess2.RxProcessConfig.PROCESS_STATS;
+import static com.github.zella.rxprocess2.RxProcessConfig.SPILL_DIRECTORY;
+import static com.github.zella.rxprocess2.RxProcessConfig.SPILL_THRESHOLD;
 
 public abstract class BaseReactiveProcessBuilder<T> implements IReactiveProcessBuilder<T> {
 
     protected byte[] stdin = {};
 
+    protected Flowable<ByteBuffer> stdinSource = null;
+
+    protected RxProcessMetrics metrics = null;
+
+    protected ChunkCoalescing coalescing = null;
+
+    protected boolean processStats = PROCESS_STATS;
+
     @Override
     public IReactiveProcessBuilder<T> withStdin(byte[] data) {
         this.stdin = data;
+        this.stdinSource = null;
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(Flowable<ByteBuffer> source) {
+        this.stdin = ArrayUtils.EMPTY_BYTE_ARRAY;
+        this.stdinSource = source;
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(InputStream is) {
+        return withStdin(RxUtils.bytesFlowable(is).map(ByteBuffer::wrap));
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(Path file) {
+        return withStdin(RxUtils.read(file));
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withMetrics(RxProcessMetrics metrics) {
+        this.metrics = metrics;
         return this;
     }
 
+    @Override
+    public IReactiveProcessBuilder<T> withCoalescing(ChunkCoalescing coalescing) {
+        this.coalescing = coalescing;
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withProcessStats(boolean enabled) {
+        this.processStats = enabled;
+        return this;
+    }
+
+    protected Observable<ProcessChunk> coalesce(Observable<ProcessChunk> chunks) {
+        return coalescing == null ? chunks : coalescing.apply(chunks);
+    }
+
+    protected Observable<ProcessBufferChunk> coalesceBuffers(Observable<ProcessBufferChunk> chunks) {
+        return coalescing == null ? chunks : coalescing.applyBuffers(chunks);
+    }
+
+    protected Flowable<ProcessChunk> coalesce(Flowable<ProcessChunk> chunks) {
+        return coalescing == null ? chunks : coalescing.apply(chunks);
+    }
+
+    /**
+     * @return own metrics listener or global one
+     */
+    protected RxProcessMetrics metrics() {
+        return metrics != null ? metrics : RxProcessMetrics.global();
+    }
+
+    /**
+     * @return stdin to write or null if stdin not set
+     */
+    protected Flowable<ByteBuffer> stdinSource() {
+        if (stdinSource != null)
+            return stdinSource;
+        if (stdin.length > 0)
+            return Flowable.just(ByteBuffer.wrap(stdin));
+        return null;
+    }
+
     @Override
     public Single<Exit> asWaitDone() {
         return asWaitDone(DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    public Single<Exit> asStdOutToFile(Path file) {
+        return asStdOutToFile(file, DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Single<Exit> asStdErrToFile(Path file) {
+        return asStdErrToFile(file, DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public Single<byte[]> asStdOutSingle(long timeout, TimeUnit timeUnit) {
         return RxUtils.collect(asStdErrOut(timeout, timeUnit)
@@ -35,6 +132,24 @@ public abstract class BaseReactiveProcessBuilder<T> implements IReactiveProcessB
         return asStdOutSingle(DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    public Single<byte[]> asStdOutSingle(int expectedSize, long timeout, TimeUnit timeUnit) {
+        return RxUtils.collect(asStdOut(timeout, timeUnit), expectedSize);
+    }
+
+    @Override
+    public Single<CollectedOutput> asStdOutCollected(long expectedSize, long spillThreshold, long timeout, TimeUnit timeUnit) {
+        return RxUtils.accumulate(asStdOut(timeout, timeUnit), expectedSize, spillThreshold, Paths.get(SPILL_DIRECTORY))
+                .map(accumulator -> accumulator.isSpilled()
+                        ? new CollectedOutput(accumulator.file(), accumulator.size())
+                        : new CollectedOutput(accumulator.toByteArray()));
+    }
+
+    @Override
+    public Single<CollectedOutput> asStdOutCollected() {
+        return asStdOutCollected(0, SPILL_THRESHOLD, DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
 
     @Override
     public Observable<ProcessChunk> asStdErrOut() {
@@ -51,5 +166,41 @@ public abstract class BaseReactiveProcessBuilder<T> implements IReactiveProcessB
         return asStdOut(DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    public Observable<String> asStdOutLines(Charset charset, long timeout, TimeUnit timeUnit) {
+        return LineFramer.bufferLines(asStdErrOutBuffers(timeout, timeUnit)
+                .filter(c -> !c.isStdErr)
+                .map(c -> c.data), charset, MAX_LINE_LENGTH);
+    }
+
+    @Override
+    public Observable<String> asStdOutLines(Charset charset) {
+        return asStdOutLines(charset, DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Observable<ProcessBufferChunk> asStdErrOutBuffers(long timeout, TimeUnit timeUnit) {
+        return asStdErrOut(timeout, timeUnit).map(ProcessBufferChunk::wrap);
+    }
+
+    @Override
+    public Observable<ProcessBufferChunk> asStdErrOutBuffers() {
+        return asStdErrOutBuffers(DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Flowable<ProcessChunk> asStdErrOutFlowable() {
+        return asStdErrOutFlowable(DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Flowable<byte[]> asStdOutFlowable(long timeout, TimeUnit timeUnit) {
+        return asStdErrOutFlowable(timeout, timeUnit).filter(c -> !c.isStdErr).map(c -> c.data);
+    }
+
+    @Override
+    public Flowable<byte[]> asStdOutFlowable() {
+        return asStdOutFlowable(DEFAULT_PROCESS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
 }
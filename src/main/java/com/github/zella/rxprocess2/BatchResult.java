@@ -0,0 +1,33 @@
+package com.github.zella.rxprocess2;
+
+import java.util.List;
+
+/**
+ * Result of single invocation of {@link ProcessBatch}
+ */
+public class BatchResult {
+    /**
+     * Inputs passed to this invocation
+     */
+    public final List<String> args;
+    public final Exit exit;
+    /**
+     * Stdout, empty if process failed
+     */
+    public final byte[] stdout;
+
+    public BatchResult(List<String> args, Exit exit, byte[] stdout) {
+        this.args = args;
+        this.exit = exit;
+        this.stdout = stdout;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "args=" + args +
+                ", exit=" + exit +
+                ", stdout=" + stdout.length + " bytes" +
+                '}';
+    }
+}
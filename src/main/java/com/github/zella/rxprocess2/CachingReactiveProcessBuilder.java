@@ -0,0 +1,83 @@
+package com.github.zella.rxprocess2;
+
+import com.github.zella.rxprocess2.common.ArrayUtils;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultCache} decorator, stdout single and exit are cached while stdin is known
+ */
+final class CachingReactiveProcessBuilder<T> extends ForwardingReactiveProcessBuilder<T> {
+
+    private final ResultCache cache;
+
+    private final byte[] keyPrefix;
+
+    //null if stdin is streamed
+    private byte[] stdin = ArrayUtils.EMPTY_BYTE_ARRAY;
+
+    CachingReactiveProcessBuilder(IReactiveProcessBuilder<T> delegate, ResultCache cache, byte[] keyPrefix) {
+        super(delegate);
+        this.cache = cache;
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(byte[] data) {
+        this.stdin = data.clone();
+        return super.withStdin(data);
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(Flowable<ByteBuffer> source) {
+        this.stdin = null;
+        return super.withStdin(source);
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(InputStream is) {
+        this.stdin = null;
+        return super.withStdin(is);
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(Path file) {
+        this.stdin = null;
+        return super.withStdin(file);
+    }
+
+    @Override
+    public Single<Exit> asWaitDone(long timeout, TimeUnit timeUnit) {
+        Single<Exit> execution = super.asWaitDone(timeout, timeUnit);
+        return stdin == null ? execution : cache.exit(keyPrefix, stdin, execution);
+    }
+
+    @Override
+    public Single<Exit> asWaitDone() {
+        Single<Exit> execution = super.asWaitDone();
+        return stdin == null ? execution : cache.exit(keyPrefix, stdin, execution);
+    }
+
+    @Override
+    public Single<byte[]> asStdOutSingle(long timeout, TimeUnit timeUnit) {
+        Single<byte[]> execution = super.asStdOutSingle(timeout, timeUnit);
+        return stdin == null ? execution : cache.stdout(keyPrefix, stdin, execution);
+    }
+
+    @Override
+    public Single<byte[]> asStdOutSingle() {
+        Single<byte[]> execution = super.asStdOutSingle();
+        return stdin == null ? execution : cache.stdout(keyPrefix, stdin, execution);
+    }
+
+    @Override
+    public Single<byte[]> asStdOutSingle(int expectedSize, long timeout, TimeUnit timeUnit) {
+        Single<byte[]> execution = super.asStdOutSingle(expectedSize, timeout, timeUnit);
+        return stdin == null ? execution : cache.stdout(keyPrefix, stdin, execution);
+    }
+}
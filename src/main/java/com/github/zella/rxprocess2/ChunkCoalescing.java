@@ -0,0 +1,71 @@
+package com.github.zella.rxprocess2;
+
+import com.github.zella.rxprocess2.common.ChunkCoalescer;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output chunking mode, see {@link IReactiveProcessBuilder#withCoalescing(ChunkCoalescing)}.
+ * <p>
+ * Adjacent chunks of same stream are merged up to {@code maxBytes}, merged chunk waits at most {@code maxDelay}
+ * (rounded up to {@code rxprocess2.timeoutTickMillis}). Chunks larger than {@code maxBytes} are split.
+ */
+public final class ChunkCoalescing {
+
+    private final int maxBytes;
+
+    private final long maxDelayNanos;
+
+    private ChunkCoalescing(int maxBytes, long maxDelayNanos) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Max bytes must be greater than 0");
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    /**
+     * Merge small chunks and split large ones
+     *
+     * @param maxBytes max chunk size
+     * @param maxDelay max time merged chunk waits for more bytes
+     */
+    public static ChunkCoalescing of(int maxBytes, long maxDelay, TimeUnit timeUnit) {
+        return new ChunkCoalescing(maxBytes, timeUnit.toNanos(maxDelay));
+    }
+
+    /**
+     * Only split large chunks, without delay. Zero copy chunks are sliced
+     *
+     * @param maxBytes max chunk size
+     */
+    public static ChunkCoalescing split(int maxBytes) {
+        return new ChunkCoalescing(maxBytes, 0);
+    }
+
+    public int maxBytes() {
+        return maxBytes;
+    }
+
+    public long maxDelay(TimeUnit timeUnit) {
+        return timeUnit.convert(maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Observable<ProcessChunk> apply(Observable<ProcessChunk> chunks) {
+        return ChunkCoalescer.coalesce(chunks, maxBytes, maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Observable<ProcessBufferChunk> applyBuffers(Observable<ProcessBufferChunk> chunks) {
+        return ChunkCoalescer.coalesceBuffers(chunks, maxBytes, maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Flowable<ProcessChunk> apply(Flowable<ProcessChunk> chunks) {
+        return ChunkCoalescer.coalesce(chunks, maxBytes, maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkCoalescing{maxBytes=" + maxBytes + ", maxDelayNanos=" + maxDelayNanos + '}';
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.zella.rxprocess2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Process output, held in heap or in temp file when it's large. Close it to delete file.
+ *
+ * @see IReactiveProcessBuilder#asStdOutCollected(long, long, long, java.util.concurrent.TimeUnit)
+ */
+public final class CollectedOutput implements Closeable {
+
+    private final byte[] bytes;
+
+    private final Path file;
+
+    private final long size;
+
+    CollectedOutput(byte[] bytes) {
+        this.bytes = bytes;
+        this.file = null;
+        this.size = bytes.length;
+    }
+
+    CollectedOutput(Path file, long size) {
+        this.bytes = null;
+        this.file = file;
+        this.size = size;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if output is in temp file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return temp file with output, null if output is in heap
+     */
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * @return read only buffer, memory mapped one for spilled output
+     * @throws IOException if output is larger than 2GB, use {@link #file()}
+     */
+    public ByteBuffer asByteBuffer() throws IOException {
+        if (file == null)
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Output of " + size + " bytes doesn't fit single buffer, read " + file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * @return output in heap array, not copied if output is in heap
+     * @throws IOException if output is larger than 2GB
+     */
+    public byte[] toByteArray() throws IOException {
+        if (file == null)
+            return bytes;
+        ByteBuffer buffer = asByteBuffer();
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Delete temp file. Mapped buffers stay readable until collected
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null)
+            Files.deleteIfExists(file);
+    }
+
+    @Override
+    public String toString() {
+        return "CollectedOutput{" +
+                "size=" + size +
+                ", file=" + file +
+                '}';
+    }
+}
@@ -12,15 +12,31 @@ import java.util.Optional;
 public class Exit {
     public final int statusCode;
     public final Optional<ProcessException> err;
+    /**
+     * Resources used by process, if enabled by {@link IReactiveProcessBuilder#withProcessStats(boolean)}.
+     * Not part of equality
+     */
+    public final Optional<ProcessStats> stats;
 
     public  Exit(int statusCode, ProcessException err) {
-        this.statusCode = statusCode;
-        this.err = Optional.of(err);
+        this(statusCode, Optional.of(err), Optional.empty());
     }
 
     public Exit(int statusCode) {
+        this(statusCode, Optional.empty(), Optional.empty());
+    }
+
+    private Exit(int statusCode, Optional<ProcessException> err, Optional<ProcessStats> stats) {
         this.statusCode = statusCode;
-        this.err = Optional.empty();
+        this.err = err;
+        this.stats = stats;
+    }
+
+    /**
+     * @return copy with stats, this if stats is null
+     */
+    public Exit withStats(ProcessStats stats) {
+        return stats == null ? this : new Exit(statusCode, err, Optional.of(stats));
     }
 
     @Override
@@ -42,6 +58,7 @@ public class Exit {
         return "Exit{" +
                 "statusCode=" + statusCode +
                 ", err=" + err +
+                (stats.isPresent() ? ", stats=" + stats.get() : "") +
                 '}';
     }
 }
\ No newline at end of file
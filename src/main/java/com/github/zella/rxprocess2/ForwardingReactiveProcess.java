@@ -0,0 +1,82 @@
+package com.github.zella.rxprocess2;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import org.reactivestreams.Subscriber;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process decorator. Forwards all calls to delegate
+ */
+public abstract class ForwardingReactiveProcess<T> implements IReactiveProcess<T> {
+
+    protected final IReactiveProcess<T> delegate;
+
+    protected ForwardingReactiveProcess(IReactiveProcess<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public IReactiveProcess<T> withCoalescing(ChunkCoalescing coalescing) {
+        delegate.withCoalescing(coalescing);
+        return this;
+    }
+
+    @Override
+    public Single<Exit> waitDone(long timeout, TimeUnit timeUnit) {
+        return delegate.waitDone(timeout, timeUnit);
+    }
+
+    @Override
+    public Single<Exit> waitDone() {
+        return delegate.waitDone();
+    }
+
+    @Override
+    public Single<T> started() {
+        return delegate.started();
+    }
+
+    @Override
+    public Subscriber<byte[]> stdIn() {
+        return delegate.stdIn();
+    }
+
+    @Override
+    public Observable<ProcessChunk> stdOutErr() {
+        return delegate.stdOutErr();
+    }
+
+    @Override
+    public Observable<byte[]> stdOut() {
+        return delegate.stdOut();
+    }
+
+    @Override
+    public Observable<String> stdOutLines(Charset charset) {
+        return delegate.stdOutLines(charset);
+    }
+
+    @Override
+    public Observable<String> stdOutLines() {
+        return delegate.stdOutLines();
+    }
+
+    @Override
+    public Observable<ProcessBufferChunk> stdOutErrBuffers() {
+        return delegate.stdOutErrBuffers();
+    }
+
+    @Override
+    public Flowable<ProcessChunk> stdOutErrFlowable() {
+        return delegate.stdOutErrFlowable();
+    }
+
+    @Override
+    public Flowable<byte[]> stdOutFlowable() {
+        return delegate.stdOutFlowable();
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.zella.rxprocess2;
+
+import com.github.zella.rxprocess2.metrics.RxProcessMetrics;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builder decorator. Forwards all calls to delegate, results of execution methods pass through
+ * {@code decorate} hooks, which are identity by default.
+ */
+public abstract class ForwardingReactiveProcessBuilder<T> implements IReactiveProcessBuilder<T> {
+
+    protected final IReactiveProcessBuilder<T> delegate;
+
+    protected ForwardingReactiveProcessBuilder(IReactiveProcessBuilder<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    protected <R> Single<R> decorate(Single<R> execution) {
+        return execution;
+    }
+
+    protected <R> Observable<R> decorate(Observable<R> execution) {
+        return execution;
+    }
+
+    protected <R> Flowable<R> decorate(Flowable<R> execution) {
+        return execution;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(byte[] data) {
+        delegate.withStdin(data);
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(Flowable<ByteBuffer> source) {
+        delegate.withStdin(source);
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(InputStream is) {
+        delegate.withStdin(is);
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withStdin(Path file) {
+        delegate.withStdin(file);
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withMetrics(RxProcessMetrics metrics) {
+        delegate.withMetrics(metrics);
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withCoalescing(ChunkCoalescing coalescing) {
+        delegate.withCoalescing(coalescing);
+        return this;
+    }
+
+    @Override
+    public IReactiveProcessBuilder<T> withProcessStats(boolean enabled) {
+        delegate.withProcessStats(enabled);
+        return this;
+    }
+
+    @Override
+    public Single<Exit> asWaitDone(long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asWaitDone(timeout, timeUnit));
+    }
+
+    @Override
+    public Single<Exit> asWaitDone() {
+        return decorate(delegate.asWaitDone());
+    }
+
+    @Override
+    public Single<Exit> asStdOutToFile(Path file, long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdOutToFile(file, timeout, timeUnit));
+    }
+
+    @Override
+    public Single<Exit> asStdOutToFile(Path file) {
+        return decorate(delegate.asStdOutToFile(file));
+    }
+
+    @Override
+    public Single<Exit> asStdErrToFile(Path file, long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdErrToFile(file, timeout, timeUnit));
+    }
+
+    @Override
+    public Single<Exit> asStdErrToFile(Path file) {
+        return decorate(delegate.asStdErrToFile(file));
+    }
+
+    @Override
+    public Single<byte[]> asStdOutSingle(long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdOutSingle(timeout, timeUnit));
+    }
+
+    @Override
+    public Single<byte[]> asStdOutSingle() {
+        return decorate(delegate.asStdOutSingle());
+    }
+
+    @Override
+    public Single<byte[]> asStdOutSingle(int expectedSize, long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdOutSingle(expectedSize, timeout, timeUnit));
+    }
+
+    @Override
+    public Single<CollectedOutput> asStdOutCollected(long expectedSize, long spillThreshold, long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdOutCollected(expectedSize, spillThreshold, timeout, timeUnit));
+    }
+
+    @Override
+    public Single<CollectedOutput> asStdOutCollected() {
+        return decorate(delegate.asStdOutCollected());
+    }
+
+    @Override
+    public Observable<ProcessChunk> asStdErrOut(long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdErrOut(timeout, timeUnit));
+    }
+
+    @Override
+    public Observable<ProcessChunk> asStdErrOut() {
+        return decorate(delegate.asStdErrOut());
+    }
+
+    @Override
+    public Observable<byte[]> asStdOut(long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdOut(timeout, timeUnit));
+    }
+
+    @Override
+    public Observable<byte[]> asStdOut() {
+        return decorate(delegate.asStdOut());
+    }
+
+    @Override
+    public Observable<String> asStdOutLines(Charset charset, long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdOutLines(charset, timeout, timeUnit));
+    }
+
+    @Override
+    public Observable<String> asStdOutLines(Charset charset) {
+        return decorate(delegate.asStdOutLines(charset));
+    }
+
+    @Override
+    public Observable<ProcessBufferChunk> asStdErrOutBuffers(long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdErrOutBuffers(timeout, timeUnit));
+    }
+
+    @Override
+    public Observable<ProcessBufferChunk> asStdErrOutBuffers() {
+        return decorate(delegate.asStdErrOutBuffers());
+    }
+
+    @Override
+    public Flowable<ProcessChunk> asStdErrOutFlowable(long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdErrOutFlowable(timeout, timeUnit));
+    }
+
+    @Override
+    public Flowable<ProcessChunk> asStdErrOutFlowable() {
+        return decorate(delegate.asStdErrOutFlowable());
+    }
+
+    @Override
+    public Flowable<byte[]> asStdOutFlowable(long timeout, TimeUnit timeUnit) {
+        return decorate(delegate.asStdOutFlowable(timeout, timeUnit));
+    }
+
+    @Override
+    public Flowable<byte[]> asStdOutFlowable() {
+        return decorate(delegate.asStdOutFlowable());
+    }
+
+    @Override
+    public IReactiveProcess<T> biDirectional() {
+        return delegate.biDirectional();
+    }
+}
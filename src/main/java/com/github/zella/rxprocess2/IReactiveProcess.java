@@ -1,12 +1,23 @@
 package com.github.zella.rxprocess2;
 
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import org.reactivestreams.Subscriber;
 
+import java.nio.charset.Charset;
 import java.util.concurrent.TimeUnit;
 
 public interface IReactiveProcess<T> {
+
+    /**
+     * Merge small output chunks and split large ones, see {@link ChunkCoalescing}. Affects output subscriptions
+     * made after call
+     *
+     * @param coalescing mode, null - emit chunks as read (default)
+     */
+    IReactiveProcess<T> withCoalescing(ChunkCoalescing coalescing);
+
     /**
      * Wait until process exits, Non zero exit code will be captured in {@link Exit}
      * <p>
@@ -57,4 +68,43 @@ public interface IReactiveProcess<T> {
      * @return Hot Observable
      */
     Observable<byte[]> stdOut();
+
+    /**
+     * Real time process stdout lines, decoded with {@code charset}. Line terminators are not included.
+     *
+     * @return Hot Observable
+     */
+    Observable<String> stdOutLines(Charset charset);
+
+    /**
+     * Real time process stdout lines, decoded as UTF-8
+     *
+     * @return Hot Observable
+     */
+    Observable<String> stdOutLines();
+
+    /**
+     * Real time process stdout/stderr callbacks without copying. Chunk is valid only during {@code onNext} call,
+     * see {@link ProcessBufferChunk}
+     *
+     * @return Hot Observable
+     */
+    Observable<ProcessBufferChunk> stdOutErrBuffers();
+
+    /**
+     * Real time process stdout/stderr with backpressure. While subscribed, process output is not read
+     * until subscribers request it. NuProcess can't pause reading, its output is buffered up to
+     * {@code rxprocess2.pushFlowableBufferChunks} chunks, subscriber behind more fails with
+     * {@link io.reactivex.exceptions.MissingBackpressureException}.
+     *
+     * @return Hot Flowable
+     */
+    Flowable<ProcessChunk> stdOutErrFlowable();
+
+    /**
+     * Real time process stdout with backpressure.
+     *
+     * @return Hot Flowable
+     */
+    Flowable<byte[]> stdOutFlowable();
 }
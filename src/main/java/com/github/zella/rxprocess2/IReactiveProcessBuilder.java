@@ -1,8 +1,14 @@
 package com.github.zella.rxprocess2;
 
+import com.github.zella.rxprocess2.metrics.RxProcessMetrics;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,11 +25,65 @@ import java.util.concurrent.TimeUnit;
  * Can be set via system property
  * <p>
  * {@code rxprocess2.stderrBuffer}, default - 4096
+ * <p>
+ * Flowable variants read ahead at most {@code rxprocess2.flowableBufferChunks} chunks, default - 16. NuProcess can't
+ * pause reading, its Flowables buffer at most {@code rxprocess2.pushFlowableBufferChunks} chunks, default - 1024, and
+ * fail slower subscriber with {@link io.reactivex.exceptions.MissingBackpressureException}
+ * <p>
+ * Timeouts are checked by shared timing wheel with {@code rxprocess2.timeoutTickMillis} resolution, default - 10.
+ * Timed out process is stopped as cancelled one, killed forcibly if it doesn't stop gracefully.
  */
 public interface IReactiveProcessBuilder<T> {
 
     IReactiveProcessBuilder<T> withStdin(byte[] data);
 
+    /**
+     * Stream stdin from source. Source is subscribed on every execution and requested one buffer at a time,
+     * next buffer is requested only when previous one written to process. Stdin closed when source completes.
+     *
+     * @param source stdin data
+     */
+    IReactiveProcessBuilder<T> withStdin(Flowable<ByteBuffer> source);
+
+    /**
+     * Stream stdin from input stream. Note, stream can be consumed only once, so builder should not be executed
+     * more than once.
+     *
+     * @param is stdin data
+     */
+    IReactiveProcessBuilder<T> withStdin(InputStream is);
+
+    /**
+     * Stream stdin from file, it is read on every execution
+     *
+     * @param file stdin data
+     */
+    IReactiveProcessBuilder<T> withStdin(Path file);
+
+    /**
+     * Report executions to metrics listener instead of {@link RxProcessMetrics#global()}
+     *
+     * @param metrics listener
+     */
+    IReactiveProcessBuilder<T> withMetrics(RxProcessMetrics metrics);
+
+    /**
+     * Merge small output chunks and split large ones, for output methods and {@link #biDirectional()} processes.
+     * Useful for processes with many tiny writes
+     *
+     * @param coalescing mode, null - emit chunks as read (default)
+     */
+    IReactiveProcessBuilder<T> withCoalescing(ChunkCoalescing coalescing);
+
+    /**
+     * Collect cpu time, peak memory and io of every execution into {@link Exit#stats} and
+     * {@link com.github.zella.rxprocess2.metrics.ExecutionRecord#stats}. Running processes are sampled every
+     * {@code rxprocess2.processStatsIntervalMillis}, default - 50
+     *
+     * @param enabled default - {@code rxprocess2.processStats} system property
+     */
+    IReactiveProcessBuilder<T> withProcessStats(boolean enabled);
+
     /**
      * Wait until process exits, Non zero exit code will be captured in {@link Exit}
      *
@@ -42,6 +102,50 @@ public interface IReactiveProcessBuilder<T> {
      */
     Single<Exit> asWaitDone();
 
+    /**
+     * Write process stdout to file, wait until process exits. Non-zero exit code will be captured in {@link Exit}.
+     * <p>
+     * java.lang backend redirects stdout to file by OS, NuProcess backends write output buffers straight to file channel.
+     *
+     * @param file     file to write, truncated if exists
+     * @param timeout  timeout
+     * @param timeUnit timeUnits
+     * @return Cold Single
+     */
+    Single<Exit> asStdOutToFile(Path file, long timeout, TimeUnit timeUnit);
+
+    /**
+     * Write process stdout to file, wait until process exits. Non-zero exit code will be captured in {@link Exit}.
+     * <p>
+     * No timeout by default. Can be set via system property  {@code rxprocess2.timeOutMillis}
+     *
+     * @param file file to write, truncated if exists
+     * @return Cold Single
+     */
+    Single<Exit> asStdOutToFile(Path file);
+
+    /**
+     * Write process stderr to file, stdout is discarded. Wait until process exits. Non-zero exit code will be
+     * captured in {@link Exit}, with stderr tail.
+     *
+     * @param file     file to write, truncated if exists
+     * @param timeout  timeout
+     * @param timeUnit timeUnits
+     * @return Cold Single
+     */
+    Single<Exit> asStdErrToFile(Path file, long timeout, TimeUnit timeUnit);
+
+    /**
+     * Write process stderr to file, stdout is discarded. Wait until process exits. Non-zero exit code will be
+     * captured in {@link Exit}, with stderr tail.
+     * <p>
+     * No timeout by default. Can be set via system property  {@code rxprocess2.timeOutMillis}
+     *
+     * @param file file to write, truncated if exists
+     * @return Cold Single
+     */
+    Single<Exit> asStdErrToFile(Path file);
+
     /**
      * Wait process stdout. Non-zero exit code raise failure
      *
@@ -58,6 +162,36 @@ public interface IReactiveProcessBuilder<T> {
      */
     Single<byte[]> asStdOutSingle();
 
+    /**
+     * Wait process stdout, collected into array of {@code expectedSize} bytes. With right size output isn't copied
+     * after read, otherwise it's copied once. Non-zero exit code raise failure
+     *
+     * @param expectedSize expected stdout size, 0 - unknown
+     * @return Cold Single
+     */
+    Single<byte[]> asStdOutSingle(int expectedSize, long timeout, TimeUnit timeUnit);
+
+    /**
+     * Wait process stdout. Output larger than {@code spillThreshold} is written to temp file in
+     * {@code rxprocess2.spillDirectory} instead of heap, it's deleted when result closed.
+     * Non-zero exit code raise failure
+     *
+     * @param expectedSize   expected stdout size, 0 - unknown
+     * @param spillThreshold max bytes held in heap, -1 - never spill
+     * @return Cold Single
+     */
+    Single<CollectedOutput> asStdOutCollected(long expectedSize, long spillThreshold, long timeout, TimeUnit timeUnit);
+
+    /**
+     * Wait process stdout, spilled to temp file past {@code rxprocess2.spillThreshold} bytes, default - 64MB.
+     * Non-zero exit code raise failure
+     * <p>
+     * No timeout by default. Can be set via system property  {@code rxprocess2.timeOutMillis}
+     *
+     * @return Cold Single
+     */
+    Single<CollectedOutput> asStdOutCollected();
+
     /**
      * Real time process stdout/stderr. Non-zero exit code raise failure
      *
@@ -91,6 +225,78 @@ public interface IReactiveProcessBuilder<T> {
      */
     Observable<byte[]> asStdOut();
 
+    /**
+     * Real time process stdout lines, decoded with {@code charset}. Line terminators are not included.
+     * Non-zero exit code raise failure
+     * <p>
+     * Line longer than {@code rxprocess2.maxLineLength} chars raise {@link com.github.zella.rxprocess2.errors.LineTooLongException}
+     *
+     * @return Cold Observable
+     */
+    Observable<String> asStdOutLines(Charset charset, long timeout, TimeUnit timeUnit);
+
+    /**
+     * Real time process stdout lines, decoded with {@code charset}. Non-zero exit code raise failure
+     * <p>
+     * No timeout by default. Can be set via system property  {@code rxprocess2.timeOutMillis}
+     *
+     * @return Cold Observable
+     */
+    Observable<String> asStdOutLines(Charset charset);
+
+    /**
+     * Real time process stdout/stderr without copying. Chunk is valid only during {@code onNext} call,
+     * see {@link ProcessBufferChunk}. Non-zero exit code raise failure
+     *
+     * @return Cold Observable
+     */
+    Observable<ProcessBufferChunk> asStdErrOutBuffers(long timeout, TimeUnit timeUnit);
+
+    /**
+     * Real time process stdout/stderr without copying. Non-zero exit code raise failure
+     * <p>
+     * No timeout by default. Can be set via system property  {@code rxprocess2.timeOutMillis}
+     *
+     * @return Cold Observable
+     */
+    Observable<ProcessBufferChunk> asStdErrOutBuffers();
+
+    /**
+     * Real time process stdout/stderr with backpressure. Output is read from process only on demand,
+     * so slow subscriber throttles the process, memory stays bounded. NuProcess backends buffer bounded number of
+     * chunks instead, see notes above. Non-zero exit code raise failure
+     * <p>
+     * Doesn't block subscribing thread until process ends.
+     *
+     * @return Cold Flowable
+     */
+    Flowable<ProcessChunk> asStdErrOutFlowable(long timeout, TimeUnit timeUnit);
+
+    /**
+     * Real time process stdout/stderr with backpressure. Non-zero exit code raise failure
+     * <p>
+     * No timeout by default. Can be set via system property  {@code rxprocess2.timeOutMillis}
+     *
+     * @return Cold Flowable
+     */
+    Flowable<ProcessChunk> asStdErrOutFlowable();
+
+    /**
+     * Real time process stdout with backpressure. Non-zero exit code raise failure
+     *
+     * @return Cold Flowable
+     */
+    Flowable<byte[]> asStdOutFlowable(long timeout, TimeUnit timeUnit);
+
+    /**
+     * Real time process stdout with backpressure. Non-zero exit code raise failure
+     * <p>
+     * No timeout by default. Can be set via system property  {@code rxprocess2.timeOutMillis}
+     *
+     * @return Cold Flowable
+     */
+    Flowable<byte[]> asStdOutFlowable();
+
     /**
      * Allow to push stdin to process. Use should not reuse this object after process ends
      *
@@ -0,0 +1,183 @@
+package com.github.zella.rxprocess2;
+
+import com.github.zella.rxprocess2.common.ArrayUtils;
+import com.github.zella.rxprocess2.common.IoThreadPool;
+import com.github.zella.rxprocess2.errors.ProcessException;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.ARG_MAX;
+import static com.github.zella.rxprocess2.RxProcessConfig.DEFAULT_PROCESS_TIMEOUT_MILLIS;
+
+/**
+ * Runs command template over many inputs, as xargs does: inputs are appended to template command, up to
+ * {@link #maxArgs(int)} per invocation, while command line and environment fit {@link #maxArgBytes(long)}.
+ * <p>
+ * Invocation is reported as {@link BatchResult}, non-zero exit and timeout don't stop the batch. Batch fails if
+ * process can't be started.
+ *
+ * @see RxProcess#batch(ProcessBuilder, Flowable)
+ */
+public final class ProcessBatch {
+
+    /**
+     * Pointer to every argument and variable is counted too
+     */
+    private static final int POINTER_BYTES = 8;
+
+    private final ProcessBuilder template;
+
+    private final Flowable<String> args;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private boolean ordered = true;
+
+    private long timeoutMillis = DEFAULT_PROCESS_TIMEOUT_MILLIS;
+
+    private int maxArgs = 1;
+
+    private long maxArgBytes = ARG_MAX;
+
+    ProcessBatch(ProcessBuilder template, Flowable<String> args) {
+        this.template = template;
+        this.args = args;
+    }
+
+    /**
+     * Max number of running invocations, default is number of available processors
+     */
+    public ProcessBatch parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be greater than 0");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Emit results in input order (default), or as invocations complete
+     */
+    public ProcessBatch ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Timeout of every invocation, default - {@code rxprocess2.timeOutMillis}
+     */
+    public ProcessBatch timeout(long timeout, TimeUnit timeUnit) {
+        this.timeoutMillis = timeout == -1 ? -1 : timeUnit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Max inputs per invocation, default - 1
+     */
+    public ProcessBatch maxArgs(int maxArgs) {
+        if (maxArgs < 1)
+            throw new IllegalArgumentException("maxArgs must be greater than 0");
+        this.maxArgs = maxArgs;
+        return this;
+    }
+
+    /**
+     * Max size of command line and environment, as counted against OS {@code ARG_MAX}. Default -
+     * {@code rxprocess2.argMax}, 128KB. Input larger than that is passed alone
+     */
+    public ProcessBatch maxArgBytes(long maxArgBytes) {
+        this.maxArgBytes = maxArgBytes;
+        return this;
+    }
+
+    /**
+     * @return Cold Flowable of invocation results, every subscription runs batch again
+     */
+    public Flowable<BatchResult> results() {
+        Flowable<List<String>> packs = Flowable.defer(() -> {
+            Packer packer = new Packer(argBytes(template.command()) + envBytes(template.environment()));
+            return args.concatMapIterable(packer::add).concatWith(Flowable.defer(packer::flush));
+        });
+        return ordered
+                ? packs.concatMapEager(pack -> run(pack).toFlowable(), parallelism, 1)
+                : packs.flatMapSingle(this::run, false, parallelism);
+    }
+
+    private Single<BatchResult> run(List<String> pack) {
+        return Single.defer(() -> {
+            List<String> command = new ArrayList<>(template.command());
+            command.addAll(pack);
+            ProcessBuilder builder = new ProcessBuilder(command)
+                    .directory(template.directory())
+                    .redirectErrorStream(template.redirectErrorStream());
+            builder.environment().clear();
+            builder.environment().putAll(template.environment());
+            return RxProcess.reactive(builder).asStdOutSingle(timeoutMillis, TimeUnit.MILLISECONDS)
+                    .map(stdout -> new BatchResult(pack, new Exit(0), stdout))
+                    .onErrorResumeNext(e -> e instanceof ProcessException
+                            ? Single.just(new BatchResult(pack, new Exit(((ProcessException) e).exitCode, (ProcessException) e),
+                            ArrayUtils.EMPTY_BYTE_ARRAY))
+                            : Single.error(e));
+        }).subscribeOn(IoThreadPool.shared().scheduler());
+    }
+
+    private static long argBytes(List<String> args) {
+        long bytes = 0;
+        for (String arg : args)
+            bytes += argBytes(arg);
+        return bytes;
+    }
+
+    private static long argBytes(String arg) {
+        return arg.getBytes(Charset.defaultCharset()).length + 1 + POINTER_BYTES;
+    }
+
+    private static long envBytes(Map<String, String> env) {
+        long bytes = 0;
+        for (Map.Entry<String, String> variable : env.entrySet())
+            bytes += argBytes(variable.getKey() + "=" + variable.getValue());
+        return bytes;
+    }
+
+    /**
+     * Packs inputs into invocations, used by single subscription
+     */
+    private final class Packer {
+
+        private final long baseBytes;
+
+        private List<String> pack = new ArrayList<>();
+
+        private long packBytes;
+
+        Packer(long baseBytes) {
+            this.baseBytes = baseBytes;
+        }
+
+        /**
+         * @return completed pack, if input doesn't fit current one
+         */
+        List<List<String>> add(String arg) {
+            long bytes = argBytes(arg);
+            List<List<String>> completed = Collections.emptyList();
+            if (!pack.isEmpty() && (pack.size() == maxArgs || baseBytes + packBytes + bytes > maxArgBytes)) {
+                completed = Collections.singletonList(pack);
+                pack = new ArrayList<>();
+                packBytes = 0;
+            }
+            pack.add(arg);
+            packBytes += bytes;
+            return completed;
+        }
+
+        Flowable<List<String>> flush() {
+            return pack.isEmpty() ? Flowable.empty() : Flowable.just(pack);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.zella.rxprocess2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zero copy process output chunk. {@code data} is read-only view of process read buffer and valid only
+ * during {@code onNext} call, it will be overwritten by next read. Use {@link #toProcessChunk()} to keep data.
+ * <p>
+ * Don't use it after thread switch (observeOn, buffer, etc). When chunk shared between multiple subscribers,
+ * read it with absolute gets or via {@code data.duplicate()}.
+ */
+public class ProcessBufferChunk {
+    public final ByteBuffer data;
+    public final boolean isStdErr;
+
+    public ProcessBufferChunk(ByteBuffer data, boolean isStdErr) {
+        this.data = data;
+        this.isStdErr = isStdErr;
+    }
+
+    /**
+     * Wrap bytes without copying
+     */
+    public static ProcessBufferChunk wrap(ProcessChunk chunk) {
+        return new ProcessBufferChunk(ByteBuffer.wrap(chunk.data).asReadOnlyBuffer(), chunk.isStdErr);
+    }
+
+    /**
+     * @return copy of remaining bytes, {@code data} position is not changed
+     */
+    public ProcessChunk toProcessChunk() {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return new ProcessChunk(bytes, isStdErr);
+    }
+
+    @Override
+    public String toString() {
+        return toProcessChunk().toString();
+    }
+}
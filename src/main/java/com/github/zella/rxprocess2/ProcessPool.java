@@ -0,0 +1,458 @@
+package com.github.zella.rxprocess2;
+
+import com.github.zella.rxprocess2.common.FrameDecoder;
+import com.github.zella.rxprocess2.common.Framing;
+import com.github.zella.rxprocess2.common.TimeoutWheel;
+import com.github.zella.rxprocess2.errors.ProcessException;
+import com.github.zella.rxprocess2.errors.ProcessTimeoutException;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.observers.DisposableSingleObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of long-lived co-process workers. Each request is written to idle worker stdin and completed with next
+ * worker stdout message, so worker must answer requests one by one, in order. Workers are started lazily
+ * via {@link IReactiveProcessBuilder#biDirectional()}.
+ * <p>
+ * Worker is recycled after {@code maxRequestsPerWorker} requests, on request timeout, on failed health check
+ * and when it exits. Requests wait in bounded FIFO queue while all workers busy, overflow is rejected
+ * with {@link RejectedExecutionException}.
+ * <pre>
+ * ProcessPool pool = ProcessPool.builder(RxProcess.reactive(new ProcessBuilder("python3", "worker.py")), Framing.newline())
+ *         .workers(4)
+ *         .maxRequestsPerWorker(10000)
+ *         .build();
+ * Single&lt;byte[]&gt; response = pool.request("2+2".getBytes());
+ * </pre>
+ */
+public final class ProcessPool implements Disposable {
+
+    private final IReactiveProcessBuilder<?> processBuilder;
+
+    private final Framing framing;
+
+    private final int workers;
+
+    private final int maxRequestsPerWorker;
+
+    private final int maxQueued;
+
+    private final long requestTimeoutMillis;
+
+    private final byte[] healthCheckRequest;
+
+    private final long healthCheckMillis;
+
+    private final ArrayDeque<Call> queue = new ArrayDeque<>();
+
+    private final ArrayDeque<Worker> idle = new ArrayDeque<>();
+
+    private final Set<Worker> live = new HashSet<>();
+
+    private final Disposable healthCheck;
+
+    private boolean disposed = false;
+
+    private long spawned = 0;
+
+    private long recycled = 0;
+
+    private ProcessPool(Builder b) {
+        this.processBuilder = b.processBuilder;
+        this.framing = b.framing;
+        this.workers = b.workers;
+        this.maxRequestsPerWorker = b.maxRequestsPerWorker;
+        this.maxQueued = b.maxQueued;
+        this.requestTimeoutMillis = b.requestTimeoutMillis;
+        this.healthCheckRequest = b.healthCheckRequest;
+        this.healthCheckMillis = b.healthCheckMillis;
+        this.healthCheck = healthCheckRequest == null
+                ? Disposables.disposed()
+                : Schedulers.computation().schedulePeriodicallyDirect(this::checkHealth,
+                healthCheckMillis, healthCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static Builder builder(IReactiveProcessBuilder<?> processBuilder, Framing framing) {
+        return new Builder(processBuilder, framing);
+    }
+
+    /**
+     * Send request to worker
+     * <p>
+     * Subscribe will enqueue request. Cancelled request is removed from queue, if it's already sent, worker
+     * response is discarded
+     *
+     * @param request message, framing is applied by pool
+     * @return Cold Single with worker response
+     */
+    public Single<byte[]> request(byte[] request) {
+        return Single.create(emitter -> {
+            Call call = new Call(framing.encode(request), emitter);
+            synchronized (this) {
+                if (disposed)
+                    throw new RejectedExecutionException("Pool disposed");
+                if (queue.size() >= maxQueued)
+                    throw new RejectedExecutionException("Pool queue is full: " + maxQueued);
+                queue.add(call);
+            }
+            emitter.setCancellable(() -> {
+                synchronized (this) {
+                    queue.remove(call);
+                }
+            });
+            dispatch();
+        });
+    }
+
+    /**
+     * @return number of running workers
+     */
+    public synchronized int size() {
+        return live.size();
+    }
+
+    /**
+     * @return number of idle workers
+     */
+    public synchronized int idle() {
+        return idle.size();
+    }
+
+    /**
+     * @return number of requests waiting for worker
+     */
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    /**
+     * @return total number of started workers
+     */
+    public synchronized long spawned() {
+        return spawned;
+    }
+
+    /**
+     * @return total number of workers stopped by pool (max requests, timeout, failed health check)
+     */
+    public synchronized long recycled() {
+        return recycled;
+    }
+
+    /**
+     * Stop all workers, queued requests fail with {@link RejectedExecutionException}
+     */
+    @Override
+    public void dispose() {
+        List<Call> rejected;
+        List<Worker> stopped;
+        synchronized (this) {
+            if (disposed)
+                return;
+            disposed = true;
+            rejected = new ArrayList<>(queue);
+            queue.clear();
+            stopped = new ArrayList<>(live);
+            live.clear();
+            idle.clear();
+        }
+        healthCheck.dispose();
+        for (Call call : rejected)
+            call.emitter.tryOnError(new RejectedExecutionException("Pool disposed"));
+        for (Worker worker : stopped)
+            worker.stop(new RejectedExecutionException("Pool disposed"));
+    }
+
+    @Override
+    public synchronized boolean isDisposed() {
+        return disposed;
+    }
+
+    private void dispatch() {
+        while (true) {
+            Worker worker;
+            Call call;
+            synchronized (this) {
+                if (disposed || queue.isEmpty())
+                    return;
+                if (!idle.isEmpty()) {
+                    worker = idle.poll();
+                } else if (live.size() < workers) {
+                    worker = new Worker();
+                    live.add(worker);
+                    spawned++;
+                } else {
+                    return;
+                }
+                call = queue.poll();
+                worker.current = call;
+            }
+            worker.send(call);
+        }
+    }
+
+    private void checkHealth() {
+        List<Worker> checked = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Worker worker : idle) {
+                if (now - worker.lastUsed >= healthCheckMillis)
+                    checked.add(worker);
+            }
+            idle.removeAll(checked);
+        }
+        for (Worker worker : checked) {
+            Call ping = new Call(framing.encode(healthCheckRequest), null);
+            synchronized (this) {
+                worker.current = ping;
+            }
+            worker.send(ping);
+        }
+    }
+
+    /**
+     * Response received, return worker to pool or recycle it
+     */
+    private void release(Worker worker, Call call, byte[] response) {
+        boolean recycle;
+        synchronized (this) {
+            if (worker.current != call)
+                return;
+            worker.current = null;
+            worker.served++;
+            worker.lastUsed = System.currentTimeMillis();
+            recycle = worker.served >= maxRequestsPerWorker;
+            if (recycle) {
+                live.remove(worker);
+                recycled++;
+            } else if (live.contains(worker)) {
+                idle.add(worker);
+            }
+        }
+        if (recycle)
+            worker.stop(null);
+        if (call.emitter != null)
+            call.emitter.onSuccess(response);
+        dispatch();
+    }
+
+    /**
+     * Worker can't be used anymore, fail its current request
+     */
+    private void fail(Worker worker, Throwable error, boolean recycle) {
+        Call call;
+        synchronized (this) {
+            call = worker.current;
+            worker.current = null;
+            if (live.remove(worker) && recycle)
+                recycled++;
+            idle.remove(worker);
+        }
+        worker.stop(null);
+        if (call != null && call.emitter != null)
+            call.emitter.tryOnError(error);
+        dispatch();
+    }
+
+    private static final class Call {
+        final byte[] message;
+        final SingleEmitter<byte[]> emitter;
+
+        /**
+         * @param emitter null for health check
+         */
+        Call(byte[] message, SingleEmitter<byte[]> emitter) {
+            this.message = message;
+            this.emitter = emitter;
+        }
+    }
+
+    private final class Worker {
+
+        private final IReactiveProcess<?> process = processBuilder.biDirectional();
+
+        private final FrameDecoder decoder = framing.newDecoder();
+
+        private final Disposable stdout;
+
+        private final Disposable exit;
+
+        //guarded by pool
+        Call current;
+
+        int served = 0;
+
+        long lastUsed = System.currentTimeMillis();
+
+        private volatile Disposable timeout = Disposables.disposed();
+
+        Worker() {
+            //stdout fails when worker exits with error, exit observer may not run yet
+            stdout = process.stdOut().subscribe(this::onStdout, e -> fail(this, e, false));
+            DisposableSingleObserver<Exit> exitObserver = new DisposableSingleObserver<Exit>() {
+                @Override
+                public void onSuccess(Exit e) {
+                    fail(Worker.this, e.err.isPresent()
+                            ? e.err.get()
+                            : new ProcessException(e.statusCode, "Worker exited"), false);
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    fail(Worker.this, e, false);
+                }
+            };
+            exit = exitObserver;
+            //not subscribeOn, disposing shouldn't interrupt blocked thread, process destroy is enough
+            Schedulers.io().scheduleDirect(() -> process.waitDone().subscribe(exitObserver));
+        }
+
+        void send(Call call) {
+            if (requestTimeoutMillis > 0 || call.emitter == null) {
+                long millis = requestTimeoutMillis > 0 ? requestTimeoutMillis : healthCheckMillis;
+                timeout = TimeoutWheel.shared().schedule(() -> {
+                    boolean expired;
+                    synchronized (ProcessPool.this) {
+                        expired = current == call;
+                    }
+                    //response stream is out of sync now, worker can't be reused
+                    if (expired)
+                        fail(this, new ProcessTimeoutException(Integer.MIN_VALUE), true);
+                }, millis, TimeUnit.MILLISECONDS);
+            }
+            process.stdIn().onNext(call.message);
+        }
+
+        private void onStdout(byte[] chunk) {
+            List<byte[]> frames;
+            try {
+                frames = decoder.decode(chunk);
+            } catch (ProcessException e) {
+                //frame too long
+                fail(this, e, true);
+                return;
+            } catch (RuntimeException e) {
+                fail(this, new ProcessException(Integer.MIN_VALUE, e.getMessage()), true);
+                return;
+            }
+            for (byte[] frame : frames) {
+                Call call;
+                synchronized (ProcessPool.this) {
+                    call = current;
+                }
+                timeout.dispose();
+                if (call != null)
+                    release(this, call, frame);
+            }
+        }
+
+        /**
+         * @param error if not null, current request failed with it
+         */
+        void stop(Throwable error) {
+            Call call = null;
+            if (error != null) {
+                synchronized (ProcessPool.this) {
+                    call = current;
+                    current = null;
+                }
+            }
+            timeout.dispose();
+            stdout.dispose();
+            //disposing may wait graceful stop
+            Schedulers.io().scheduleDirect(exit::dispose);
+            if (call != null && call.emitter != null)
+                call.emitter.tryOnError(error);
+        }
+    }
+
+    public static final class Builder {
+
+        private final IReactiveProcessBuilder<?> processBuilder;
+
+        private final Framing framing;
+
+        private int workers = Runtime.getRuntime().availableProcessors();
+
+        private int maxRequestsPerWorker = Integer.MAX_VALUE;
+
+        private int maxQueued = Integer.MAX_VALUE;
+
+        private long requestTimeoutMillis = -1;
+
+        private byte[] healthCheckRequest;
+
+        private long healthCheckMillis;
+
+        private Builder(IReactiveProcessBuilder<?> processBuilder, Framing framing) {
+            this.processBuilder = processBuilder;
+            this.framing = framing;
+        }
+
+        /**
+         * Max number of running workers, default is number of available processors
+         */
+        public Builder workers(int workers) {
+            if (workers < 1)
+                throw new IllegalArgumentException("workers must be greater than 0");
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Worker is replaced with new one after serving {@code maxRequests}, unlimited by default
+         */
+        public Builder maxRequestsPerWorker(int maxRequests) {
+            if (maxRequests < 1)
+                throw new IllegalArgumentException("maxRequests must be greater than 0");
+            this.maxRequestsPerWorker = maxRequests;
+            return this;
+        }
+
+        /**
+         * Max number of requests waiting for worker, unlimited by default
+         */
+        public Builder maxQueued(int maxQueued) {
+            if (maxQueued < 0)
+                throw new IllegalArgumentException("maxQueued must not be negative");
+            this.maxQueued = maxQueued;
+            return this;
+        }
+
+        /**
+         * Time to wait worker response, after that request fails with {@link ProcessTimeoutException} and worker
+         * is replaced. No timeout by default
+         */
+        public Builder requestTimeout(long timeout, TimeUnit timeUnit) {
+            this.requestTimeoutMillis = timeUnit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Send {@code request} to workers idle for {@code interval}, worker is replaced if it doesn't respond
+         * within request timeout (or {@code interval} if not set). Disabled by default
+         */
+        public Builder healthCheck(byte[] request, long interval, TimeUnit timeUnit) {
+            if (interval <= 0)
+                throw new IllegalArgumentException("interval must be greater than 0");
+            this.healthCheckRequest = request.clone();
+            this.healthCheckMillis = timeUnit.toMillis(interval);
+            return this;
+        }
+
+        public ProcessPool build() {
+            return new ProcessPool(this);
+        }
+    }
+}
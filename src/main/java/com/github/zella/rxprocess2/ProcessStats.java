@@ -0,0 +1,76 @@
+package com.github.zella.rxprocess2;
+
+/**
+ * Resources used by single process, collected when enabled by
+ * {@link IReactiveProcessBuilder#withProcessStats(boolean)}.
+ * <p>
+ * Process is reaped by JVM as soon as it exits, so os counters are taken from last sample before exit, they can miss
+ * at most {@code rxprocess2.processStatsIntervalMillis} of process life. Unknown values are -1.
+ */
+public class ProcessStats {
+
+    public final long pid;
+
+    /**
+     * Time from process start to exit
+     */
+    public final long wallNanos;
+
+    public final long userCpuNanos;
+
+    public final long systemCpuNanos;
+
+    /**
+     * User and system time, known also where they can't be told apart
+     */
+    public final long cpuNanos;
+
+    /**
+     * Peak resident set size
+     */
+    public final long maxRssBytes;
+
+    /**
+     * Bytes read by process from all descriptors: stdin, files, sockets
+     */
+    public final long readBytes;
+
+    /**
+     * Bytes written by process to all descriptors: stdout, stderr, files, sockets
+     */
+    public final long writtenBytes;
+
+    public final long stdoutBytes;
+
+    public final long stderrBytes;
+
+    public ProcessStats(long pid, long wallNanos, long userCpuNanos, long systemCpuNanos, long cpuNanos,
+                        long maxRssBytes, long readBytes, long writtenBytes, long stdoutBytes, long stderrBytes) {
+        this.pid = pid;
+        this.wallNanos = wallNanos;
+        this.userCpuNanos = userCpuNanos;
+        this.systemCpuNanos = systemCpuNanos;
+        this.cpuNanos = cpuNanos;
+        this.maxRssBytes = maxRssBytes;
+        this.readBytes = readBytes;
+        this.writtenBytes = writtenBytes;
+        this.stdoutBytes = stdoutBytes;
+        this.stderrBytes = stderrBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessStats{" +
+                "pid=" + pid +
+                ", wallNanos=" + wallNanos +
+                ", userCpuNanos=" + userCpuNanos +
+                ", systemCpuNanos=" + systemCpuNanos +
+                ", cpuNanos=" + cpuNanos +
+                ", maxRssBytes=" + maxRssBytes +
+                ", readBytes=" + readBytes +
+                ", writtenBytes=" + writtenBytes +
+                ", stdoutBytes=" + stdoutBytes +
+                ", stderrBytes=" + stderrBytes +
+                '}';
+    }
+}
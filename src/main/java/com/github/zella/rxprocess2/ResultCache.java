@@ -0,0 +1,417 @@
+package com.github.zella.rxprocess2;
+
+import com.github.zella.rxprocess2.errors.ProcessException;
+import io.reactivex.Single;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoises results of deterministic commands, keyed by SHA-256 of command, environment subset, working directory
+ * and stdin. Cached {@link IReactiveProcessBuilder#asStdOutSingle()} and {@link IReactiveProcessBuilder#asWaitDone()}
+ * return stored result without starting process, concurrent identical calls share one execution.
+ * <p>
+ * Results are kept in LRU memory tier bounded by {@code maxBytes} and optionally in directory, both expire after
+ * {@code ttl}. Failed stdout, timed out and cancelled executions are not cached, exit with non zero code is.
+ * Only byte array stdin is part of key, builders with streamed stdin are not cached.
+ * <pre>
+ * ResultCache cache = ResultCache.builder().maxBytes(16 * 1024 * 1024).ttl(1, TimeUnit.HOURS).build();
+ * Single&lt;byte[]&gt; rev = cache.reactive(new ProcessBuilder("git", "rev-parse", "HEAD")).asStdOutSingle();
+ * </pre>
+ */
+public final class ResultCache {
+
+    private static final int DISK_FORMAT = 1;
+
+    private static final byte STDOUT = 1;
+
+    private static final byte EXIT = 2;
+
+    private final long maxBytes;
+
+    private final long ttlMillis;
+
+    private final Path directory;
+
+    //access ordered, guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes = 0;
+
+    private final Map<String, Single<?>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private ResultCache(Builder b) {
+        this.maxBytes = b.maxBytes;
+        this.ttlMillis = b.ttlMillis;
+        this.directory = b.directory;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Cached builder for process builder, its command, directory and values of {@code envKeys} are part of key
+     */
+    public IReactiveProcessBuilder<Process> reactive(ProcessBuilder builder, String... envKeys) {
+        Map<String, String> env = new TreeMap<>();
+        for (String name : envKeys) {
+            String value = builder.environment().get(name);
+            if (value != null)
+                env.put(name, value);
+        }
+        return wrap(RxProcess.reactive(builder), builder.command(), env,
+                builder.directory() == null ? null : builder.directory().toPath());
+    }
+
+    /**
+     * Cached decorator of builder, caller describes what builder runs
+     *
+     * @param env environment variables that affect result
+     * @param cwd working directory, null for current
+     */
+    public <T> IReactiveProcessBuilder<T> wrap(IReactiveProcessBuilder<T> builder, List<String> command, Map<String, String> env, Path cwd) {
+        ByteArrayOutputStream key = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(key)) {
+            out.writeInt(command.size());
+            for (String arg : command)
+                writeString(out, arg);
+            Map<String, String> sorted = new TreeMap<>(env);
+            out.writeInt(sorted.size());
+            for (Map.Entry<String, String> e : sorted.entrySet()) {
+                writeString(out, e.getKey());
+                writeString(out, e.getValue());
+            }
+            writeString(out, cwd == null ? "" : cwd.toAbsolutePath().normalize().toString());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new CachingReactiveProcessBuilder<>(builder, this, key.toByteArray());
+    }
+
+    Single<byte[]> stdout(byte[] keyPrefix, byte[] stdin, Single<byte[]> execution) {
+        return cached(key(keyPrefix, STDOUT, stdin), STDOUT, execution);
+    }
+
+    Single<Exit> exit(byte[] keyPrefix, byte[] stdin, Single<Exit> execution) {
+        return cached(key(keyPrefix, EXIT, stdin), EXIT, execution);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> Single<R> cached(String key, byte kind, Single<R> execution) {
+        return Single.defer(() -> {
+            Object value = lookup(key, kind);
+            if (value != null)
+                return Single.just((R) copy(value));
+            misses.increment();
+            Single<R> shared = (Single<R>) inFlight.computeIfAbsent(key, k -> share(key, kind, execution));
+            return shared.map(result -> (R) copy(result));
+        });
+    }
+
+    /**
+     * Replay resets when execution terminates, so caller joining after that gets recorded outcome instead of
+     * running process again
+     */
+    private <R> Single<R> share(String key, byte kind, Single<R> execution) {
+        AtomicReference<Single<R>> finished = new AtomicReference<>();
+        AtomicReference<Single<R>> shared = new AtomicReference<>();
+        shared.set(Single.defer(() -> {
+            Single<R> outcome = finished.get();
+            if (outcome != null)
+                return outcome;
+            return execution
+                    .doOnSuccess(result -> {
+                        if (cacheable(result))
+                            store(key, kind, copy(result));
+                        finished.set(Single.just(result));
+                    })
+                    .doOnError(e -> finished.set(Single.error(e)))
+                    //key may already belong to next execution
+                    .doFinally(() -> inFlight.remove(key, shared.get()));
+        })
+                //disposed by last caller, so timeout or cancel of all callers stops process
+                .toObservable().replay(1).refCount().singleOrError());
+        return shared.get();
+    }
+
+    /**
+     * Callers may modify stdout array
+     */
+    private static Object copy(Object value) {
+        return value instanceof byte[] ? ((byte[]) value).clone() : value;
+    }
+
+    private static boolean cacheable(Object result) {
+        return !(result instanceof Exit) || ((Exit) result).statusCode != Integer.MIN_VALUE;
+    }
+
+    private Object lookup(String key, byte kind) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.increment();
+                    return entry.value;
+                }
+                remove(key);
+                expirations.increment();
+            }
+        }
+        if (directory == null)
+            return null;
+        Path file = directory.resolve(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != DISK_FORMAT || in.readByte() != kind)
+                return null;
+            long expiresAt = in.readLong();
+            if (expiresAt <= now) {
+                Files.deleteIfExists(file);
+                expirations.increment();
+                return null;
+            }
+            Object value = kind == STDOUT ? readBytes(in) : readExit(in);
+            diskHits.increment();
+            put(key, value, expiresAt);
+            return value;
+        } catch (IOException e) {
+            //missing or corrupted file, execute again
+            return null;
+        }
+    }
+
+    private void store(String key, byte kind, Object value) {
+        long expiresAt = ttlMillis == -1 ? Long.MAX_VALUE : System.currentTimeMillis() + ttlMillis;
+        put(key, value, expiresAt);
+        if (directory == null)
+            return;
+        try {
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(DISK_FORMAT);
+                out.writeByte(kind);
+                out.writeLong(expiresAt);
+                if (kind == STDOUT)
+                    writeBytes(out, (byte[]) value);
+                else
+                    writeExit(out, (Exit) value);
+            }
+            Files.move(temp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            //disk tier is best effort
+        }
+    }
+
+    private synchronized void put(String key, Object value, long expiresAt) {
+        long size = size(key, value);
+        if (size > maxBytes)
+            return;
+        remove(key);
+        entries.put(key, new Entry(value, size, expiresAt));
+        bytes += size;
+        Iterator<Entry> lru = entries.values().iterator();
+        while (bytes > maxBytes && lru.hasNext()) {
+            bytes -= lru.next().size;
+            lru.remove();
+            evictions.increment();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null)
+            bytes -= removed.size;
+    }
+
+    private static long size(String key, Object value) {
+        long payload = value instanceof byte[]
+                ? ((byte[]) value).length
+                : ((Exit) value).err.map(e -> e.getMessage() == null ? 0 : 2L * e.getMessage().length()).orElse(0L);
+        return 2L * key.length() + payload + 64;
+    }
+
+    /**
+     * Drop all memory entries, disk tier is kept
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long diskHits() {
+        return diskHits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long expirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * @return number of memory entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated size of memory entries
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public Map<String, Number> snapshot() {
+        Map<String, Number> result = new LinkedHashMap<>();
+        result.put("hits", hits());
+        result.put("diskHits", diskHits());
+        result.put("misses", misses());
+        result.put("evictions", evictions());
+        result.put("expirations", expirations());
+        result.put("size", size());
+        result.put("bytes", bytes());
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static String key(byte[] prefix, byte kind, byte[] stdin) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(prefix);
+        digest.update(kind);
+        digest.update(stdin);
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest())
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return hex.toString();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        return value;
+    }
+
+    private static void writeExit(DataOutputStream out, Exit exit) throws IOException {
+        out.writeInt(exit.statusCode);
+        out.writeBoolean(exit.err.isPresent());
+        if (exit.err.isPresent())
+            writeString(out, String.valueOf(exit.err.get().getMessage()));
+    }
+
+    private static Exit readExit(DataInputStream in) throws IOException {
+        int statusCode = in.readInt();
+        if (!in.readBoolean())
+            return new Exit(statusCode);
+        return new Exit(statusCode, new ProcessException(statusCode, new String(readBytes(in), StandardCharsets.UTF_8)));
+    }
+
+    private static final class Entry {
+
+        final Object value;
+
+        final long size;
+
+        final long expiresAt;
+
+        Entry(Object value, long size, long expiresAt) {
+            this.value = value;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static final class Builder {
+
+        private long maxBytes = 64 * 1024 * 1024;
+
+        private long ttlMillis = -1;
+
+        private Path directory;
+
+        private Builder() {
+        }
+
+        /**
+         * Max estimated size of memory tier, least recently used results are evicted. Default is 64MB
+         */
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes < 0)
+                throw new IllegalArgumentException("maxBytes must not be negative");
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Time to live of cached result, unlimited by default
+         */
+        public Builder ttl(long ttl, TimeUnit timeUnit) {
+            if (ttl <= 0)
+                throw new IllegalArgumentException("ttl must be greater than 0");
+            this.ttlMillis = timeUnit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * Keep results in directory too, so they survive restarts and memory eviction. Disabled by default
+         */
+        public Builder directory(Path directory) throws IOException {
+            this.directory = Files.createDirectories(directory);
+            return this;
+        }
+
+        public ResultCache build() {
+            return new ResultCache(this);
+        }
+    }
+}
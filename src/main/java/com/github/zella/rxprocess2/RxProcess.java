@@ -1,10 +1,23 @@
 package com.github.zella.rxprocess2;
 
+import com.github.zella.rxprocess2.common.IoThreadPool;
+import com.github.zella.rxprocess2.common.VirtualThreads;
 import com.github.zella.rxprocess2.impl.javalang.JavaReactiveProcessBuilder;
+import com.github.zella.rxprocess2.impl.javalang.PipelineProcess;
 import com.github.zella.rxprocess2.impl.nuprocess.NuNonBlockingReactiveProcessBuilder;
 import com.github.zella.rxprocess2.impl.nuprocess.NuReactiveProcessBuilder;
+import com.github.zella.rxprocess2.spawn.SpawnServer;
 import com.zaxxer.nuprocess.NuProcess;
 import com.zaxxer.nuprocess.NuProcessBuilder;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.SPAWN_SERVER;
 
 public final class RxProcess {
 
@@ -15,13 +28,98 @@ public final class RxProcess {
     /**
      * Create blocking reactive api for process builder.
      * <p>
-     * Note, that it blocks thread until process ends. If you want run few processes at constant parallelism level, you prefer blocking implementations.
+     * Process streams are read by io threads, thread per stream. Subscribing thread is not blocked, exit is awaited
+     * without thread on JDK 9+, by io thread on JDK 8. If you want run few processes at constant parallelism level,
+     * you prefer blocking implementations.
+     * <p>
+     * With {@code rxprocess2.spawnServer=true} processes are spawned by {@link SpawnServer#shared()}.
      *
      * @param builder
      * @return Reactive representation of process builder
      */
     public static IReactiveProcessBuilder<Process> reactive(ProcessBuilder builder) {
-        return new JavaReactiveProcessBuilder(builder);
+        return new JavaReactiveProcessBuilder(builder, IoThreadPool.shared().scheduler(), launcher());
+    }
+
+    /**
+     * Create blocking reactive api for process builder, processes are spawned by helper JVM instead of this one.
+     * <p>
+     * Process streams are read by io threads, as for {@link #reactive(ProcessBuilder)}.
+     *
+     * @param builder
+     * @param server  helper that spawns processes
+     * @return Reactive representation of process builder
+     */
+    public static IReactiveProcessBuilder<Process> reactive(ProcessBuilder builder, SpawnServer server) {
+        return new JavaReactiveProcessBuilder(builder, IoThreadPool.shared().scheduler(), server::spawn);
+    }
+
+    /**
+     * Create blocking reactive api for pipeline {@code stages[0] | stages[1] | ...}, as for single process: stdin goes
+     * to first stage, stdout is from last one, stderr is merged from all stages.
+     * <p>
+     * Stages are wired kernel-to-kernel on JDK 21+, output doesn't pass through JVM. On older JDK it's pumped with
+     * bounded buffer. Any failed stage kills whole pipeline, exit code of every stage is available from
+     * {@link PipelineProcess}, see {@link IReactiveProcess#started()}.
+     * <p>
+     * Redirects for file output methods apply to last stage.
+     *
+     * @param stages processes to chain, inner stdin and stdout must be piped
+     * @return Reactive representation of pipeline
+     */
+    public static IReactiveProcessBuilder<Process> pipe(ProcessBuilder... stages) {
+        if (stages.length == 0)
+            throw new IllegalArgumentException("Pipeline has no stages");
+        List<ProcessBuilder> upstream = Arrays.asList(stages).subList(0, stages.length - 1);
+        Scheduler ioScheduler = IoThreadPool.shared().scheduler();
+        return new JavaReactiveProcessBuilder(stages[stages.length - 1], ioScheduler, last -> {
+            List<ProcessBuilder> pipeline = new ArrayList<>(upstream);
+            pipeline.add(last);
+            return PipelineProcess.start(pipeline, ioScheduler);
+        });
+    }
+
+    /**
+     * Run {@code template} over inputs, as xargs does. Every input is appended to template command as argument,
+     * {@link ProcessBatch#maxArgs(int)} inputs per invocation.
+     * <pre>
+     * RxProcess.batch(new ProcessBuilder("md5sum"), files).maxArgs(1000).parallelism(4).results()
+     * </pre>
+     *
+     * @param template command, working directory and environment of every invocation
+     * @param args     inputs
+     * @return batch, configured and run by {@link ProcessBatch#results()}
+     */
+    public static ProcessBatch batch(ProcessBuilder template, Flowable<String> args) {
+        return new ProcessBatch(template, args);
+    }
+
+    /**
+     * Create blocking reactive api for process builder, process streams are read and written on virtual threads.
+     * <p>
+     * Subscribing thread is not blocked, as for {@link #reactive(ProcessBuilder)}.
+     * <p>
+     * With {@code rxprocess2.spawnServer=true} processes are spawned by {@link SpawnServer#shared()}.
+     *
+     * @param builder
+     * @return Reactive representation of process builder
+     * @throws UnsupportedOperationException if JVM doesn't support virtual threads (JDK 21+)
+     */
+    public static IReactiveProcessBuilder<Process> reactiveVirtual(ProcessBuilder builder) {
+        return new JavaReactiveProcessBuilder(builder, VirtualThreads.scheduler(), launcher());
+    }
+
+    /**
+     * Create blocking reactive api for process builder, process streams are read and written on virtual threads,
+     * processes are spawned by helper JVM instead of this one.
+     *
+     * @param builder
+     * @param server  helper that spawns processes
+     * @return Reactive representation of process builder
+     * @throws UnsupportedOperationException if JVM doesn't support virtual threads (JDK 21+)
+     */
+    public static IReactiveProcessBuilder<Process> reactiveVirtual(ProcessBuilder builder, SpawnServer server) {
+        return new JavaReactiveProcessBuilder(builder, VirtualThreads.scheduler(), server::spawn);
     }
 
     /**
@@ -46,5 +144,9 @@ public final class RxProcess {
         return new NuNonBlockingReactiveProcessBuilder(builder);
     }
 
-
+    private static Function<ProcessBuilder, Process> launcher() {
+        if (SPAWN_SERVER)
+            return b -> SpawnServer.shared().spawn(b);
+        return ProcessBuilder::start;
+    }
 }
@@ -13,4 +13,38 @@ public final class RxProcessConfig {
 
     public static final int DEFAULT_READ_BUFFER = Integer.getInteger("rxprocess2.readBuffer", 8192);
 
+    public static final boolean POOLED_READ_BUFFERS = Boolean.getBoolean("rxprocess2.pooledReadBuffers");
+
+    public static final int READ_BUFFER_POOL_SIZE = Integer.getInteger("rxprocess2.readBufferPoolSize", 64);
+
+    public static final int IO_POOL_MAX_THREADS = Integer.getInteger("rxprocess2.ioPoolMaxThreads", 8192);
+
+    public static final int IO_POOL_KEEP_ALIVE_SECONDS = Integer.getInteger("rxprocess2.ioPoolKeepAliveSeconds", 60);
+
+    public static final int MAX_LINE_LENGTH = Integer.getInteger("rxprocess2.maxLineLength", 1024 * 1024);
+
+    public static final int MAX_FRAME_LENGTH = Integer.getInteger("rxprocess2.maxFrameLength", 16 * 1024 * 1024);
+
+    public static final int FLOWABLE_BUFFER_CHUNKS = Integer.getInteger("rxprocess2.flowableBufferChunks", 16);
+
+    public static final int PUSH_FLOWABLE_BUFFER_CHUNKS = Integer.getInteger("rxprocess2.pushFlowableBufferChunks", 1024);
+
+    public static final int TIMEOUT_TICK_MILLIS = Integer.getInteger("rxprocess2.timeoutTickMillis", 10);
+
+    public static final long SPILL_THRESHOLD = Long.getLong("rxprocess2.spillThreshold", 64 * 1024 * 1024);
+
+    public static final String SPILL_DIRECTORY = System.getProperty("rxprocess2.spillDirectory",
+            System.getProperty("java.io.tmpdir"));
+
+    public static final long ARG_MAX = Long.getLong("rxprocess2.argMax", 128 * 1024);
+
+    public static final boolean PROCESS_STATS = Boolean.getBoolean("rxprocess2.processStats");
+
+    public static final int PROCESS_STATS_INTERVAL_MILLIS = Integer.getInteger("rxprocess2.processStatsIntervalMillis", 50);
+
+    public static final boolean SPAWN_SERVER = Boolean.getBoolean("rxprocess2.spawnServer");
+
+    public static final String SPAWN_SERVER_JVM_OPTIONS = System.getProperty("rxprocess2.spawnServerJvmOptions",
+            "-Xmx32m -XX:+UseSerialGC -XX:TieredStopAtLevel=1");
+
 }
@@ -0,0 +1,260 @@
+package com.github.zella.rxprocess2;
+
+import com.github.zella.rxprocess2.common.TimeoutWheel;
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits number of concurrently running processes. Executions over limit wait in bounded FIFO queue without
+ * blocking threads, they are rejected with {@link RejectedExecutionException} when queue is full or when
+ * queue timeout expires. Process timeout starts only when execution is admitted.
+ * <pre>
+ * RxProcessExecutor executor = new RxProcessExecutor(8, 1000);
+ * Single&lt;Exit&gt; exit = executor.wrap(RxProcess.reactive(new ProcessBuilder("convert", ...))).asWaitDone();
+ * </pre>
+ * Queued executions are started on {@link Schedulers#io()} thread, when running process completes.
+ */
+public final class RxProcessExecutor {
+
+    private final int maxRunning;
+
+    private final int maxQueued;
+
+    private final long queueTimeoutMillis;
+
+    private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+
+    private int running = 0;
+
+    private long admitted = 0;
+
+    private long rejected = 0;
+
+    private long timedOut = 0;
+
+    /**
+     * @param maxRunning max number of running processes
+     * @param maxQueued  max number of waiting executions
+     */
+    public RxProcessExecutor(int maxRunning, int maxQueued) {
+        this(maxRunning, maxQueued, -1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxRunning   max number of running processes
+     * @param maxQueued    max number of waiting executions
+     * @param queueTimeout max time to wait in queue, -1 for no timeout
+     * @param timeUnit     timeUnits
+     */
+    public RxProcessExecutor(int maxRunning, int maxQueued, long queueTimeout, TimeUnit timeUnit) {
+        if (maxRunning < 1)
+            throw new IllegalArgumentException("maxRunning must be greater than 0");
+        if (maxQueued < 0)
+            throw new IllegalArgumentException("maxQueued must not be negative");
+        this.maxRunning = maxRunning;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeout == -1 ? -1 : timeUnit.toMillis(queueTimeout);
+    }
+
+    /**
+     * @return builder, which executions are admitted by this executor
+     */
+    public <T> IReactiveProcessBuilder<T> wrap(IReactiveProcessBuilder<T> builder) {
+        return new ForwardingReactiveProcessBuilder<T>(builder) {
+            @Override
+            protected <R> Single<R> decorate(Single<R> execution) {
+                return admit(execution);
+            }
+
+            @Override
+            protected <R> Observable<R> decorate(Observable<R> execution) {
+                return admit(execution);
+            }
+
+            @Override
+            protected <R> Flowable<R> decorate(Flowable<R> execution) {
+                return admit(execution);
+            }
+
+            @Override
+            public IReactiveProcess<T> biDirectional() {
+                return new ForwardingReactiveProcess<T>(delegate.biDirectional()) {
+                    @Override
+                    public Single<Exit> waitDone(long timeout, TimeUnit timeUnit) {
+                        return admit(delegate.waitDone(timeout, timeUnit));
+                    }
+
+                    @Override
+                    public Single<Exit> waitDone() {
+                        return admit(delegate.waitDone());
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @param execution process execution, subscribed when admitted
+     * @return Cold Single
+     */
+    public <R> Single<R> admit(Single<R> execution) {
+        return Single.defer(() -> {
+            Ticket ticket = new Ticket();
+            //free slot before result delivered, so subscriber sees it free
+            return ticket.admitted().andThen(execution).doOnEvent((result, error) -> ticket.close()).doFinally(ticket::close);
+        });
+    }
+
+    /**
+     * @param execution process execution, subscribed when admitted
+     * @return Cold Observable
+     */
+    public <R> Observable<R> admit(Observable<R> execution) {
+        return Observable.defer(() -> {
+            Ticket ticket = new Ticket();
+            //free slot before terminal event delivered, as for Single
+            return ticket.admitted().andThen(execution).doOnTerminate(ticket::close).doFinally(ticket::close);
+        });
+    }
+
+    /**
+     * @param execution process execution, subscribed when admitted
+     * @return Cold Flowable
+     */
+    public <R> Flowable<R> admit(Flowable<R> execution) {
+        return Flowable.defer(() -> {
+            Ticket ticket = new Ticket();
+            //free slot before terminal event delivered, as for Single
+            return ticket.admitted().andThen(execution).doOnTerminate(ticket::close).doFinally(ticket::close);
+        });
+    }
+
+    /**
+     * @return number of waiting executions
+     */
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of running executions
+     */
+    public synchronized int running() {
+        return running;
+    }
+
+    /**
+     * @return total number of admitted executions
+     */
+    public synchronized long admitted() {
+        return admitted;
+    }
+
+    /**
+     * @return total number of executions rejected because of full queue
+     */
+    public synchronized long rejected() {
+        return rejected;
+    }
+
+    /**
+     * @return total number of executions rejected because of queue timeout
+     */
+    public synchronized long timedOut() {
+        return timedOut;
+    }
+
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    /**
+     * Admission of single subscription. Closed exactly once via {@code doFinally}, whatever state it's in
+     */
+    private final class Ticket {
+
+        //guarded by executor
+        private int state = WAITING;
+
+        private CompletableEmitter emitter;
+
+        private volatile Disposable timeout = Disposables.disposed();
+
+        Completable admitted() {
+            return Completable.create(emitter -> {
+                boolean start = false;
+                boolean reject = false;
+                synchronized (RxProcessExecutor.this) {
+                    this.emitter = emitter;
+                    if (running < maxRunning && queue.isEmpty()) {
+                        state = RUNNING;
+                        running++;
+                        admitted++;
+                        start = true;
+                    } else if (queue.size() >= maxQueued) {
+                        state = DONE;
+                        rejected++;
+                        reject = true;
+                    } else {
+                        queue.add(this);
+                    }
+                }
+                if (start) {
+                    emitter.onComplete();
+                } else if (reject) {
+                    emitter.onError(new RejectedExecutionException("Executor queue is full: " + maxQueued));
+                } else if (queueTimeoutMillis != -1) {
+                    timeout = TimeoutWheel.shared().schedule(this::expire, queueTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+            });
+        }
+
+        private void expire() {
+            synchronized (RxProcessExecutor.this) {
+                if (state != WAITING)
+                    return;
+                state = DONE;
+                queue.remove(this);
+                timedOut++;
+            }
+            emitter.onError(new RejectedExecutionException("Executor queue timeout"));
+        }
+
+        void close() {
+            Ticket next = null;
+            synchronized (RxProcessExecutor.this) {
+                if (state == WAITING) {
+                    queue.remove(this);
+                } else if (state == RUNNING) {
+                    running--;
+                    next = queue.poll();
+                    if (next != null) {
+                        next.state = RUNNING;
+                        running++;
+                        admitted++;
+                    }
+                }
+                state = DONE;
+            }
+            timeout.dispose();
+            if (next != null) {
+                Ticket admittedTicket = next;
+                //don't run next execution on completing one thread, blocking api can block it
+                Schedulers.io().scheduleDirect(() -> {
+                    admittedTicket.timeout.dispose();
+                    admittedTicket.emitter.onComplete();
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.github.zella.rxprocess2;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.exceptions.MissingBackpressureException;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.FLOWABLE_BUFFER_CHUNKS;
+
+/**
+ * One execution, output of which is shared by many subscribers. Source is subscribed once, when enough subscribers
+ * subscribed or on {@link #connect()}, so process runs and its pipes are read once, whatever number of subscribers.
+ * <p>
+ * Last chunks are kept in bounded replay window, late subscriber gets them first, then live chunks. Every subscriber
+ * has bounded queue, when it's full {@link LagPolicy} decides what happens to that subscriber.
+ * <pre>
+ * SharedOutput shared = SharedOutput.builder().replayBytes(1024 * 1024).build(builder.asStdErrOutFlowable());
+ * shared.stdOut(LagPolicy.BLOCK).subscribe(parser);
+ * shared.stdOut(LagPolicy.DROP).subscribe(viewer);
+ * </pre>
+ */
+public final class SharedOutput {
+
+    /**
+     * What happens when subscriber doesn't keep up and its queue is full
+     */
+    public enum LagPolicy {
+        /**
+         * New chunks are dropped for this subscriber
+         */
+        DROP,
+        /**
+         * Source is not read until subscriber catches up, it throttles all subscribers and process
+         */
+        BLOCK,
+        /**
+         * Subscriber fails with {@link MissingBackpressureException} and is detached
+         */
+        ERROR
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final Flowable<ProcessChunk> source;
+
+    private final int replayChunks;
+
+    private final long replayBytes;
+
+    private final int bufferChunks;
+
+    private final int autoConnect;
+
+    //guarded by this
+    private final List<Inner> subscribers = new ArrayList<>();
+    private final ArrayDeque<ProcessChunk> replay = new ArrayDeque<>();
+    private long replayed;
+    private boolean connected;
+    private boolean done;
+    private Throwable error;
+    private Subscription upstream;
+    private long outstanding;
+    private boolean disposed;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private SharedOutput(Builder builder, Flowable<ProcessChunk> source) {
+        this.source = source;
+        this.replayChunks = builder.replayChunks;
+        this.replayBytes = builder.replayBytes;
+        this.bufferChunks = builder.bufferChunks;
+        this.autoConnect = builder.autoConnect;
+    }
+
+    /**
+     * @return stdout and stderr chunks, live ones and replay window for late subscriber
+     */
+    public Flowable<ProcessChunk> chunks(LagPolicy policy) {
+        return Flowable.fromPublisher(subscriber -> subscribe(subscriber, policy));
+    }
+
+    /**
+     * @return stdout chunks, as {@link #chunks(LagPolicy)}
+     */
+    public Flowable<byte[]> stdOut(LagPolicy policy) {
+        return chunks(policy).filter(c -> !c.isStdErr).map(c -> c.data);
+    }
+
+    /**
+     * Start execution without subscriber, chunks go to replay window
+     */
+    public void connect() {
+        boolean connect;
+        synchronized (this) {
+            connect = !connected && !disposed;
+            connected = true;
+        }
+        if (connect)
+            source.subscribe(new Upstream());
+    }
+
+    /**
+     * Cancel execution, subscribers fail with {@link CancellationException}
+     */
+    public void dispose() {
+        Subscription subscription;
+        List<Inner> current;
+        synchronized (this) {
+            if (disposed)
+                return;
+            disposed = true;
+            subscription = upstream;
+            replay.clear();
+            replayed = 0;
+            current = new ArrayList<>(subscribers);
+            subscribers.clear();
+            for (Inner inner : current)
+                inner.fail(new CancellationException("Shared output is disposed"));
+        }
+        if (subscription != null)
+            subscription.cancel();
+        for (Inner inner : current)
+            inner.drain();
+    }
+
+    public synchronized boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * @return number of current subscribers
+     */
+    public synchronized int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return total number of chunks dropped for lagging subscribers
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private void subscribe(Subscriber<? super ProcessChunk> subscriber, LagPolicy policy) {
+        Inner inner = new Inner(subscriber, policy);
+        subscriber.onSubscribe(inner);
+        boolean connect;
+        synchronized (this) {
+            if (disposed) {
+                inner.fail(new CancellationException("Shared output is disposed"));
+            } else {
+                inner.queue.addAll(replay);
+                inner.queued.addAndGet(replay.size());
+                if (done)
+                    inner.terminate(error);
+                else
+                    subscribers.add(inner);
+            }
+            connect = autoConnect > 0 && subscribers.size() >= autoConnect;
+        }
+        inner.drain();
+        if (connect)
+            connect();
+        requestUpstream();
+    }
+
+    private void onNext(ProcessChunk chunk) {
+        List<Inner> current;
+        //same lock as subscribe, so subscriber gets chunk either from replay or from queue
+        synchronized (this) {
+            if (disposed)
+                return;
+            outstanding--;
+            replay.add(chunk);
+            replayed += chunk.data.length;
+            while (replay.size() > replayChunks || (replayBytes != -1 && replayed > replayBytes))
+                replayed -= replay.poll().data.length;
+            current = new ArrayList<>(subscribers);
+            for (Inner inner : current) {
+                if (inner.queued.get() < bufferChunks || inner.policy == LagPolicy.BLOCK) {
+                    inner.queued.incrementAndGet();
+                    inner.queue.add(chunk);
+                } else if (inner.policy == LagPolicy.DROP) {
+                    dropped.increment();
+                } else {
+                    subscribers.remove(inner);
+                    inner.fail(new MissingBackpressureException("Subscriber lags more than " + bufferChunks + " chunks"));
+                }
+            }
+        }
+        for (Inner inner : current)
+            inner.drain();
+        requestUpstream();
+    }
+
+    private void onTerminate(Throwable e) {
+        List<Inner> current;
+        synchronized (this) {
+            if (disposed)
+                return;
+            done = true;
+            error = e;
+            current = new ArrayList<>(subscribers);
+            subscribers.clear();
+            for (Inner inner : current)
+                inner.terminate(e);
+        }
+        for (Inner inner : current)
+            inner.drain();
+    }
+
+    /**
+     * Request as many chunks as slowest blocking subscriber can queue
+     */
+    private void requestUpstream() {
+        long request;
+        Subscription subscription;
+        synchronized (this) {
+            if (upstream == null || done || disposed)
+                return;
+            long free = bufferChunks;
+            for (Inner inner : subscribers) {
+                if (inner.policy == LagPolicy.BLOCK)
+                    free = Math.min(free, bufferChunks - inner.queued.get());
+            }
+            request = free - outstanding;
+            if (request <= 0)
+                return;
+            outstanding += request;
+            subscription = upstream;
+        }
+        subscription.request(request);
+    }
+
+    private final class Upstream implements FlowableSubscriber<ProcessChunk> {
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            boolean cancel;
+            synchronized (SharedOutput.this) {
+                cancel = disposed;
+                upstream = s;
+            }
+            if (cancel)
+                s.cancel();
+            else
+                requestUpstream();
+        }
+
+        @Override
+        public void onNext(ProcessChunk chunk) {
+            SharedOutput.this.onNext(chunk);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            onTerminate(t);
+        }
+
+        @Override
+        public void onComplete() {
+            onTerminate(null);
+        }
+    }
+
+    /**
+     * Subscriber queue, drained by whichever thread adds chunk or requests them
+     */
+    private final class Inner implements Subscription {
+
+        final Subscriber<? super ProcessChunk> actual;
+
+        final LagPolicy policy;
+
+        final Queue<ProcessChunk> queue = new ConcurrentLinkedQueue<>();
+
+        final AtomicInteger queued = new AtomicInteger();
+
+        final AtomicLong requested = new AtomicLong();
+
+        final AtomicInteger wip = new AtomicInteger();
+
+        volatile boolean cancelled;
+
+        volatile boolean terminated;
+
+        volatile Throwable error;
+
+        Inner(Subscriber<? super ProcessChunk> actual, LagPolicy policy) {
+            this.actual = actual;
+            this.policy = policy;
+        }
+
+        /**
+         * Complete after queued chunks, or fail if {@code e} not null
+         */
+        void terminate(Throwable e) {
+            error = e;
+            terminated = true;
+        }
+
+        /**
+         * Fail without emitting queued chunks
+         */
+        void fail(Throwable e) {
+            queue.clear();
+            terminate(e);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                actual.onError(new IllegalArgumentException("Request must be positive: " + n));
+                return;
+            }
+            long current;
+            do {
+                current = requested.get();
+            } while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            synchronized (SharedOutput.this) {
+                subscribers.remove(this);
+            }
+            queue.clear();
+            requestUpstream();
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            int missed = 1;
+            boolean freed = false;
+            do {
+                while (!cancelled) {
+                    //read before queue, so chunks added before termination are emitted
+                    boolean terminal = terminated;
+                    if (requested.get() == 0 && !(terminal && queue.isEmpty()))
+                        break;
+                    ProcessChunk chunk = queue.poll();
+                    if (chunk == null) {
+                        if (terminal) {
+                            cancelled = true;
+                            if (error != null)
+                                actual.onError(error);
+                            else
+                                actual.onComplete();
+                        }
+                        break;
+                    }
+                    queued.decrementAndGet();
+                    freed = true;
+                    if (requested.get() != Long.MAX_VALUE)
+                        requested.decrementAndGet();
+                    actual.onNext(chunk);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+            if (freed && policy == LagPolicy.BLOCK)
+                requestUpstream();
+        }
+    }
+
+    public static final class Builder {
+
+        private int replayChunks = FLOWABLE_BUFFER_CHUNKS;
+
+        private long replayBytes = -1;
+
+        private int bufferChunks = FLOWABLE_BUFFER_CHUNKS;
+
+        private int autoConnect = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Start execution when {@code subscribers} subscribed, default - 1. 0 - only on {@link #connect()}
+         */
+        public Builder autoConnect(int subscribers) {
+            if (subscribers < 0)
+                throw new IllegalArgumentException("subscribers must not be negative");
+            this.autoConnect = subscribers;
+            return this;
+        }
+
+        /**
+         * Max chunks replayed to late subscriber, default - {@code rxprocess2.flowableBufferChunks}. 0 - no replay
+         */
+        public Builder replayChunks(int chunks) {
+            if (chunks < 0)
+                throw new IllegalArgumentException("chunks must not be negative");
+            this.replayChunks = chunks;
+            return this;
+        }
+
+        /**
+         * Max bytes replayed to late subscriber, unlimited by default
+         */
+        public Builder replayBytes(long bytes) {
+            if (bytes < 0)
+                throw new IllegalArgumentException("bytes must not be negative");
+            this.replayBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Chunks queued for every subscriber before its {@link LagPolicy} applies, default -
+         * {@code rxprocess2.flowableBufferChunks}
+         */
+        public Builder bufferChunks(int chunks) {
+            if (chunks < 1)
+                throw new IllegalArgumentException("chunks must be greater than 0");
+            this.bufferChunks = chunks;
+            return this;
+        }
+
+        /**
+         * @param source execution, e.g. {@link IReactiveProcessBuilder#asStdErrOutFlowable()}
+         */
+        public SharedOutput build(Flowable<ProcessChunk> source) {
+            return new SharedOutput(this, source);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.zella.rxprocess2.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.DEFAULT_READ_BUFFER;
+import static com.github.zella.rxprocess2.RxProcessConfig.READ_BUFFER_POOL_SIZE;
+
+/**
+ * Bounded pool of equally sized read buffers. Striped by thread to reduce contention, buffer always returns
+ * to stripe it was taken from. When stripe is empty new buffer allocated, when full released buffer left to GC.
+ */
+public final class BufferPool {
+
+    private static final class Holder {
+        static final BufferPool INSTANCE = new BufferPool(DEFAULT_READ_BUFFER, READ_BUFFER_POOL_SIZE,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return pool of {@code rxprocess2.readBuffer} sized buffers, max {@code rxprocess2.readBufferPoolSize} buffers
+     */
+    public static BufferPool shared() {
+        return Holder.INSTANCE;
+    }
+
+    private final int bufferSize;
+
+    private final List<ArrayBlockingQueue<byte[]>> stripes;
+
+    /**
+     * @param bufferSize size of each buffer
+     * @param maxBuffers max number of pooled buffers
+     * @param stripes    number of stripes
+     */
+    public BufferPool(int bufferSize, int maxBuffers, int stripes) {
+        if (bufferSize <= 0 || maxBuffers <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("Buffer size, max buffers and stripes must be greater than 0");
+        }
+        this.bufferSize = bufferSize;
+        int count = Math.min(stripes, maxBuffers);
+        this.stripes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            this.stripes.add(new ArrayBlockingQueue<>(Math.max(1, maxBuffers / count)));
+        }
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Take buffer from pool or allocate new one
+     */
+    public PooledBytes acquire() {
+        int stripe = (int) (Thread.currentThread().getId() % stripes.size());
+        byte[] buffer = stripes.get(stripe).poll();
+        if (buffer == null)
+            buffer = new byte[bufferSize];
+        return new PooledBytes(this, stripe, buffer);
+    }
+
+    void release(int stripe, byte[] buffer) {
+        stripes.get(stripe).offer(buffer);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.zella.rxprocess2.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed size ring buffer of primitive bytes. Holds last {@code capacity} written bytes, oldest bytes are overwritten.
+ * <p>
+ * Used for stderr tail capture. Writes are bulk {@link System#arraycopy} copies, no boxing.
+ */
+public class ByteRingBuffer {
+
+    private final byte[] buffer;
+
+    /**
+     * Array index of position following the last written byte
+     */
+    private int end = 0;
+
+    private int size = 0;
+
+    /**
+     * @param capacity max number of bytes to hold
+     * @throws IllegalArgumentException if the capacity is &lt; 1
+     */
+    public ByteRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be greater than 0");
+        }
+        this.buffer = new byte[capacity];
+    }
+
+    public void write(byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    public synchronized void write(byte[] data, int offset, int length) {
+        int capacity = buffer.length;
+        if (length >= capacity) {
+            //only tail of data fits
+            System.arraycopy(data, offset + length - capacity, buffer, 0, capacity);
+            end = 0;
+            size = capacity;
+            return;
+        }
+        int first = Math.min(length, capacity - end);
+        System.arraycopy(data, offset, buffer, end, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+        end = (end + length) % capacity;
+        size = Math.min(capacity, size + length);
+    }
+
+    /**
+     * Write remaining bytes of {@code data}, its position is not changed
+     */
+    public synchronized void write(ByteBuffer data) {
+        ByteBuffer src = data.duplicate();
+        int capacity = buffer.length;
+        int length = src.remaining();
+        if (length >= capacity) {
+            src.position(src.limit() - capacity);
+            src.get(buffer, 0, capacity);
+            end = 0;
+            size = capacity;
+            return;
+        }
+        int first = Math.min(length, capacity - end);
+        src.get(buffer, end, first);
+        src.get(buffer, 0, length - first);
+        end = (end + length) % capacity;
+        size = Math.min(capacity, size + length);
+    }
+
+    /**
+     * @return copy of buffered bytes, oldest first
+     */
+    public synchronized byte[] toByteArray() {
+        if (size == 0)
+            return ArrayUtils.EMPTY_BYTE_ARRAY;
+        int capacity = buffer.length;
+        byte[] result = new byte[size];
+        int start = (end - size + capacity) % capacity;
+        int first = Math.min(size, capacity - start);
+        System.arraycopy(buffer, start, result, 0, first);
+        System.arraycopy(buffer, 0, result, first, size - first);
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public synchronized void clear() {
+        end = 0;
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(toByteArray());
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.zella.rxprocess2.common;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Daemon threads for library callbacks: expired deadlines, which kill process and may block for graceful stop, and
+ * process exit notifications. Kept apart from {@link IoThreadPool}, readers of hung processes can fill io pool,
+ * but never delay timeouts. New thread created only if no idle one, idle threads stop after 60 seconds.
+ */
+public final class CallbackThreadPool {
+
+    private CallbackThreadPool() {
+    }
+
+    private static final class Holder {
+        static final ThreadPoolExecutor EXECUTOR = createExecutor();
+        static final Scheduler SCHEDULER = Schedulers.from(EXECUTOR);
+    }
+
+    public static Executor executor() {
+        return Holder.EXECUTOR;
+    }
+
+    public static Scheduler scheduler() {
+        return Holder.SCHEDULER;
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicLong createdThreads = new AtomicLong();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "rxprocess2-callback-" + createdThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.zella.rxprocess2.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects output chunks without re-copying on growth. Chunks are kept by reference, or copied into one array
+ * preallocated from expected size, so exact hint gives result without any extra copy.
+ * <p>
+ * Past spill threshold everything collected is written to temp file, and so are next chunks.
+ * Chunks must not be modified after {@link #add(byte[])}.
+ */
+public final class ChunkAccumulator {
+
+    /**
+     * Max array size which VM can allocate
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final long spillThreshold;
+
+    private final Path spillDirectory;
+
+    private byte[] presized;
+
+    private int presizedUsed;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+
+    private long size;
+
+    private Path file;
+
+    private FileChannel channel;
+
+    private boolean discarded;
+
+    private boolean finished;
+
+    /**
+     * @param expectedSize   expected total size, 0 - unknown
+     * @param spillThreshold spill to file when size exceeds it, -1 - never spill
+     * @param spillDirectory directory for temp file, null - fail instead of spill
+     */
+    public ChunkAccumulator(long expectedSize, long spillThreshold, Path spillDirectory) {
+        this.spillThreshold = spillThreshold == -1 ? MAX_ARRAY_SIZE : Math.min(spillThreshold, MAX_ARRAY_SIZE);
+        this.spillDirectory = spillDirectory;
+        if (expectedSize > 0 && expectedSize <= this.spillThreshold)
+            this.presized = new byte[(int) expectedSize];
+    }
+
+    public synchronized void add(byte[] bytes) throws IOException {
+        if (discarded || bytes.length == 0)
+            return;
+        if (channel == null && size + bytes.length > spillThreshold)
+            spill();
+        if (channel != null) {
+            write(ByteBuffer.wrap(bytes));
+        } else if (presized != null && chunks.isEmpty() && presizedUsed + bytes.length <= presized.length) {
+            System.arraycopy(bytes, 0, presized, presizedUsed, bytes.length);
+            presizedUsed += bytes.length;
+        } else {
+            chunks.add(bytes);
+        }
+        size += bytes.length;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return collected bytes, copied at most once. Accumulator must not be spilled
+     */
+    public synchronized byte[] toByteArray() {
+        if (file != null)
+            throw new IllegalStateException("Output is spilled to " + file);
+        if (presized != null && chunks.isEmpty())
+            return presizedUsed == presized.length ? presized : Arrays.copyOf(presized, presizedUsed);
+        if (presized == null && chunks.size() == 1)
+            return chunks.get(0);
+        byte[] result = new byte[(int) size];
+        int offset = 0;
+        if (presized != null) {
+            System.arraycopy(presized, 0, result, 0, presizedUsed);
+            offset = presizedUsed;
+        }
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, result, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return result;
+    }
+
+    /**
+     * @return spill file, null if not spilled. Caller owns it after {@link #finish()}
+     */
+    public synchronized Path file() {
+        return file;
+    }
+
+    /**
+     * Close spill file, {@link #discard()} has no effect after it
+     */
+    public synchronized ChunkAccumulator finish() throws IOException {
+        finished = true;
+        if (channel != null)
+            channel.close();
+        return this;
+    }
+
+    /**
+     * Drop collected bytes and delete spill file, if not finished. Next chunks are ignored
+     */
+    public synchronized void discard() {
+        if (finished)
+            return;
+        discarded = true;
+        presized = null;
+        chunks.clear();
+        if (file != null) {
+            try {
+                if (channel != null)
+                    channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        if (spillDirectory == null)
+            throw new IOException("Output of more than " + spillThreshold + " bytes doesn't fit array");
+        file = Files.createTempFile(spillDirectory, "rxprocess2-", ".out");
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            if (presized != null)
+                write(ByteBuffer.wrap(presized, 0, presizedUsed));
+            for (byte[] chunk : chunks)
+                write(ByteBuffer.wrap(chunk));
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+        presized = null;
+        chunks.clear();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -0,0 +1,383 @@
+package com.github.zella.rxprocess2.common;
+
+import com.github.zella.rxprocess2.ProcessBufferChunk;
+import com.github.zella.rxprocess2.ProcessChunk;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Merges adjacent chunks of same stream up to {@code maxBytes}, splits larger chunks to {@code maxBytes} pieces.
+ * Merged chunk is emitted when it's full, when other stream chunk arrives, when {@code maxDelay} passed since its
+ * first byte, or on termination. With zero delay chunks are only split.
+ * <p>
+ * Not thread safe, operators guard it by lock and emit its chunks outside of it. Delays are checked by {@link TimeoutWheel#shared()}, so they are
+ * rounded up to its tick.
+ */
+public final class ChunkCoalescer {
+
+    private final int maxBytes;
+
+    private final Consumer<ProcessChunk> output;
+
+    //owned arrays, merged on flush
+    private final List<byte[]> pending = new ArrayList<>();
+
+    private int pendingBytes = 0;
+
+    private boolean pendingStdErr;
+
+    ChunkCoalescer(int maxBytes, Consumer<ProcessChunk> output) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Max bytes must be greater than 0");
+        this.maxBytes = maxBytes;
+        this.output = output;
+    }
+
+    /**
+     * @param data owned by coalescer
+     * @return true if there are pending bytes after call
+     */
+    boolean add(byte[] data, boolean isStdErr) {
+        if (pendingBytes > 0 && pendingStdErr != isStdErr)
+            flush();
+        int offset = 0;
+        int remaining = data.length;
+        if (pendingBytes + remaining > maxBytes) {
+            flush();
+            while (remaining > maxBytes) {
+                output.accept(new ProcessChunk(Arrays.copyOfRange(data, offset, offset + maxBytes), isStdErr));
+                offset += maxBytes;
+                remaining -= maxBytes;
+            }
+        }
+        if (remaining > 0) {
+            pending.add(offset == 0 ? data : Arrays.copyOfRange(data, offset, data.length));
+            pendingBytes += remaining;
+            pendingStdErr = isStdErr;
+        }
+        if (pendingBytes == maxBytes)
+            flush();
+        return pendingBytes > 0;
+    }
+
+    void flush() {
+        if (pendingBytes == 0)
+            return;
+        byte[] merged;
+        if (pending.size() == 1) {
+            merged = pending.get(0);
+        } else {
+            merged = new byte[pendingBytes];
+            int offset = 0;
+            for (byte[] part : pending) {
+                System.arraycopy(part, 0, merged, offset, part.length);
+                offset += part.length;
+            }
+        }
+        pending.clear();
+        pendingBytes = 0;
+        output.accept(new ProcessChunk(merged, pendingStdErr));
+    }
+
+    public static Observable<ProcessChunk> coalesce(Observable<ProcessChunk> source, int maxBytes, long maxDelay, TimeUnit timeUnit) {
+        return Observable.create(emitter -> {
+            Object lock = new Object();
+            //guarded by lock, emitted outside of it by single drainer, timer flush may run concurrently with upstream
+            ArrayDeque<ProcessChunk> ready = new ArrayDeque<>();
+            ChunkCoalescer coalescer = new ChunkCoalescer(maxBytes, ready::add);
+            Disposable[] timer = {Disposables.disposed()};
+            boolean[] done = {false};
+            Throwable[] error = {null};
+            AtomicInteger wip = new AtomicInteger();
+            Runnable drain = () -> {
+                if (wip.getAndIncrement() != 0)
+                    return;
+                int missed = 1;
+                do {
+                    for (; ; ) {
+                        ProcessChunk chunk;
+                        boolean terminal;
+                        synchronized (lock) {
+                            chunk = ready.poll();
+                            terminal = chunk == null && done[0];
+                        }
+                        if (chunk != null) {
+                            emitter.onNext(chunk);
+                        } else {
+                            if (terminal) {
+                                if (error[0] != null)
+                                    emitter.tryOnError(error[0]);
+                                else
+                                    emitter.onComplete();
+                            }
+                            break;
+                        }
+                    }
+                    missed = wip.addAndGet(-missed);
+                } while (missed != 0);
+            };
+            Runnable flush = () -> {
+                synchronized (lock) {
+                    if (emitter.isDisposed() || done[0])
+                        return;
+                    coalescer.flush();
+                }
+                drain.run();
+            };
+            Disposable upstream = source.subscribe(chunk -> {
+                synchronized (lock) {
+                    boolean wasEmpty = coalescer.pendingBytes == 0;
+                    if (!coalescer.add(chunk.data, chunk.isStdErr)) {
+                        timer[0].dispose();
+                    } else if (maxDelay <= 0) {
+                        coalescer.flush();
+                    } else if (wasEmpty || timer[0].isDisposed()) {
+                        timer[0].dispose();
+                        timer[0] = TimeoutWheel.shared().schedule(flush, maxDelay, timeUnit);
+                    }
+                }
+                drain.run();
+            }, e -> {
+                synchronized (lock) {
+                    timer[0].dispose();
+                    coalescer.flush();
+                    done[0] = true;
+                    error[0] = e;
+                }
+                drain.run();
+            }, () -> {
+                synchronized (lock) {
+                    timer[0].dispose();
+                    coalescer.flush();
+                    done[0] = true;
+                }
+                drain.run();
+            });
+            emitter.setCancellable(() -> {
+                upstream.dispose();
+                synchronized (lock) {
+                    timer[0].dispose();
+                    ready.clear();
+                }
+            });
+        });
+    }
+
+    /**
+     * Zero copy chunks are copied, except split only mode, where they are sliced without copying
+     */
+    public static Observable<ProcessBufferChunk> coalesceBuffers(Observable<ProcessBufferChunk> source, int maxBytes, long maxDelay, TimeUnit timeUnit) {
+        if (maxDelay <= 0)
+            return source.concatMapIterable(chunk -> slices(chunk, maxBytes));
+        return coalesce(source.map(ProcessBufferChunk::toProcessChunk), maxBytes, maxDelay, timeUnit)
+                .map(ProcessBufferChunk::wrap);
+    }
+
+    private static List<ProcessBufferChunk> slices(ProcessBufferChunk chunk, int maxBytes) {
+        ByteBuffer data = chunk.data;
+        if (data.remaining() <= maxBytes)
+            return Collections.singletonList(chunk);
+        List<ProcessBufferChunk> slices = new ArrayList<>();
+        for (int position = data.position(); position < data.limit(); position += maxBytes) {
+            ByteBuffer slice = data.duplicate();
+            slice.position(position);
+            slice.limit(Math.min(data.limit(), position + maxBytes));
+            slices.add(new ProcessBufferChunk(slice.slice(), chunk.isStdErr));
+        }
+        return slices;
+    }
+
+    /**
+     * Backpressure aware: upstream is requested one chunk at a time while there is no coalesced chunk waiting for
+     * demand, so read ahead is bounded by {@code maxBytes} plus one chunk.
+     */
+    public static Flowable<ProcessChunk> coalesce(Flowable<ProcessChunk> source, int maxBytes, long maxDelay, TimeUnit timeUnit) {
+        return new Flowable<ProcessChunk>() {
+            @Override
+            protected void subscribeActual(Subscriber<? super ProcessChunk> s) {
+                source.subscribe(new CoalesceSubscriber(s, maxBytes, maxDelay, timeUnit));
+            }
+        };
+    }
+
+    private static final class CoalesceSubscriber implements FlowableSubscriber<ProcessChunk>, Subscription {
+
+        private final Subscriber<? super ProcessChunk> downstream;
+
+        private final long maxDelay;
+
+        private final TimeUnit timeUnit;
+
+        //guarded by this, emitted outside of lock by single drainer
+        private final ArrayDeque<ProcessChunk> ready = new ArrayDeque<>();
+
+        private final ChunkCoalescer coalescer;
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private Subscription upstream;
+
+        private long requested;
+
+        private boolean upstreamRequested;
+
+        private boolean done;
+
+        private Throwable error;
+
+        private boolean terminated;
+
+        private boolean cancelled;
+
+        private Disposable timer = Disposables.disposed();
+
+        CoalesceSubscriber(Subscriber<? super ProcessChunk> downstream, int maxBytes, long maxDelay, TimeUnit timeUnit) {
+            this.downstream = downstream;
+            this.maxDelay = maxDelay;
+            this.timeUnit = timeUnit;
+            this.coalescer = new ChunkCoalescer(maxBytes, ready::add);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(ProcessChunk chunk) {
+            synchronized (this) {
+                upstreamRequested = false;
+                if (cancelled)
+                    return;
+                boolean wasEmpty = coalescer.pendingBytes == 0;
+                if (!coalescer.add(chunk.data, chunk.isStdErr)) {
+                    timer.dispose();
+                } else if (maxDelay <= 0) {
+                    coalescer.flush();
+                } else if (wasEmpty || timer.isDisposed()) {
+                    timer.dispose();
+                    timer = TimeoutWheel.shared().schedule(this::onTimer, maxDelay, timeUnit);
+                }
+            }
+            drain();
+        }
+
+        private void onTimer() {
+            synchronized (this) {
+                if (cancelled || done)
+                    return;
+                coalescer.flush();
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            terminate(t);
+        }
+
+        @Override
+        public void onComplete() {
+            terminate(null);
+        }
+
+        private void terminate(Throwable t) {
+            synchronized (this) {
+                timer.dispose();
+                if (cancelled)
+                    return;
+                coalescer.flush();
+                done = true;
+                error = t;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                onError(new IllegalArgumentException("Request must be positive: " + n));
+                return;
+            }
+            synchronized (this) {
+                requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                timer.dispose();
+                ready.clear();
+            }
+            upstream.cancel();
+        }
+
+        private boolean needUpstream() {
+            if (cancelled || done || upstreamRequested || !ready.isEmpty() || requested == 0)
+                return false;
+            upstreamRequested = true;
+            return true;
+        }
+
+        //same as SharedOutput: downstream may request or cancel from onNext, timer flushes concurrently with upstream
+        private void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            int missed = 1;
+            do {
+                for (; ; ) {
+                    ProcessChunk chunk = null;
+                    boolean terminal = false;
+                    boolean requestMore = false;
+                    synchronized (this) {
+                        if (cancelled)
+                            break;
+                        if (requested > 0 && !ready.isEmpty()) {
+                            requested--;
+                            chunk = ready.poll();
+                        } else if (done && ready.isEmpty() && !terminated) {
+                            terminated = true;
+                            terminal = true;
+                        } else {
+                            requestMore = needUpstream();
+                        }
+                    }
+                    if (chunk != null) {
+                        downstream.onNext(chunk);
+                        continue;
+                    }
+                    if (terminal) {
+                        if (error != null)
+                            downstream.onError(error);
+                        else
+                            downstream.onComplete();
+                    }
+                    //upstream may emit synchronously, it's drained by next pass
+                    if (requestMore)
+                        upstream.request(1);
+                    break;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.zella.rxprocess2.common;
+
+import io.reactivex.functions.BooleanSupplier;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bridges reactive streams demand to producer thread, that can't be suspended other way (blocking pipe reader).
+ * Producer takes permit per item and waits while no permits left, so pipe is not read and kernel pipe buffer
+ * throttles the child process. Only for producer own thread, not one shared with other producers (NuProcess callback)
+ * and not under lock other producers take.
+ */
+public final class DemandGate {
+
+    private long permits;
+
+    private boolean released = false;
+
+    /**
+     * @param permits initial permits, i.e. how many items can be produced ahead of demand
+     */
+    public DemandGate(long permits) {
+        this.permits = permits;
+    }
+
+    /**
+     * Add permits, usually called from {@code Subscription.request(n)}
+     */
+    public synchronized void request(long n) {
+        if (n <= 0)
+            return;
+        permits += n;
+        if (permits < 0)
+            permits = Long.MAX_VALUE;
+        notifyAll();
+    }
+
+    /**
+     * Wait for permit.
+     *
+     * @return false if gate released (downstream cancelled or done) or thread interrupted, item should be dropped
+     */
+    public synchronized boolean acquire() {
+        try {
+            while (permits == 0 && !released) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return take();
+    }
+
+    /**
+     * Wait for permit while {@code waitWhile} is true, checking it at given interval
+     *
+     * @return false if gate released, {@code waitWhile} became false or thread interrupted, item should be dropped
+     */
+    public synchronized boolean acquire(BooleanSupplier waitWhile, long checkInterval, TimeUnit unit) {
+        try {
+            while (permits == 0 && !released) {
+                if (!waitWhile.getAsBoolean())
+                    return false;
+                unit.timedWait(this, checkInterval);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+        return take();
+    }
+
+    /**
+     * Release all waiting producers, further acquires fail
+     */
+    public synchronized void release() {
+        released = true;
+        notifyAll();
+    }
+
+    private boolean take() {
+        if (released)
+            return false;
+        if (permits != Long.MAX_VALUE)
+            permits--;
+        return true;
+    }
+}
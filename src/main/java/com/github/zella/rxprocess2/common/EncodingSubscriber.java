@@ -0,0 +1,36 @@
+package com.github.zella.rxprocess2.common;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+final class EncodingSubscriber implements Subscriber<byte[]> {
+
+    private final Framing framing;
+
+    private final Subscriber<byte[]> downstream;
+
+    EncodingSubscriber(Framing framing, Subscriber<byte[]> downstream) {
+        this.framing = framing;
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        downstream.onSubscribe(s);
+    }
+
+    @Override
+    public void onNext(byte[] message) {
+        downstream.onNext(framing.encode(message));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        downstream.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+        downstream.onComplete();
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.zella.rxprocess2.common;
+
+import java.util.List;
+
+/**
+ * Stateful decoder, accumulates stream chunks and extracts complete messages. Not thread safe
+ */
+public interface FrameDecoder {
+
+    /**
+     * @param chunk next stream chunk
+     * @return complete messages, possibly empty
+     * @throws IllegalStateException on malformed stream
+     * @throws com.github.zella.rxprocess2.errors.FrameTooLongException on frame longer than max frame length
+     */
+    List<byte[]> decode(byte[] chunk);
+}
@@ -0,0 +1,104 @@
+package com.github.zella.rxprocess2.common;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Observable;
+import org.reactivestreams.Subscriber;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.MAX_FRAME_LENGTH;
+
+/**
+ * Message framing over process stdin/stdout byte stream
+ * <pre>
+ * IReactiveProcess&lt;Process&gt; process = builder.biDirectional();
+ * Subscriber&lt;byte[]&gt; requests = Framing.varint().encoder(process.stdIn());
+ * Flowable&lt;byte[]&gt; responses = Framing.varint().decode(process.stdOut());
+ * </pre>
+ */
+public interface Framing {
+
+    /**
+     * @return message with framing applied, ready to write to stream
+     */
+    byte[] encode(byte[] message);
+
+    /**
+     * @return new stateful decoder, one per stream
+     */
+    FrameDecoder newDecoder();
+
+    /**
+     * @param stdIn process stdin, see {@link com.github.zella.rxprocess2.IReactiveProcess#stdIn()}
+     * @return subscriber, which encodes messages and passes them to {@code stdIn}
+     */
+    default Subscriber<byte[]> encoder(Subscriber<byte[]> stdIn) {
+        return new EncodingSubscriber(this, stdIn);
+    }
+
+    /**
+     * @return transformer of stream chunks to whole messages. Malformed stream raise {@link IllegalStateException},
+     * frame longer than max frame length raise {@link com.github.zella.rxprocess2.errors.FrameTooLongException}
+     */
+    default FlowableTransformer<byte[], byte[]> decoder() {
+        return upstream -> Flowable.defer(() -> {
+            FrameDecoder decoder = newDecoder();
+            return upstream.concatMapIterable(decoder::decode);
+        });
+    }
+
+    /**
+     * @param stdOut process stdout, see {@link com.github.zella.rxprocess2.IReactiveProcess#stdOut()}
+     * @return whole messages. Chunks are buffered until requested
+     */
+    default Flowable<byte[]> decode(Observable<byte[]> stdOut) {
+        return stdOut.toFlowable(BackpressureStrategy.BUFFER).compose(decoder());
+    }
+
+    /**
+     * Messages delimited with {@code '\n'}, delimiter is not part of message. Max frame length is
+     * {@code rxprocess2.maxFrameLength}
+     */
+    static Framing newline() {
+        return newline(MAX_FRAME_LENGTH);
+    }
+
+    static Framing newline(int maxFrameLength) {
+        return new SentinelFraming(new byte[]{'\n'}, maxFrameLength);
+    }
+
+    /**
+     * Messages delimited with {@code sentinel} bytes, sentinel is not part of message. Max frame length is
+     * {@code rxprocess2.maxFrameLength}
+     */
+    static Framing sentinel(byte[] sentinel) {
+        return sentinel(sentinel, MAX_FRAME_LENGTH);
+    }
+
+    static Framing sentinel(byte[] sentinel, int maxFrameLength) {
+        return new SentinelFraming(sentinel, maxFrameLength);
+    }
+
+    /**
+     * Messages prefixed with 4 byte big-endian length. Max frame length is {@code rxprocess2.maxFrameLength}
+     */
+    static Framing lengthPrefixed() {
+        return lengthPrefixed(MAX_FRAME_LENGTH);
+    }
+
+    static Framing lengthPrefixed(int maxFrameLength) {
+        return new PrefixedFraming(false, maxFrameLength);
+    }
+
+    /**
+     * Messages prefixed with unsigned varint (LEB128, as in protobuf) length. Max frame length is
+     * {@code rxprocess2.maxFrameLength}
+     */
+    static Framing varint() {
+        return varint(MAX_FRAME_LENGTH);
+    }
+
+    static Framing varint(int maxFrameLength) {
+        return new PrefixedFraming(true, maxFrameLength);
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.zella.rxprocess2.common;
+
+import java.util.Arrays;
+
+/**
+ * Accumulation buffer for frame decoders. Consumed bytes are discarded by compaction on next append
+ */
+final class GrowableBuffer {
+
+    byte[] array = new byte[256];
+
+    int start = 0;
+
+    int end = 0;
+
+    void append(byte[] chunk, int offset, int length) {
+        if (end + length > array.length) {
+            int size = end - start;
+            if (size + length > array.length)
+                array = Arrays.copyOfRange(array, start, start + Math.max(array.length * 2, size + length));
+            else
+                System.arraycopy(array, start, array, 0, size);
+            start = 0;
+            end = size;
+        }
+        System.arraycopy(chunk, offset, array, end, length);
+        end += length;
+    }
+
+    int size() {
+        return end - start;
+    }
+
+    /**
+     * Take {@code length} bytes from start
+     */
+    byte[] take(int length) {
+        byte[] result = Arrays.copyOfRange(array, start, start + length);
+        start += length;
+        return result;
+    }
+
+    void skip(int length) {
+        start += length;
+    }
+}
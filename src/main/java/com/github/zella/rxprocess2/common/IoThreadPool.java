@@ -0,0 +1,156 @@
+package com.github.zella.rxprocess2.common;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.IO_POOL_KEEP_ALIVE_SECONDS;
+import static com.github.zella.rxprocess2.RxProcessConfig.IO_POOL_MAX_THREADS;
+
+/**
+ * Bounded pool of daemon threads for blocking stream io (pipe reads, stdin writes). Idle threads are reused
+ * and stopped after keep alive timeout. New thread created only if no idle one, when max threads reached
+ * tasks wait in queue.
+ * <p>
+ * Every running process holds thread per stream until stream closed, so max threads should be at least 3x of
+ * concurrent processes, otherwise queued reader can't drain its pipe and child process can stall. Shared pool
+ * default fits about 2.5k processes, threads are created only on demand. Use
+ * {@link com.github.zella.rxprocess2.RxProcessExecutor} to limit concurrent processes, {@link #delayedTasks()}
+ * shows whether pool was too small.
+ */
+public final class IoThreadPool implements Executor {
+
+    private static final class Holder {
+        static final IoThreadPool INSTANCE = new IoThreadPool(IO_POOL_MAX_THREADS, IO_POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return pool of max {@code rxprocess2.ioPoolMaxThreads} threads, default 8192
+     */
+    public static IoThreadPool shared() {
+        return Holder.INSTANCE;
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private final Scheduler scheduler;
+
+    private final AtomicLong createdThreads = new AtomicLong();
+
+    private final AtomicLong delayedTasks = new AtomicLong();
+
+    /**
+     * @param maxThreads max number of threads
+     * @param keepAlive  idle thread keep alive time
+     * @param timeUnit   timeUnits
+     */
+    public IoThreadPool(int maxThreads, long keepAlive, TimeUnit timeUnit) {
+        if (maxThreads <= 0)
+            throw new IllegalArgumentException("Max threads must be greater than 0");
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "rxprocess2-io-" + createdThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        //idle thread takes task if any, otherwise new thread created. Queued only when max threads reached
+        this.executor = new ThreadPoolExecutor(0, maxThreads, keepAlive, timeUnit,
+                new HandOffQueue(), factory, (r, e) -> {
+            delayedTasks.incrementAndGet();
+            e.getQueue().add(r);
+        });
+        this.scheduler = Schedulers.from(executor);
+    }
+
+    private static final class HandOffQueue extends LinkedTransferQueue<Runnable> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean offer(Runnable r) {
+            return tryTransfer(r);
+        }
+
+        @Override
+        public boolean add(Runnable r) {
+            return super.offer(r);
+        }
+    }
+
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * @return number of threads in pool
+     */
+    public int poolSize() {
+        return executor.getPoolSize();
+    }
+
+    /**
+     * @return number of threads running tasks
+     */
+    public int activeThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return max number of threads simultaneously in pool
+     */
+    public int largestPoolSize() {
+        return executor.getLargestPoolSize();
+    }
+
+    /**
+     * @return total number of created threads
+     */
+    public long createdThreads() {
+        return createdThreads.get();
+    }
+
+    /**
+     * @return number of tasks waiting for thread
+     */
+    public int queuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return total number of tasks that waited in queue because max threads were busy, for stream readers it means
+     * stalled processes
+     */
+    public long delayedTasks() {
+        return delayedTasks.get();
+    }
+
+    /**
+     * @return approximate total number of completed tasks
+     */
+    public long completedTasks() {
+        return executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public String toString() {
+        return "IoThreadPool{" +
+                "poolSize=" + poolSize() +
+                ", activeThreads=" + activeThreads() +
+                ", largestPoolSize=" + largestPoolSize() +
+                ", createdThreads=" + createdThreads() +
+                ", queuedTasks=" + queuedTasks() +
+                ", delayedTasks=" + delayedTasks() +
+                ", completedTasks=" + completedTasks() +
+                '}';
+    }
+}
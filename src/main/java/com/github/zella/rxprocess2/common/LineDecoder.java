@@ -0,0 +1,153 @@
+package com.github.zella.rxprocess2.common;
+
+import com.github.zella.rxprocess2.errors.LineTooLongException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incremental decoder of byte stream to lines. Bytes are decoded with streaming {@link CharsetDecoder}, so multi
+ * byte characters split between chunks are decoded correctly. Decoded chars are scanned for {@code '\n'} in
+ * place, only emitted lines are allocated. Trailing {@code '\r'} is removed. Malformed input is replaced,
+ * as in {@link String#String(byte[], Charset)}. Not thread safe
+ */
+public final class LineDecoder {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final CharsetDecoder decoder;
+
+    private final int maxLineLength;
+
+    /**
+     * Decoded chars, [0, position) - pending line
+     */
+    private CharBuffer chars;
+
+    /**
+     * Undecoded tail of previous chunk (incomplete character)
+     */
+    private ByteBuffer carry = EMPTY;
+
+    private int scanned = 0;
+
+    /**
+     * @param maxLineLength max line length in chars, {@link LineTooLongException} thrown on longer line
+     */
+    public LineDecoder(Charset charset, int maxLineLength) {
+        if (maxLineLength <= 0)
+            throw new IllegalArgumentException("Max line length must be greater than 0");
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.maxLineLength = maxLineLength;
+        this.chars = CharBuffer.allocate(Math.min(maxLineLength + 2, 1024));
+    }
+
+    /**
+     * @param chunk next bytes, its position is not changed
+     * @return complete lines, possibly empty
+     */
+    public List<String> decode(ByteBuffer chunk) {
+        ByteBuffer in = chunk.duplicate();
+        if (carry.hasRemaining()) {
+            ByteBuffer joined = ByteBuffer.allocate(carry.remaining() + in.remaining());
+            joined.put(carry).put(in).flip();
+            in = joined;
+        }
+        List<String> lines = Collections.emptyList();
+        while (true) {
+            CoderResult result = decoder.decode(in, chars, false);
+            lines = scan(lines);
+            if (!result.isOverflow())
+                break;
+            grow();
+        }
+        carry = in.hasRemaining() ? copy(in) : EMPTY;
+        return lines;
+    }
+
+    public List<String> decode(byte[] chunk) {
+        return decode(ByteBuffer.wrap(chunk));
+    }
+
+    /**
+     * End of stream, flush decoder
+     *
+     * @return remaining lines, including last line without {@code '\n'}
+     */
+    public List<String> finish() {
+        List<String> lines = Collections.emptyList();
+        while (decoder.decode(carry, chars, true).isOverflow()) {
+            lines = scan(lines);
+            grow();
+        }
+        while (decoder.flush(chars).isOverflow()) {
+            lines = scan(lines);
+            grow();
+        }
+        lines = scan(lines);
+        if (chars.position() > 0) {
+            if (lines.isEmpty())
+                lines = new ArrayList<>(1);
+            lines.add(line(0, chars.position()));
+            chars.clear();
+        }
+        decoder.reset();
+        carry = EMPTY;
+        scanned = 0;
+        return lines;
+    }
+
+    /**
+     * Extract complete lines from decoded chars, keep pending line at start of buffer
+     */
+    private List<String> scan(List<String> lines) {
+        char[] array = chars.array();
+        int end = chars.position();
+        int start = 0;
+        for (int i = scanned; i < end; i++) {
+            if (array[i] == '\n') {
+                int length = i > start && array[i - 1] == '\r' ? i - 1 - start : i - start;
+                if (lines.isEmpty())
+                    lines = new ArrayList<>(4);
+                lines.add(line(start, length));
+                start = i + 1;
+            }
+        }
+        if (end - start > maxLineLength + 1)
+            throw new LineTooLongException(maxLineLength);
+        if (start > 0) {
+            System.arraycopy(array, start, array, 0, end - start);
+            chars.position(end - start);
+        }
+        scanned = chars.position();
+        return lines;
+    }
+
+    private String line(int start, int length) {
+        if (length > maxLineLength)
+            throw new LineTooLongException(maxLineLength);
+        return new String(chars.array(), start, length);
+    }
+
+    private void grow() {
+        CharBuffer bigger = CharBuffer.allocate(chars.capacity() * 2);
+        chars.flip();
+        bigger.put(chars);
+        chars = bigger;
+    }
+
+    private static ByteBuffer copy(ByteBuffer in) {
+        ByteBuffer copy = ByteBuffer.allocate(in.remaining());
+        copy.put(in).flip();
+        return copy;
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.zella.rxprocess2.common;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.MAX_LINE_LENGTH;
+
+/**
+ * Transformers of byte chunks to text lines, see {@link LineDecoder}
+ * <pre>
+ * builder.asStdOut().compose(LineFramer.lines(StandardCharsets.UTF_8))
+ * </pre>
+ */
+public final class LineFramer {
+
+    private LineFramer() {
+    }
+
+    /**
+     * Max line length is {@code rxprocess2.maxLineLength}
+     */
+    public static ObservableTransformer<byte[], String> lines(Charset charset) {
+        return lines(charset, MAX_LINE_LENGTH);
+    }
+
+    public static ObservableTransformer<byte[], String> lines(Charset charset, int maxLineLength) {
+        return upstream -> bufferLines(upstream.map(ByteBuffer::wrap), charset, maxLineLength);
+    }
+
+    /**
+     * Max line length is {@code rxprocess2.maxLineLength}
+     */
+    public static FlowableTransformer<byte[], String> linesFlowable(Charset charset) {
+        return linesFlowable(charset, MAX_LINE_LENGTH);
+    }
+
+    public static FlowableTransformer<byte[], String> linesFlowable(Charset charset, int maxLineLength) {
+        return upstream -> Flowable.defer(() -> {
+            LineDecoder decoder = new LineDecoder(charset, maxLineLength);
+            return upstream.concatMapIterable(decoder::decode)
+                    .concatWith(Flowable.defer(() -> Flowable.fromIterable(decoder.finish())));
+        });
+    }
+
+    /**
+     * Buffers are decoded synchronously in {@code onNext}, so zero copy buffers can be passed
+     */
+    public static Observable<String> bufferLines(Observable<ByteBuffer> upstream, Charset charset, int maxLineLength) {
+        return Observable.defer(() -> {
+            LineDecoder decoder = new LineDecoder(charset, maxLineLength);
+            return upstream.concatMapIterable(decoder::decode)
+                    .concatWith(Observable.defer(() -> Observable.fromIterable(decoder.finish())));
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.zella.rxprocess2.common;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bytes backed by {@link BufferPool} buffer. Valid until {@link #release()}, after that buffer can be reused
+ * by another read. Use {@link #toByteArray()} to keep data.
+ */
+public final class PooledBytes {
+
+    private final BufferPool pool;
+
+    private final int stripe;
+
+    private final byte[] buffer;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private int length;
+
+    PooledBytes(BufferPool pool, int stripe, byte[] buffer) {
+        this.pool = pool;
+        this.stripe = stripe;
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return backing buffer, only first {@link #length()} bytes are valid
+     */
+    public byte[] array() {
+        if (released.get())
+            throw new IllegalStateException("Buffer already released");
+        return buffer;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    void length(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return copy of valid bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(array(), length);
+    }
+
+    /**
+     * Release and return valid bytes. Full buffer is handed off as is and not returned to pool, so full reads are not
+     * copied, as without pool
+     */
+    byte[] takeByteArray() {
+        if (length == buffer.length && released.compareAndSet(false, true))
+            return buffer;
+        try {
+            return toByteArray();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Return buffer to pool. Idempotent
+     */
+    public void release() {
+        if (released.compareAndSet(false, true))
+            pool.release(stripe, buffer);
+    }
+
+    @Override
+    public String toString() {
+        return new String(array(), 0, length);
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.zella.rxprocess2.common;
+
+import com.github.zella.rxprocess2.errors.FrameTooLongException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Messages prefixed with length, either 4 byte big-endian int or unsigned varint (LEB128)
+ */
+final class PrefixedFraming implements Framing {
+
+    private final boolean varint;
+
+    private final int maxFrameLength;
+
+    PrefixedFraming(boolean varint, int maxFrameLength) {
+        if (maxFrameLength <= 0)
+            throw new IllegalArgumentException("Max frame length must be greater than 0");
+        this.varint = varint;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public byte[] encode(byte[] message) {
+        int length = message.length;
+        int header = varint ? varintSize(length) : 4;
+        byte[] result = new byte[header + length];
+        if (varint) {
+            int i = 0;
+            while ((length & ~0x7F) != 0) {
+                result[i++] = (byte) ((length & 0x7F) | 0x80);
+                length >>>= 7;
+            }
+            result[i] = (byte) length;
+        } else {
+            result[0] = (byte) (length >>> 24);
+            result[1] = (byte) (length >>> 16);
+            result[2] = (byte) (length >>> 8);
+            result[3] = (byte) length;
+        }
+        System.arraycopy(message, 0, result, header, message.length);
+        return result;
+    }
+
+    @Override
+    public FrameDecoder newDecoder() {
+        GrowableBuffer buffer = new GrowableBuffer();
+        return chunk -> {
+            List<byte[]> frames = Collections.emptyList();
+            if (buffer.size() == 0) {
+                //frames which fit in chunk are copied from it, only incomplete tail goes through buffer
+                int from = 0;
+                long frame;
+                while ((frame = readFrame(chunk, from, chunk.length)) != -1) {
+                    int start = from + (int) (frame >>> 32);
+                    if (frames.isEmpty())
+                        frames = new ArrayList<>(4);
+                    frames.add(Arrays.copyOfRange(chunk, start, start + (int) frame));
+                    from = start + (int) frame;
+                }
+                buffer.append(chunk, from, chunk.length - from);
+                return frames;
+            }
+            buffer.append(chunk, 0, chunk.length);
+            long frame;
+            while ((frame = readFrame(buffer.array, buffer.start, buffer.end)) != -1) {
+                buffer.skip((int) (frame >>> 32));
+                if (frames.isEmpty())
+                    frames = new ArrayList<>(4);
+                frames.add(buffer.take((int) frame));
+            }
+            return frames;
+        };
+    }
+
+    /**
+     * @return header length in high 32 bits and message length in low 32 bits, or -1 if frame is incomplete
+     */
+    private long readFrame(byte[] array, int from, int end) {
+        int header;
+        int length;
+        if (varint) {
+            length = 0;
+            header = 0;
+            while (true) {
+                if (from + header >= end)
+                    return -1;
+                byte b = array[from + header];
+                length |= (b & 0x7F) << (7 * header);
+                header++;
+                if ((b & 0x80) == 0)
+                    break;
+                if (header == 5)
+                    throw new IllegalStateException("Malformed varint frame length");
+            }
+        } else {
+            header = 4;
+            if (end - from < header)
+                return -1;
+            length = (array[from] & 0xFF) << 24 | (array[from + 1] & 0xFF) << 16
+                    | (array[from + 2] & 0xFF) << 8 | (array[from + 3] & 0xFF);
+        }
+        if (length < 0)
+            throw new IllegalStateException("Negative frame length: " + length);
+        //checked on header, before body is buffered
+        if (length > maxFrameLength)
+            throw new FrameTooLongException(maxFrameLength);
+        if (end - from - header < length)
+            return -1;
+        return ((long) header << 32) | length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -1,54 +1,76 @@
 package com.github.zella.rxprocess2.common;
 
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
-import io.reactivex.functions.BiConsumer;
 import io.reactivex.functions.Function;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import java.util.concurrent.Callable;
 
 import static com.github.zella.rxprocess2.RxProcessConfig.DEFAULT_READ_BUFFER;
+import static com.github.zella.rxprocess2.RxProcessConfig.POOLED_READ_BUFFERS;
 
 public class RxUtils {
     public static Single<byte[]> collect(Observable<byte[]> source) {
-        return source.collect(BosCreatorHolder.INSTANCE, BosCollectorHolder.INSTANCE).map(BosToArrayHolder.INSTANCE);
+        return collect(source, 0);
     }
 
-    private static final class BosCreatorHolder {
-        static final Callable<ByteArrayOutputStream> INSTANCE = new Callable<ByteArrayOutputStream>() {
-
-            @Override
-            public ByteArrayOutputStream call() {
-                return new ByteArrayOutputStream();
-            }
-        };
+    /**
+     * Collect into chunk list, or into single array when {@code expectedSize} known, so result is copied at most once
+     *
+     * @param expectedSize expected total size, 0 - unknown
+     */
+    public static Single<byte[]> collect(Observable<byte[]> source, long expectedSize) {
+        return accumulate(source, expectedSize, -1, null).map(ChunkAccumulatorToArrayHolder.INSTANCE);
     }
 
-    private static final class BosCollectorHolder {
-        static final BiConsumer<ByteArrayOutputStream, byte[]> INSTANCE = new BiConsumer<ByteArrayOutputStream, byte[]>() {
-
-            @Override
-            public void accept(ByteArrayOutputStream bos, byte[] bytes) throws IOException {
-                bos.write(bytes);
-            }
-        };
+    /**
+     * Collect into {@link ChunkAccumulator}, spill file is deleted on error and dispose
+     */
+    public static Single<ChunkAccumulator> accumulate(Observable<byte[]> source, long expectedSize,
+                                                      long spillThreshold, Path spillDirectory) {
+        return Single.defer(() -> {
+            ChunkAccumulator accumulator = new ChunkAccumulator(expectedSize, spillThreshold, spillDirectory);
+            return source
+                    .doOnNext(accumulator::add)
+                    .ignoreElements()
+                    .toSingle(accumulator::finish)
+                    .doOnError(e -> accumulator.discard())
+                    .doOnDispose(accumulator::discard);
+        });
     }
 
-    private static final class BosToArrayHolder {
-        static final Function<ByteArrayOutputStream, byte[]> INSTANCE = new Function<ByteArrayOutputStream, byte[]>() {
+    private static final class ChunkAccumulatorToArrayHolder {
+        static final Function<ChunkAccumulator, byte[]> INSTANCE = new Function<ChunkAccumulator, byte[]>() {
             @Override
-            public byte[] apply(ByteArrayOutputStream bos) {
-                return bos.toByteArray();
+            public byte[] apply(ChunkAccumulator accumulator) {
+                return accumulator.toByteArray();
             }
         };
     }
 
     public static Observable<byte[]> bytes(final InputStream is) {
-        return Observable.generate(emitter -> {
+        return bytesFlowable(is).toObservable();
+    }
+
+    /**
+     * Reads stream only when requested, so unconsumed output stays in pipe
+     * <p>
+     * With {@code rxprocess2.pooledReadBuffers} reads go to pooled buffer and only partial reads are copied
+     * out, full buffer is handed off and replaced in pool
+     */
+    public static Flowable<byte[]> bytesFlowable(final InputStream is) {
+        if (POOLED_READ_BUFFERS)
+            return pooledBytes(is, BufferPool.shared()).map(PooledBytesToArrayHolder.INSTANCE);
+        return Flowable.generate(emitter -> {
             byte[] buffer = new byte[DEFAULT_READ_BUFFER];
             int count = is.read(buffer);
             if (count == -1) {
@@ -61,4 +83,93 @@ public class RxUtils {
         });
     }
 
+    /**
+     * Reads stream into buffers from pool, without copying. Consumer must {@link PooledBytes#release()} every item,
+     * when it done with it.
+     */
+    public static Flowable<PooledBytes> pooledBytes(final InputStream is, final BufferPool pool) {
+        return Flowable.generate(emitter -> {
+            PooledBytes bytes = pool.acquire();
+            int count;
+            try {
+                count = is.read(bytes.array());
+            } catch (IOException e) {
+                bytes.release();
+                throw e;
+            }
+            if (count == -1) {
+                bytes.release();
+                emitter.onComplete();
+            } else {
+                bytes.length(count);
+                emitter.onNext(bytes);
+            }
+        });
+    }
+
+    private static final class PooledBytesToArrayHolder {
+        static final Function<PooledBytes, byte[]> INSTANCE = new Function<PooledBytes, byte[]>() {
+            @Override
+            public byte[] apply(PooledBytes bytes) {
+                return bytes.takeByteArray();
+            }
+        };
+    }
+
+    /**
+     * Reads file on every subscription, only when requested
+     */
+    public static Flowable<ByteBuffer> read(final Path file) {
+        return Flowable.using(
+                () -> FileChannel.open(file, StandardOpenOption.READ),
+                channel -> Flowable.<ByteBuffer>generate(emitter -> {
+                    ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_READ_BUFFER);
+                    if (channel.read(buffer) == -1) {
+                        emitter.onComplete();
+                    } else {
+                        buffer.flip();
+                        emitter.onNext(buffer);
+                    }
+                }),
+                FileChannel::close);
+    }
+
+    /**
+     * Writes source to stream, next buffer requested only after previous one written. Stream closed on termination
+     */
+    public static Completable write(final Flowable<ByteBuffer> source, final OutputStream os) {
+        return source
+                .concatMapCompletable(buffer -> Completable.fromAction(() -> {
+                    if (buffer.hasArray()) {
+                        os.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    } else {
+                        byte[] bytes = new byte[buffer.remaining()];
+                        buffer.duplicate().get(bytes);
+                        os.write(bytes);
+                    }
+                    os.flush();
+                }), 1)
+                .doFinally(() -> {
+                    try {
+                        os.close();
+                    } catch (IOException ignored) {
+                        //process already closed stdin
+                    }
+                });
+    }
+
+    /**
+     * @return last {@code size} bytes of file
+     */
+    public static byte[] tail(final Path file, final int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, length));
+            channel.position(length - buffer.capacity());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            }
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
 }
@@ -0,0 +1,94 @@
+package com.github.zella.rxprocess2.common;
+
+import com.github.zella.rxprocess2.errors.FrameTooLongException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+final class SentinelFraming implements Framing {
+
+    private final byte[] sentinel;
+
+    private final int maxFrameLength;
+
+    SentinelFraming(byte[] sentinel, int maxFrameLength) {
+        if (sentinel.length == 0)
+            throw new IllegalArgumentException("Sentinel must not be empty");
+        if (maxFrameLength <= 0)
+            throw new IllegalArgumentException("Max frame length must be greater than 0");
+        this.sentinel = sentinel.clone();
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public byte[] encode(byte[] message) {
+        if (indexOf(message, 0, message.length, sentinel) != -1)
+            throw new IllegalArgumentException("Message contains sentinel");
+        byte[] result = new byte[message.length + sentinel.length];
+        System.arraycopy(message, 0, result, 0, message.length);
+        System.arraycopy(sentinel, 0, result, message.length, sentinel.length);
+        return result;
+    }
+
+    @Override
+    public FrameDecoder newDecoder() {
+        GrowableBuffer buffer = new GrowableBuffer();
+        return chunk -> {
+            List<byte[]> frames = Collections.emptyList();
+            int idx;
+            if (buffer.size() == 0) {
+                //frames which fit in chunk are copied from it, only incomplete tail goes through buffer
+                int from = 0;
+                while ((idx = indexOf(chunk, from, chunk.length, sentinel)) != -1) {
+                    checkLength(idx - from);
+                    if (frames.isEmpty())
+                        frames = new ArrayList<>(4);
+                    frames.add(Arrays.copyOfRange(chunk, from, idx));
+                    from = idx + sentinel.length;
+                }
+                checkTail(chunk.length - from);
+                buffer.append(chunk, from, chunk.length - from);
+                return frames;
+            }
+            buffer.append(chunk, 0, chunk.length);
+            //previous bytes are already scanned, except possible sentinel start
+            int from = Math.max(buffer.start, buffer.end - chunk.length - sentinel.length + 1);
+            while ((idx = indexOf(buffer.array, from, buffer.end, sentinel)) != -1) {
+                checkLength(idx - buffer.start);
+                if (frames.isEmpty())
+                    frames = new ArrayList<>(4);
+                frames.add(buffer.take(idx - buffer.start));
+                buffer.skip(sentinel.length);
+                from = buffer.start;
+            }
+            checkTail(buffer.size());
+            return frames;
+        };
+    }
+
+    private void checkLength(int length) {
+        if (length > maxFrameLength)
+            throw new FrameTooLongException(maxFrameLength);
+    }
+
+    /**
+     * Incomplete frame may end with sentinel prefix
+     */
+    private void checkTail(int length) {
+        checkLength(length - sentinel.length + 1);
+    }
+
+    static int indexOf(byte[] array, int from, int to, byte[] target) {
+        outer:
+        for (int i = from; i <= to - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (array[i + j] != target[j])
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
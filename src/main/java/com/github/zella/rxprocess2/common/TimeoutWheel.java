@@ -0,0 +1,209 @@
+package com.github.zella.rxprocess2.common;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.TIMEOUT_TICK_MILLIS;
+
+/**
+ * Hashed timing wheel for process deadlines. Single daemon thread advances wheel every tick, scheduling and
+ * cancelling is O(1) and lock free, so tens of thousands of pending deadlines cost only their entries.
+ * Thread parks while there is nothing scheduled.
+ * <p>
+ * Deadlines never fire early and fire at most one tick late. Expired tasks run on executor, not on wheel thread,
+ * they may block (graceful process stop).
+ */
+public final class TimeoutWheel {
+
+    private static final class Holder {
+        static final TimeoutWheel INSTANCE = new TimeoutWheel(TIMEOUT_TICK_MILLIS, TimeUnit.MILLISECONDS, 512, CallbackThreadPool.executor());
+    }
+
+    /**
+     * @return wheel with {@code rxprocess2.timeoutTickMillis} tick, default 10. Tasks run on
+     * {@link CallbackThreadPool}, not behind stream readers
+     */
+    public static TimeoutWheel shared() {
+        return Holder.INSTANCE;
+    }
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+
+    private final int mask;
+
+    private final Executor executor;
+
+    private final ConcurrentLinkedQueue<Entry> added = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    //accessed only by wheel thread
+    private final List<List<Entry>> buckets;
+
+    private volatile Thread worker;
+
+    private volatile boolean idle;
+
+    /**
+     * @param tick      wheel resolution
+     * @param wheelSize number of buckets, rounded up to power of two
+     * @param executor  runs expired tasks
+     */
+    public TimeoutWheel(long tick, TimeUnit timeUnit, int wheelSize, Executor executor) {
+        if (tick <= 0)
+            throw new IllegalArgumentException("Tick must be greater than 0");
+        if (wheelSize <= 0)
+            throw new IllegalArgumentException("Wheel size must be greater than 0");
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize)
+            size <<= 1;
+        this.tickNanos = timeUnit.toNanos(tick);
+        this.mask = size - 1;
+        this.executor = executor;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            buckets.add(new ArrayList<>());
+    }
+
+    /**
+     * @return disposable, which cancels task if it isn't expired yet
+     */
+    public Disposable schedule(Runnable task, long delay, TimeUnit timeUnit) {
+        Entry entry = new Entry(task, System.nanoTime() + Math.max(0, timeUnit.toNanos(delay)));
+        pending.incrementAndGet();
+        added.add(entry);
+        if (started.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::run, "rxprocess2-timeout");
+            thread.setDaemon(true);
+            worker = thread;
+            thread.start();
+        } else if (idle) {
+            LockSupport.unpark(worker);
+        }
+        return entry;
+    }
+
+    /**
+     * @param error creates error on deadline
+     * @return Completable, which fails with error after delay. Compose it with {@code takeUntil}
+     */
+    public Completable deadline(long delay, TimeUnit timeUnit, Callable<? extends Throwable> error) {
+        return Completable.create(emitter -> emitter.setDisposable(schedule(() -> {
+            Throwable e;
+            try {
+                e = error.call();
+            } catch (Throwable t) {
+                e = t;
+            }
+            emitter.tryOnError(e);
+        }, delay, timeUnit)));
+    }
+
+    /**
+     * @return number of scheduled tasks, not yet expired or cancelled
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        long tick = 0;
+        while (true) {
+            if (pending.get() == 0) {
+                idle = true;
+                //recheck, schedule could miss idle flag
+                while (pending.get() == 0)
+                    LockSupport.park(this);
+                idle = false;
+                start = System.nanoTime();
+                tick = 0;
+            }
+            long sleep;
+            while ((sleep = start + tick * tickNanos - System.nanoTime()) > 0)
+                LockSupport.parkNanos(this, sleep);
+            transferAdded(start, tick);
+            expire(buckets.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    private void transferAdded(long start, long tick) {
+        Entry entry;
+        while ((entry = added.poll()) != null) {
+            if (entry.state.get() != PENDING)
+                continue;
+            long elapsed = entry.deadline - start;
+            long target = Math.max(tick, elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos);
+            entry.rounds = (target - tick) / buckets.size();
+            buckets.get((int) (target & mask)).add(entry);
+        }
+    }
+
+    private void expire(List<Entry> bucket) {
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            Entry entry = bucket.get(i);
+            boolean remove = entry.state.get() != PENDING;
+            if (!remove && entry.rounds-- <= 0) {
+                remove = true;
+                if (entry.state.compareAndSet(PENDING, EXPIRED)) {
+                    pending.decrementAndGet();
+                    try {
+                        executor.execute(entry.task);
+                    } catch (Throwable e) {
+                        Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+                    }
+                }
+            }
+            if (remove) {
+                int last = bucket.size() - 1;
+                bucket.set(i, bucket.get(last));
+                bucket.remove(last);
+            }
+        }
+    }
+
+    private final class Entry implements Disposable {
+
+        final Runnable task;
+
+        final long deadline;
+
+        final AtomicInteger state = new AtomicInteger(PENDING);
+
+        //accessed only by wheel thread
+        long rounds;
+
+        Entry(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void dispose() {
+            if (state.compareAndSet(PENDING, CANCELLED))
+                pending.decrementAndGet();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return state.get() != PENDING;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.zella.rxprocess2.common;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads (JDK 21+) io scheduler. Library targets Java 8, so virtual thread api is accessed via reflection.
+ * <p>
+ * Note, that pipe reads capture carrier thread, JDK compensates it by growing carrier pool up to
+ * {@code jdk.virtualThreadScheduler.maxPoolSize}.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    private static final class Holder {
+        static final ExecutorService EXECUTOR = createExecutor();
+        static final Scheduler SCHEDULER = EXECUTOR == null ? null : Schedulers.from(EXECUTOR);
+    }
+
+    /**
+     * @return true if running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return Holder.EXECUTOR != null;
+    }
+
+    /**
+     * @return scheduler, which runs every task on new virtual thread
+     * @throws UnsupportedOperationException if virtual threads not supported
+     */
+    public static Scheduler scheduler() {
+        if (!isSupported())
+            throw new UnsupportedOperationException("Virtual threads require JDK 21+, running " + System.getProperty("java.version"));
+        return Holder.SCHEDULER;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "rxprocess2-vio-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            ExecutorService executor = (ExecutorService) newExecutor.invoke(null, factory);
+            //preview api in JDK 19-20 throws here
+            executor.submit(() -> {
+            }).get();
+            return executor;
+        } catch (Exception | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.zella.rxprocess2.errors;
+
+public class FrameTooLongException extends ProcessException {
+
+    public FrameTooLongException(int maxFrameLength) {
+        super(Integer.MIN_VALUE, "Frame exceeds max length: " + maxFrameLength);
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.zella.rxprocess2.errors;
+
+public class LineTooLongException extends ProcessException {
+
+    public LineTooLongException(int maxLineLength) {
+        super(Integer.MIN_VALUE, "Line exceeds max length: " + maxLineLength);
+    }
+}
@@ -4,7 +4,7 @@ package com.github.zella.rxprocess2.errors;
  * Basic class for rxprocess2 exceptions. Msg contains stderr,
  * <p>
  * Max stderr size can be set with "rxprocess2.stderrBuffer" property, default 1024 bytes.
- * Note - buffer backed with circular fifo
+ * Note - buffer backed with byte ring buffer
  */
 public class ProcessException extends RuntimeException {
 
@@ -3,64 +3,95 @@ package com.github.zella.rxprocess2.impl.javalang;
 import com.github.zella.rxprocess2.BaseReactiveProcess;
 import com.github.zella.rxprocess2.Exit;
 import com.github.zella.rxprocess2.ProcessChunk;
-import com.github.zella.rxprocess2.common.ArrayUtils;
 import com.github.zella.rxprocess2.common.RxUtils;
+import com.github.zella.rxprocess2.common.TimeoutWheel;
 import com.github.zella.rxprocess2.errors.ProcessException;
 import com.github.zella.rxprocess2.errors.ProcessTimeoutException;
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
+import com.github.zella.rxprocess2.metrics.RxProcessMetrics;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.functions.Cancellable;
-import io.reactivex.schedulers.Schedulers;
+import io.reactivex.functions.Function;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-import static com.github.zella.rxprocess2.RxProcessConfig.GRACEFULL_STOP_SECONDS;
-
 public class JavaReactiveProcess extends BaseReactiveProcess<Process> {
 
 
     private final ProcessBuilder builder;
 
-    JavaReactiveProcess(ProcessBuilder builder) {
-        this.builder = builder;
+    private final Scheduler ioScheduler;
 
-    }
+    private final Function<ProcessBuilder, Process> launcher;
 
-    private Cancellable destroyProcess(Process process) {
-        return () -> {
-            if (GRACEFULL_STOP_SECONDS == -1) {
-                process.destroyForcibly();
-            } else {
-                process.destroy();
-                if (!process.waitFor(GRACEFULL_STOP_SECONDS, TimeUnit.SECONDS))
-                    process.destroyForcibly();
-            }
-        };
-    }
+    private final RxProcessMetrics metrics;
+
+    private final boolean processStats;
 
+    JavaReactiveProcess(ProcessBuilder builder, Scheduler ioScheduler, Function<ProcessBuilder, Process> launcher,
+                        RxProcessMetrics metrics, boolean processStats) {
+        super(true);
+        this.builder = builder;
+        this.ioScheduler = ioScheduler;
+        this.launcher = launcher;
+        this.metrics = metrics;
+        this.processStats = processStats;
+    }
 
     @Override
     public Single<Exit> waitDone(long timeout, TimeUnit timeUnit) {
+        return Single.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics, processStats);
+            return waitDone(timeout, timeUnit, tracker)
+                    .map(exit -> exit.withStats(tracker.stats()));
+        });
+    }
+
+    private Single<Exit> waitDone(long timeout, TimeUnit timeUnit, ProcessTracker tracker) {
         return Single.<Exit>create(emitter -> {
 
-            Process process = builder.start();
+            Process process = JavaReactiveProcessBuilder.start(launcher, builder, tracker);
+            Cancellable destroy = JavaReactiveProcessBuilder.destroyProcess(process, tracker);
 
             startedSubject.onNext(process);
             startedSubject.onComplete();
 
-            CountDownLatch waitOut = new CountDownLatch(2);
+            //completed when stdout and stderr read and process exited, no thread waits for it
+            Runnable done = ProcessExits.afterCalls(3, () -> {
+                int exitValue = process.exitValue();
+                tracker.exited(exitValue);
+                synchronized (emitter) {
+                    if (exitValue != 0) {
+                        String err = new String(stderrBuffer.toByteArray());
+                        emitError(new ProcessException(exitValue, err));
+                        if ((!emitter.isDisposed())) {
+                            emitter.onSuccess(new Exit(exitValue, new ProcessException(exitValue, err)));
+                        }
+                    } else {
+                        emitComplete();
+                        if ((!emitter.isDisposed())) {
+                            emitter.onSuccess(new Exit(0));
+                        }
+                    }
+                }
+            });
 
-            emitter.setCancellable(destroyProcess(process));
+            emitter.setCancellable(() -> {
+                tracker.cancelled();
+                destroy.cancel();
+            });
 
             OutputStream stdin = process.getOutputStream();
             InputStream stdout = process.getInputStream();
             InputStream stderr = process.getErrorStream();
 
+            //stdin writes can block, don't block caller, it can be stdout reader
             stdinProcessor
-                    .subscribeOn(Schedulers.newThread())
+                    .observeOn(ioScheduler)
                     .subscribe(bytes -> {
                                 stdin.write(bytes);
                                 stdin.flush();
@@ -69,15 +100,15 @@ public class JavaReactiveProcess extends BaseReactiveProcess<Process> {
                             stdin::close);
 
             RxUtils.bytes(stderr)
-                    .doFinally(waitOut::countDown)
-                    .subscribeOn(Schedulers.newThread())
+                    .doFinally(done::run)
+                    .subscribeOn(ioScheduler)
                     .subscribe(b -> {
+                        //reader waits for demand on own io thread, not under lock
+                        boolean toFlowable = awaitFlowableDemand();
                         synchronized (emitter) {
-                            //backpressure should be ok
-                            stdoutStdErrSubject.onNext(new ProcessChunk(b, true));
-                            for (byte b1 : b) {
-                                stderrBuffer.add(b1);
-                            }
+                            tracker.chunk(true, b.length);
+                            emitChunk(new ProcessChunk(b, true), toFlowable);
+                            stderrBuffer.write(b);
                         }
                     }, err -> {
 
@@ -86,42 +117,27 @@ public class JavaReactiveProcess extends BaseReactiveProcess<Process> {
                     });
 
             RxUtils.bytes(stdout)
-                    .doFinally(waitOut::countDown)
-                    .subscribeOn(Schedulers.newThread())
+                    .doFinally(done::run)
+                    .subscribeOn(ioScheduler)
                     .subscribe(b -> {
+                        boolean toFlowable = awaitFlowableDemand();
                         synchronized (emitter) {
-                            stdoutStdErrSubject.onNext(new ProcessChunk(b, false));
+                            tracker.chunk(false, b.length);
+                            emitChunk(new ProcessChunk(b, false), toFlowable);
                         }
                     }, err -> {
                     }, () -> {
                     });
 
-            if (timeout != -1)
-                waitOut.await(timeout, timeUnit);
-            else
-                waitOut.await();
-
-
-            int exitValue = process.waitFor();
-            synchronized (emitter) {
-                if (exitValue != 0) {
-                    String err = new String(ArrayUtils.toPrimitive(stderrBuffer.toArray(new Byte[0])));
-                    stdoutStdErrSubject.onError(new ProcessException(exitValue, err));
-                    if ((!emitter.isDisposed())) {
-                        emitter.onSuccess(new Exit(exitValue, new ProcessException(exitValue, err)));
-                    }
-                } else {
-                    stdoutStdErrSubject.onComplete();
-                    if ((!emitter.isDisposed())) {
-                        emitter.onSuccess(new Exit(0));
-                    }
-                }
-            }
+            ProcessExits.onExit(process, ioScheduler, done);
         }).compose(s -> {
             //TODO revision
             if (timeout == -1) return s;
             else
-                return s.timeout(timeout, timeUnit).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
+                return s.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                    tracker.timedOut();
+                    return new TimeoutException();
+                })).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
                         ? new ProcessTimeoutException(Integer.MIN_VALUE)
                         : new ProcessException(Integer.MIN_VALUE, e.getMessage()))
                 );
@@ -4,90 +4,159 @@ import com.github.zella.rxprocess2.BaseReactiveProcessBuilder;
 import com.github.zella.rxprocess2.Exit;
 import com.github.zella.rxprocess2.IReactiveProcess;
 import com.github.zella.rxprocess2.ProcessChunk;
-import com.github.zella.rxprocess2.common.ArrayUtils;
-import com.github.zella.rxprocess2.common.CircularFifoQueue;
+import com.github.zella.rxprocess2.common.ByteRingBuffer;
+import com.github.zella.rxprocess2.common.IoThreadPool;
 import com.github.zella.rxprocess2.common.RxUtils;
+import com.github.zella.rxprocess2.common.TimeoutWheel;
 import com.github.zella.rxprocess2.errors.ProcessException;
 import com.github.zella.rxprocess2.errors.ProcessTimeoutException;
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.functions.Cancellable;
-import io.reactivex.schedulers.Schedulers;
+import io.reactivex.functions.Function;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.Collection;
-import java.util.concurrent.CountDownLatch;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.github.zella.rxprocess2.RxProcessConfig.FLOWABLE_BUFFER_CHUNKS;
 import static com.github.zella.rxprocess2.RxProcessConfig.GRACEFULL_STOP_SECONDS;
 import static com.github.zella.rxprocess2.RxProcessConfig.STDERR_BUFF_SIZE;
 
 
 public class JavaReactiveProcessBuilder extends BaseReactiveProcessBuilder<Process> {
 
+    private static final File NULL_FILE = new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+
+    private static final Method PID = pidMethod();
+
     private final ProcessBuilder builder;
 
+    private final Scheduler ioScheduler;
+
+    private final Function<ProcessBuilder, Process> launcher;
+
     public JavaReactiveProcessBuilder(ProcessBuilder builder) {
+        this(builder, IoThreadPool.shared().scheduler());
+    }
+
+    /**
+     * @param ioScheduler runs blocking stream reads and writes, one task per stream
+     */
+    public JavaReactiveProcessBuilder(ProcessBuilder builder, Scheduler ioScheduler) {
+        this(builder, ioScheduler, ProcessBuilder::start);
+    }
+
+    /**
+     * @param ioScheduler runs blocking stream reads and writes, one task per stream
+     * @param launcher    starts process from builder, e.g. {@link com.github.zella.rxprocess2.spawn.SpawnServer#spawn(ProcessBuilder)}
+     */
+    public JavaReactiveProcessBuilder(ProcessBuilder builder, Scheduler ioScheduler, Function<ProcessBuilder, Process> launcher) {
         this.builder = builder;
+        this.ioScheduler = ioScheduler;
+        this.launcher = launcher;
     }
 
     @Override
     public Single<Exit> asWaitDone(long timeout, TimeUnit timeUnit) {
+        return waitDone(builder, null, timeout, timeUnit);
+    }
+
+    @Override
+    public Single<Exit> asStdOutToFile(Path file, long timeout, TimeUnit timeUnit) {
+        return Single.defer(() -> waitDone(copyBuilder().redirectOutput(ProcessBuilder.Redirect.to(file.toFile())),
+                null, timeout, timeUnit));
+    }
+
+    @Override
+    public Single<Exit> asStdErrToFile(Path file, long timeout, TimeUnit timeUnit) {
+        return Single.defer(() -> waitDone(copyBuilder()
+                        .redirectOutput(ProcessBuilder.Redirect.to(NULL_FILE))
+                        .redirectError(ProcessBuilder.Redirect.to(file.toFile())),
+                file, timeout, timeUnit));
+    }
+
+    /**
+     * @param stderrFile if stderr redirected to file, its tail is read from there
+     */
+    private Single<Exit> waitDone(ProcessBuilder builder, Path stderrFile, long timeout, TimeUnit timeUnit) {
+        return Single.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics(), processStats);
+            return waitDone(builder, stderrFile, timeout, timeUnit, tracker)
+                    .map(exit -> exit.withStats(tracker.stats()));
+        });
+    }
+
+    private Single<Exit> waitDone(ProcessBuilder builder, Path stderrFile, long timeout, TimeUnit timeUnit, ProcessTracker tracker) {
         return Single.<Exit>create(emitter -> {
 
-            Collection<Byte> stderrBuffer = new CircularFifoQueue<>(STDERR_BUFF_SIZE);
+            ByteRingBuffer stderrBuffer = new ByteRingBuffer(STDERR_BUFF_SIZE);
 
-            Process process = builder.start();
+            Process process = start(launcher, builder, tracker);
+            Cancellable destroy = destroyProcess(process, tracker);
 
-            emitter.setCancellable(destroyProcess(process));
+            emitter.setCancellable(() -> {
+                tracker.cancelled();
+                destroy.cancel();
+            });
 
             InputStream stderr = process.getErrorStream();
 
-            CountDownLatch waitOut = new CountDownLatch(1);
+            //completed when stderr read and process exited, no thread waits for it
+            Runnable done = ProcessExits.afterCalls(2, () -> {
+                int exitValue = process.exitValue();
+                if (emitter.isDisposed())
+                    return;
+                tracker.exited(exitValue);
+                if (exitValue != 0) {
+                    synchronized (emitter) {
+                        try {
+                            String err = stderrFile == null
+                                    ? new String(stderrBuffer.toByteArray())
+                                    : new String(RxUtils.tail(stderrFile, STDERR_BUFF_SIZE));
+                            emitter.onSuccess(new Exit(exitValue, new ProcessException(exitValue, err)));
+                        } catch (IOException e) {
+                            emitter.tryOnError(e);
+                        }
+                    }
+                } else {
+                    emitter.onSuccess(new Exit(0));
+                }
+            });
 
             RxUtils.bytes(stderr)
-                    .doFinally(waitOut::countDown)
-                    .subscribeOn(Schedulers.newThread())
+                    .doFinally(done::run)
+                    .subscribeOn(ioScheduler)
                     .subscribe(b -> {
                         synchronized (emitter) {
-                            for (byte b1 : b) {
-                                stderrBuffer.add(b1);
-                            }
+                            stderrBuffer.write(b);
+                            tracker.chunk(true, b.length);
                         }
                     }, err -> {
                     }, () -> {
                     });
 
-            if (stdin.length > 0) {
-                OutputStream procStdin = process.getOutputStream();
-                procStdin.write(stdin);
-                procStdin.close();
-            }
-
-            if (timeout != -1)
-                waitOut.await(timeout, timeUnit);
-            else
-                waitOut.await();
+            writeStdin(process);
 
-            int exitValue = process.waitFor();
-
-            if (!emitter.isDisposed()) {
-                if (exitValue != 0) {
-                    synchronized (emitter) {
-                        String err = new String(ArrayUtils.toPrimitive(stderrBuffer.toArray(new Byte[0])));
-                        emitter.onSuccess(new Exit(exitValue, new ProcessException(exitValue, err)));
-                    }
-                } else {
-                    emitter.onSuccess(new Exit(0));
-                }
-            }
+            ProcessExits.onExit(process, ioScheduler, done);
 
         }).compose(s -> {
             if (timeout == -1) return s;
             else
-                return s.timeout(timeout, timeUnit).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
+                return s.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                    tracker.timedOut();
+                    return new TimeoutException();
+                })).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
                         ? new ProcessTimeoutException(Integer.MIN_VALUE)
                         : new ProcessException(Integer.MIN_VALUE, e.getMessage()))
                 );
@@ -97,40 +166,133 @@ public class JavaReactiveProcessBuilder extends BaseReactiveProcessBuilder<Proce
 
     @Override
     public IReactiveProcess<Process> biDirectional() {
-        return new JavaReactiveProcess(builder);
+        return new JavaReactiveProcess(builder, ioScheduler, launcher, metrics(), processStats).withCoalescing(coalescing);
+    }
+
+    /**
+     * Copy of builder, so redirects don't affect other executions
+     */
+    private ProcessBuilder copyBuilder() {
+        ProcessBuilder copy = new ProcessBuilder(builder.command())
+                .directory(builder.directory())
+                .redirectErrorStream(builder.redirectErrorStream())
+                .redirectInput(builder.redirectInput());
+        copy.environment().clear();
+        copy.environment().putAll(builder.environment());
+        return copy;
+    }
+
+    /**
+     * Stdin written in separate thread, concurrently with output reading
+     */
+    private void writeStdin(Process process) {
+        Flowable<ByteBuffer> source = stdinSource();
+        if (source != null) {
+            RxUtils.write(source, process.getOutputStream())
+                    .subscribeOn(ioScheduler)
+                    .subscribe(() -> {
+                    }, err -> {
+                    });
+        }
+    }
+
+    static Process start(Function<ProcessBuilder, Process> launcher, ProcessBuilder builder, ProcessTracker tracker) throws Exception {
+        try {
+            Process process = launcher.apply(builder);
+            tracker.spawned(() -> pid(process));
+            return process;
+        } catch (Exception e) {
+            tracker.failed();
+            throw e;
+        }
+    }
+
+    /**
+     * @return process id, -1 if unknown. {@code Process.pid()} is JDK 9+, JDK 8 keeps it in private field
+     */
+    static long pid(Process process) {
+        try {
+            if (PID != null)
+                return (long) PID.invoke(process);
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return field.getInt(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //not os process, e.g. pipeline
+            return -1;
+        }
+    }
+
+    private static Method pidMethod() {
+        try {
+            return Process.class.getMethod("pid");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
     }
 
-    private Cancellable destroyProcess(Process process) {
+    static Cancellable destroyProcess(Process process, ProcessTracker tracker) {
+        //timeout and dispose may both kill, second one waits until kill is done and recorded.
+        //Not process monitor, Process.waitFor releases it while waiting
+        Object lock = new Object();
         return () -> {
-            if (GRACEFULL_STOP_SECONDS == -1) {
-                process.destroyForcibly();
-            } else {
-                process.destroy();
-                if (!process.waitFor(GRACEFULL_STOP_SECONDS, TimeUnit.SECONDS))
-                    process.destroyForcibly();
+            synchronized (lock) {
+                if (!process.isAlive())
+                    return;
+                if (GRACEFULL_STOP_SECONDS == -1) {
+                    process.destroyForcibly().waitFor();
+                    tracker.killed(true);
+                } else {
+                    process.destroy();
+                    boolean graceful = process.waitFor(GRACEFULL_STOP_SECONDS, TimeUnit.SECONDS);
+                    if (!graceful)
+                        process.destroyForcibly().waitFor();
+                    tracker.killed(!graceful);
+                }
             }
         };
     }
 
     public Observable<ProcessChunk> asStdErrOut(long timeout, TimeUnit timeUnit) {
-        return Observable.<ProcessChunk>create(
+        return coalesce(Observable.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics(), processStats);
+            return Observable.<ProcessChunk>create(
                 emitter -> {
-                    Collection<Byte> stderrBuffer = new CircularFifoQueue<>(STDERR_BUFF_SIZE);
+                    ByteRingBuffer stderrBuffer = new ByteRingBuffer(STDERR_BUFF_SIZE);
 
-                    Process process = builder.start();
+                    Process process = start(launcher, builder, tracker);
+                    Cancellable destroy = destroyProcess(process, tracker);
 
                     InputStream stdout = process.getInputStream();
                     InputStream stderr = process.getErrorStream();
 
-                    CountDownLatch waitOut = new CountDownLatch(2);
+                    //completed when stdout and stderr read and process exited, no thread waits for it
+                    Runnable done = ProcessExits.afterCalls(3, () -> {
+                        int exitValue = process.exitValue();
+                        if (emitter.isDisposed())
+                            return;
+                        tracker.exited(exitValue);
+                        if (exitValue != 0) {
+                            synchronized (emitter) {
+                                String err = new String(stderrBuffer.toByteArray());
+                                emitter.onError(new ProcessException(exitValue, err));
+                            }
+                        } else {
+                            emitter.onComplete();
+                        }
+                    });
 
-                    emitter.setCancellable(destroyProcess(process));
+                    emitter.setCancellable(() -> {
+                        tracker.cancelled();
+                        destroy.cancel();
+                    });
 
                     RxUtils.bytes(stdout)
-                            .doFinally(waitOut::countDown)
-                            .subscribeOn(Schedulers.newThread())
+                            .doFinally(done::run)
+                            .subscribeOn(ioScheduler)
                             .subscribe(b -> {
                                 synchronized (emitter) {
+                                    tracker.chunk(false, b.length);
                                     emitter.onNext(new ProcessChunk(b, false));
                                 }
                             }, err -> {
@@ -138,51 +300,88 @@ public class JavaReactiveProcessBuilder extends BaseReactiveProcessBuilder<Proce
                             });
 
                     RxUtils.bytes(stderr)
-                            .doFinally(waitOut::countDown)
-                            .subscribeOn(Schedulers.newThread())
+                            .doFinally(done::run)
+                            .subscribeOn(ioScheduler)
                             .subscribe(b -> {
                                 synchronized (emitter) {
+                                    tracker.chunk(true, b.length);
                                     emitter.onNext(new ProcessChunk(b, true));
-                                    for (byte b1 : b) {
-                                        stderrBuffer.add(b1);
-                                    }
+                                    stderrBuffer.write(b);
                                 }
                             }, err -> {
                             }, () -> {
                             });
 
-                    if (stdin.length > 0) {
-                        OutputStream procStdin = process.getOutputStream();
-                        procStdin.write(stdin);
-                        procStdin.close();
-                    }
+                    writeStdin(process);
 
-                    if (timeout != -1)
-                        waitOut.await(timeout, timeUnit);
-                    else
-                        waitOut.await();
-
-                    int exitValue = process.waitFor();
-
-                    if (!emitter.isDisposed()) {
-                        if (exitValue != 0) {
-                            synchronized (emitter) {
-                                String err = new String(ArrayUtils.toPrimitive(stderrBuffer.toArray(new Byte[0])));
-                                emitter.onError(new ProcessException(exitValue, err));
-                            }
-                        } else {
-                            emitter.onComplete();
-                        }
-                    }
+                    ProcessExits.onExit(process, ioScheduler, done);
 
                 })
                 .compose(o -> {
                     if (timeout == -1)
                         return o;
-                    else return o.takeUntil(Observable.timer(timeout, timeUnit).map(bytes -> {
-                        throw new ProcessTimeoutException(Integer.MIN_VALUE);
-                    }));
+                    else return o.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                        tracker.timedOut();
+                        return new ProcessTimeoutException(Integer.MIN_VALUE);
+                    }).toObservable());
                 });
+        }));
+    }
+
+    @Override
+    public Flowable<ProcessChunk> asStdErrOutFlowable(long timeout, TimeUnit timeUnit) {
+        return coalesce(Flowable.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics(), processStats);
+            AtomicBoolean destroyed = new AtomicBoolean();
+            return Flowable.using(
+                () -> {
+                    Process process = start(launcher, builder, tracker);
+                    writeStdin(process);
+                    return process;
+                },
+                process -> {
+                    ByteRingBuffer stderrBuffer = new ByteRingBuffer(STDERR_BUFF_SIZE);
+
+                    //pipes are read only on demand
+                    Flowable<ProcessChunk> stdout = RxUtils.bytesFlowable(process.getInputStream())
+                            .doOnNext(b -> tracker.chunk(false, b.length))
+                            .map(b -> new ProcessChunk(b, false))
+                            .subscribeOn(ioScheduler);
+
+                    Flowable<ProcessChunk> stderr = RxUtils.bytesFlowable(process.getErrorStream())
+                            .doOnNext(b -> {
+                                tracker.chunk(true, b.length);
+                                stderrBuffer.write(b);
+                            })
+                            .map(b -> new ProcessChunk(b, true))
+                            .subscribeOn(ioScheduler);
+
+                    return Flowable.just(stdout, stderr).flatMap(f -> f, false, 2, FLOWABLE_BUFFER_CHUNKS)
+                            .concatWith(ProcessExits.exitValue(process, ioScheduler).flatMapPublisher(exitValue -> {
+                                tracker.exited(exitValue);
+                                //killed by disposer, chain is being cancelled right after it, don't complete or fail it
+                                if (destroyed.get())
+                                    return Flowable.never();
+                                if (exitValue != 0)
+                                    return Flowable.error(new ProcessException(exitValue, new String(stderrBuffer.toByteArray())));
+                                else
+                                    return Flowable.empty();
+                            }));
+                },
+                process -> {
+                    destroyed.set(true);
+                    destroyProcess(process, tracker).cancel();
+                })
+                .compose(f -> {
+                    if (timeout == -1)
+                        return f;
+                    else return f.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                        tracker.timedOut();
+                        return new ProcessTimeoutException(Integer.MIN_VALUE);
+                    }).toFlowable());
+                })
+                .doOnCancel(tracker::cancelled);
+        }));
     }
 
 }
@@ -0,0 +1,390 @@
+package com.github.zella.rxprocess2.impl.javalang;
+
+import io.reactivex.Scheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.DEFAULT_READ_BUFFER;
+
+/**
+ * Processes connected as {@code a | b | c}, seen as one process: stdin of first stage, stdout of last one, merged
+ * stderr of all stages.
+ * <p>
+ * Stages are wired kernel-to-kernel with {@code ProcessBuilder.startPipeline} on JDK 21+, otherwise stdout of every
+ * stage is copied to next stage stdin by pump with single buffer, so slow stage throttles previous ones.
+ * Before JDK 21 {@code startPipeline} leaves inner pipe read ends open in JVM, it leaks descriptors and stage
+ * never gets SIGPIPE when next one exits.
+ * <p>
+ * Non-zero exit of any stage kills other stages and becomes exit code of pipeline, otherwise it's last stage exit
+ * code. Stage killed by SIGPIPE or exited after next stage is not failed, next stage just stopped reading.
+ */
+public final class PipelineProcess extends Process {
+
+    private static final int SIGPIPE_EXIT_CODE = 128 + 13;
+
+    private static final int KERNEL_PIPE_MIN_JAVA_VERSION = 21;
+
+    private static final Method START_PIPELINE = startPipelineMethod();
+
+    /**
+     * @return true if stages can be wired by kernel
+     */
+    public static boolean isKernelPipeSupported() {
+        return START_PIPELINE != null;
+    }
+
+    /**
+     * Start stages, kernel wired if supported
+     *
+     * @param ioScheduler runs stderr readers, exit waiters and pumps, few tasks per stage
+     */
+    public static PipelineProcess start(List<ProcessBuilder> stages, Scheduler ioScheduler) throws IOException {
+        return start(stages, ioScheduler, isKernelPipeSupported());
+    }
+
+    /**
+     * @param kernelPipe wire stages by kernel, otherwise pump output by JVM
+     */
+    public static PipelineProcess start(List<ProcessBuilder> stages, Scheduler ioScheduler, boolean kernelPipe) throws IOException {
+        if (stages.isEmpty())
+            throw new IllegalArgumentException("Pipeline has no stages");
+        for (int i = 0; i < stages.size(); i++) {
+            if (i > 0 && stages.get(i).redirectInput().type() != ProcessBuilder.Redirect.Type.PIPE)
+                throw new IllegalArgumentException("Stage " + i + " input must be piped");
+            if (i < stages.size() - 1 && stages.get(i).redirectOutput().type() != ProcessBuilder.Redirect.Type.PIPE)
+                throw new IllegalArgumentException("Stage " + i + " output must be piped");
+        }
+        if (kernelPipe && !isKernelPipeSupported())
+            throw new UnsupportedOperationException("Kernel pipes require JDK 21+, running " + System.getProperty("java.version"));
+
+        List<Process> processes = kernelPipe ? startPipeline(stages) : startEach(stages);
+        PipelineProcess pipeline = new PipelineProcess(processes, kernelPipe);
+        for (int i = 0; i < processes.size(); i++) {
+            int stage = i;
+            if (!kernelPipe && stage < processes.size() - 1)
+                ioScheduler.scheduleDirect(() -> pipeline.pump(stage));
+            ioScheduler.scheduleDirect(() -> pipeline.watch(stage));
+        }
+        return pipeline;
+    }
+
+    private final List<Process> stages;
+
+    private final boolean kernelPipe;
+
+    private final MergedInputStream stderr;
+
+    private final Integer[] exitValues;
+
+    private final boolean[] nextStageClosed;
+
+    private final CountDownLatch exited;
+
+    private final CompletableFuture<Process> exit = new CompletableFuture<>();
+
+    private int failedStage = -1;
+
+    private PipelineProcess(List<Process> stages, boolean kernelPipe) {
+        this.stages = Collections.unmodifiableList(stages);
+        this.kernelPipe = kernelPipe;
+        this.stderr = new MergedInputStream(stages.size());
+        this.exitValues = new Integer[stages.size()];
+        this.nextStageClosed = new boolean[stages.size()];
+        this.exited = new CountDownLatch(stages.size());
+    }
+
+    public List<Process> stages() {
+        return stages;
+    }
+
+    public boolean isKernelPipe() {
+        return kernelPipe;
+    }
+
+    /**
+     * @return exit code of every stage, null for running one
+     */
+    public synchronized List<Integer> exitValues() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(exitValues)));
+    }
+
+    /**
+     * @return index of first failed stage, -1 if none failed
+     */
+    public synchronized int failedStage() {
+        return failedStage;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stages.get(0).getOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stages.get(stages.size() - 1).getInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return stderr;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        exited.await();
+        return exitValue();
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return exited.await(timeout, unit);
+    }
+
+    /**
+     * Overrides {@code Process.onExit()} of JDK 9+, which waits for exit in common pool
+     */
+    public CompletableFuture<Process> onExit() {
+        return exit;
+    }
+
+    @Override
+    public synchronized int exitValue() {
+        if (exited.getCount() > 0)
+            throw new IllegalThreadStateException("process hasn't exited");
+        return failedStage == -1 ? exitValues[exitValues.length - 1] : exitValues[failedStage];
+    }
+
+    @Override
+    public boolean isAlive() {
+        return exited.getCount() > 0;
+    }
+
+    @Override
+    public void destroy() {
+        for (Process stage : stages)
+            stage.destroy();
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        for (Process stage : stages)
+            stage.destroyForcibly();
+        return this;
+    }
+
+    /**
+     * Relay stage stderr, then wait for its exit
+     */
+    private void watch(int stage) {
+        Process process = stages.get(stage);
+        byte[] buffer = new byte[DEFAULT_READ_BUFFER];
+        try (InputStream is = process.getErrorStream()) {
+            int count;
+            while ((count = is.read(buffer)) != -1)
+                stderr.offer(Arrays.copyOf(buffer, count));
+        } catch (IOException ignored) {
+            //stage killed
+        } finally {
+            stderr.finishWriter();
+        }
+        int code;
+        try {
+            code = process.waitFor();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            code = Integer.MIN_VALUE;
+        }
+        boolean failed;
+        synchronized (this) {
+            exitValues[stage] = code;
+            //SIGPIPE may be ignored, then stage fails with EPIPE error
+            boolean brokenPipe = stage < stages.size() - 1
+                    && (code == SIGPIPE_EXIT_CODE || nextStageClosed[stage] || !stages.get(stage + 1).isAlive());
+            failed = failedStage == -1 && code != 0 && !brokenPipe;
+            if (failed)
+                failedStage = stage;
+        }
+        if (failed)
+            destroy();
+        exited.countDown();
+        if (exited.getCount() == 0)
+            exit.complete(this);
+    }
+
+    /**
+     * Copy stage stdout to next stage stdin
+     */
+    private void pump(int stage) {
+        byte[] buffer = new byte[DEFAULT_READ_BUFFER];
+        try (InputStream is = stages.get(stage).getInputStream();
+             OutputStream os = stages.get(stage + 1).getOutputStream()) {
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                try {
+                    os.write(buffer, 0, count);
+                    os.flush();
+                } catch (IOException e) {
+                    //next stage stopped reading, closed stdout gives SIGPIPE to this stage as in kernel pipe.
+                    //Marked before closing, exited next stage may be not reaped yet
+                    synchronized (this) {
+                        nextStageClosed[stage] = true;
+                    }
+                    return;
+                }
+            }
+        } catch (IOException ignored) {
+            //stage killed
+        }
+    }
+
+    private static List<Process> startEach(List<ProcessBuilder> stages) throws IOException {
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (ProcessBuilder stage : stages)
+                processes.add(stage.start());
+        } catch (IOException | RuntimeException e) {
+            for (Process process : processes)
+                process.destroyForcibly();
+            throw e;
+        }
+        return processes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Process> startPipeline(List<ProcessBuilder> stages) throws IOException {
+        try {
+            return new ArrayList<>((List<Process>) START_PIPELINE.invoke(null, stages));
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Method startPipelineMethod() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.") || Integer.parseInt(version) < KERNEL_PIPE_MIN_JAVA_VERSION)
+            return null;
+        try {
+            return ProcessBuilder.class.getMethod("startPipeline", List.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stderr chunks of all stages, writers wait while {@code MAX_CHUNKS} chunks are not read
+     */
+    private static final class MergedInputStream extends InputStream {
+
+        private static final int MAX_CHUNKS = 16;
+
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+
+        private byte[] current;
+
+        private int position;
+
+        private int writers;
+
+        private boolean closed;
+
+        MergedInputStream(int writers) {
+            this.writers = writers;
+        }
+
+        synchronized void offer(byte[] data) throws InterruptedIOException {
+            while (!closed && chunks.size() >= MAX_CHUNKS) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (!closed) {
+                chunks.add(data);
+                notifyAll();
+            }
+        }
+
+        synchronized void finishWriter() {
+            writers--;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            while (current == null) {
+                if (closed)
+                    throw new IOException("Stream closed");
+                if (!chunks.isEmpty()) {
+                    current = chunks.poll();
+                    position = 0;
+                    notifyAll();
+                } else if (writers == 0) {
+                    return -1;
+                } else {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+            int read = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, read);
+            position += read;
+            if (position == current.length)
+                current = null;
+            return read;
+        }
+
+        @Override
+        public synchronized int available() {
+            int available = current == null ? 0 : current.length - position;
+            for (byte[] chunk : chunks)
+                available += chunk.length;
+            return available;
+        }
+
+        /**
+         * Next stderr is discarded
+         */
+        @Override
+        public synchronized void close() {
+            closed = true;
+            chunks.clear();
+            current = null;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.zella.rxprocess2.impl.javalang;
+
+import com.github.zella.rxprocess2.common.CallbackThreadPool;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process exit notification. On JDK 9+ it's {@code Process.onExit()}, no thread waits for exit. Library targets
+ * Java 8, so it's accessed via reflection, on JDK 8 exit is waited by io scheduler task.
+ */
+final class ProcessExits {
+
+    private static final Method ON_EXIT = onExitMethod();
+
+    private ProcessExits() {
+    }
+
+    /**
+     * Run callback, when process exited. On JDK 9+ it runs on {@link CallbackThreadPool}, on JDK 8 on io scheduler task
+     * waiting for exit
+     */
+    static void onExit(Process process, Scheduler ioScheduler, Runnable callback) {
+        if (ON_EXIT != null) {
+            try {
+                CompletableFuture<?> exit = (CompletableFuture<?>) ON_EXIT.invoke(process);
+                //future completes on JDK threads, don't run subscribers there. Not io scheduler, where it could queue
+                //behind readers of other processes
+                exit.whenComplete((p, e) -> CallbackThreadPool.executor().execute(callback));
+                return;
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                //wait below
+            }
+        }
+        ioScheduler.scheduleDirect(() -> {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    process.waitFor();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            callback.run();
+        });
+    }
+
+    /**
+     * @return exit code, emitted as {@link #onExit(Process, Scheduler, Runnable)} callback
+     */
+    static Single<Integer> exitValue(Process process, Scheduler ioScheduler) {
+        return Single.create(emitter -> onExit(process, ioScheduler, () -> emitter.onSuccess(process.exitValue())));
+    }
+
+    /**
+     * @return callback, which runs action on {@code count}-th call, e.g. when all pipes are read and process exited
+     */
+    static Runnable afterCalls(int count, Runnable action) {
+        AtomicInteger remaining = new AtomicInteger(count);
+        return () -> {
+            if (remaining.decrementAndGet() == 0)
+                action.run();
+        };
+    }
+
+    private static Method onExitMethod() {
+        try {
+            return Process.class.getMethod("onExit");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.github.zella.rxprocess2.impl.nuprocess;
 
+import com.github.zella.rxprocess2.ProcessBufferChunk;
 import com.github.zella.rxprocess2.ProcessChunk;
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
 import com.zaxxer.nuprocess.NuAbstractProcessHandler;
 import com.zaxxer.nuprocess.NuProcess;
+import io.reactivex.Flowable;
 import io.reactivex.annotations.NonNull;
 import io.reactivex.processors.ReplayProcessor;
 
@@ -12,7 +15,25 @@ abstract class BaseNuProcessHandler extends NuAbstractProcessHandler {
 
     final ReplayProcessor<byte[]> rxIn = ReplayProcessor.create();
 
-    abstract void onNext(@NonNull ProcessChunk chunk);
+    private volatile NuStdinWriter stdinWriter;
+
+    private volatile NuProcess process;
+
+    final ProcessTracker tracker;
+
+    BaseNuProcessHandler(ProcessTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * Zero copy output callback, chunk valid only during this call. By default copies it to {@link #onNext(ProcessChunk)}
+     */
+    void onNextBuffer(@NonNull ProcessBufferChunk chunk) {
+        onNext(chunk.toProcessChunk());
+    }
+
+    void onNext(@NonNull ProcessChunk chunk) {
+    }
 
     abstract void onComplete(int code);
 
@@ -22,8 +43,37 @@ abstract class BaseNuProcessHandler extends NuAbstractProcessHandler {
 
     abstract void stderrClosed();
 
+    /**
+     * Start streaming stdin source to process, if source is not null
+     */
+    void writeStdin(NuProcess nuProcess, Flowable<ByteBuffer> source) {
+        if (source != null) {
+            stdinWriter = new NuStdinWriter(nuProcess);
+            source.subscribe(stdinWriter);
+        }
+    }
+
+    @Override
+    public boolean onStdinReady(ByteBuffer buffer) {
+        NuStdinWriter writer = stdinWriter;
+        if (writer == null) {
+            buffer.flip();
+            return false;
+        }
+        return writer.onStdinReady(buffer);
+    }
+
+    /**
+     * @return started process
+     */
+    NuProcess process() {
+        return process;
+    }
+
     @Override
     public void onStart(NuProcess nuProcess) {
+        process = nuProcess;
+        tracker.spawned(nuProcess::getPID);
         started(nuProcess);
     }
 
@@ -31,9 +81,9 @@ abstract class BaseNuProcessHandler extends NuAbstractProcessHandler {
     public void onStdout(ByteBuffer buffer, boolean closed) {
         synchronized (this) {
             if (!closed) {
-                byte[] bytes = new byte[buffer.remaining()];
-                buffer.get(bytes);
-                onNext(new ProcessChunk(bytes, false));
+                tracker.chunk(false, buffer.remaining());
+                onNextBuffer(new ProcessBufferChunk(buffer.asReadOnlyBuffer(), false));
+                buffer.position(buffer.limit());
             } else {
                 stdoutClosed();
             }
@@ -44,9 +94,9 @@ abstract class BaseNuProcessHandler extends NuAbstractProcessHandler {
     public void onStderr(ByteBuffer buffer, boolean closed) {
         synchronized (this) {
             if (!closed) {
-                byte[] bytes = new byte[buffer.remaining()];
-                buffer.get(bytes);
-                onNext(new ProcessChunk(bytes, true));
+                tracker.chunk(true, buffer.remaining());
+                onNextBuffer(new ProcessBufferChunk(buffer.asReadOnlyBuffer(), true));
+                buffer.position(buffer.limit());
             } else {
                 stderrClosed();
             }
@@ -56,6 +106,14 @@ abstract class BaseNuProcessHandler extends NuAbstractProcessHandler {
 
     @Override
     public void onExit(int statusCode) {
+        NuStdinWriter writer = stdinWriter;
+        if (writer != null)
+            writer.cancel();
+        //not started processes exit with Integer.MIN_VALUE
+        if (process == null)
+            tracker.failed();
+        else
+            tracker.exited(statusCode);
         onComplete(statusCode);
     }
 }
@@ -0,0 +1,45 @@
+package com.github.zella.rxprocess2.impl.nuprocess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes process output buffers directly to file, without copying to heap arrays
+ */
+final class FileOutput {
+
+    private FileOutput() {
+    }
+
+    static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Write remaining bytes of {@code data}, its position is not changed
+     *
+     * @return false if write failed
+     */
+    static boolean write(FileChannel channel, ByteBuffer data) {
+        ByteBuffer src = data.duplicate();
+        try {
+            while (src.hasRemaining())
+                channel.write(src);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
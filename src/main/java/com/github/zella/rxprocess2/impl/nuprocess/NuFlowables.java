@@ -0,0 +1,125 @@
+package com.github.zella.rxprocess2.impl.nuprocess;
+
+import com.github.zella.rxprocess2.ProcessChunk;
+import com.github.zella.rxprocess2.common.ByteRingBuffer;
+import com.github.zella.rxprocess2.common.CallbackThreadPool;
+import com.github.zella.rxprocess2.common.TimeoutWheel;
+import com.github.zella.rxprocess2.errors.ProcessException;
+import com.github.zella.rxprocess2.errors.ProcessTimeoutException;
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
+import com.github.zella.rxprocess2.metrics.RxProcessMetrics;
+import com.zaxxer.nuprocess.NuProcess;
+import com.zaxxer.nuprocess.NuProcessBuilder;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.plugins.RxJavaPlugins;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.PUSH_FLOWABLE_BUFFER_CHUNKS;
+import static com.github.zella.rxprocess2.RxProcessConfig.STDERR_BUFF_SIZE;
+
+final class NuFlowables {
+
+    private NuFlowables() {
+    }
+
+    /**
+     * NuProcess can't pause reading, and its processing thread is shared with other processes, so callback never waits
+     * for demand. At most {@code rxprocess2.pushFlowableBufferChunks} chunks are buffered ahead of demand, on overflow
+     * process is destroyed and subscriber fails with {@link io.reactivex.exceptions.MissingBackpressureException}.
+     */
+    static Flowable<ProcessChunk> stdErrOut(NuProcessBuilder builder,
+                                            Flowable<ByteBuffer> stdin,
+                                            RxProcessMetrics metrics,
+                                            boolean processStats,
+                                            boolean gracefulStop,
+                                            long timeout,
+                                            TimeUnit timeUnit) {
+        return Flowable.defer(() -> {
+            AtomicBoolean exited = new AtomicBoolean();
+            //set while chunk is emitted, downstream may cancel from NuProcess thread
+            AtomicReference<Thread> emitting = new AtomicReference<>();
+            ProcessTracker tracker = ProcessTracker.start(metrics, processStats);
+            AtomicBoolean timedOut = new AtomicBoolean();
+
+            return Flowable.<ProcessChunk>create(emitter -> {
+
+                ByteRingBuffer stderrBuffer = new ByteRingBuffer(STDERR_BUFF_SIZE);
+
+                BaseNuProcessHandler handler = new BaseNuProcessHandler(tracker) {
+                    @Override
+                    void onNext(ProcessChunk chunk) {
+                        if (chunk.isStdErr) {
+                            stderrBuffer.write(chunk.data);
+                        }
+                        emitting.set(Thread.currentThread());
+                        try {
+                            emitter.onNext(chunk);
+                        } finally {
+                            emitting.set(null);
+                        }
+                    }
+
+                    @Override
+                    void onComplete(int exitValue) {
+                        exited.set(true);
+                        if (exitValue != 0) {
+                            String err = new String(stderrBuffer.toByteArray());
+                            emitter.tryOnError(new ProcessException(exitValue, err));
+                        } else {
+                            emitter.onComplete();
+                        }
+                    }
+
+                    @Override
+                    void started(NuProcess nuProcess) {
+                        writeStdin(nuProcess, stdin);
+                    }
+
+                    @Override
+                    void stdoutClosed() {
+                    }
+
+                    @Override
+                    void stderrClosed() {
+                    }
+                };
+
+                NuProcess process = NuProcesses.start(builder, handler);
+
+                //deadline cancels from callback thread, it may wait for graceful stop
+                Cancellable destroyProcess = () -> NuProcesses.destroy(process, tracker, gracefulStop || timedOut.get()).cancel();
+                emitter.setCancellable(() -> {
+                    //on completion it's called from NuProcess thread, graceful stop would wait exit, that is not signalled yet
+                    if (!exited.get()) {
+                        tracker.cancelled();
+                        //same on overflow or take(n), kill elsewhere
+                        if (emitting.get() == Thread.currentThread())
+                            CallbackThreadPool.executor().execute(() -> {
+                                try {
+                                    destroyProcess.cancel();
+                                } catch (Exception e) {
+                                    RxJavaPlugins.onError(e);
+                                }
+                            });
+                        else
+                            destroyProcess.cancel();
+                    }
+                });
+            }, BackpressureStrategy.MISSING).onBackpressureBuffer(PUSH_FLOWABLE_BUFFER_CHUNKS).compose(f -> {
+                if (timeout == -1)
+                    return f;
+                else return f.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                    timedOut.set(true);
+                    tracker.timedOut();
+                    return new ProcessTimeoutException(Integer.MIN_VALUE);
+                }).toFlowable());
+            });
+        });
+    }
+}
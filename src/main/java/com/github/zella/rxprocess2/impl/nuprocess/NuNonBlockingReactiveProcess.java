@@ -2,10 +2,12 @@ package com.github.zella.rxprocess2.impl.nuprocess;
 
 import com.github.zella.rxprocess2.BaseReactiveProcess;
 import com.github.zella.rxprocess2.Exit;
-import com.github.zella.rxprocess2.ProcessChunk;
-import com.github.zella.rxprocess2.common.ArrayUtils;
+import com.github.zella.rxprocess2.ProcessBufferChunk;
+import com.github.zella.rxprocess2.common.TimeoutWheel;
 import com.github.zella.rxprocess2.errors.ProcessException;
 import com.github.zella.rxprocess2.errors.ProcessTimeoutException;
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
+import com.github.zella.rxprocess2.metrics.RxProcessMetrics;
 import com.zaxxer.nuprocess.NuProcess;
 import com.zaxxer.nuprocess.NuProcessBuilder;
 import io.reactivex.Single;
@@ -13,47 +15,58 @@ import io.reactivex.Single;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static com.github.zella.rxprocess2.RxProcessConfig.GRACEFULL_STOP_SECONDS;
 
 public class NuNonBlockingReactiveProcess extends BaseReactiveProcess<NuProcess> {
 
     private final NuProcessBuilder builder;
 
-    NuNonBlockingReactiveProcess(NuProcessBuilder builder) {
+    private final RxProcessMetrics metrics;
+
+    private final boolean processStats;
+
+    NuNonBlockingReactiveProcess(NuProcessBuilder builder, RxProcessMetrics metrics, boolean processStats) {
         this.builder = builder;
+        this.metrics = metrics;
+        this.processStats = processStats;
     }
 
     @Override
     public Single<Exit> waitDone(long timeout, TimeUnit timeUnit) {
+        return Single.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics, processStats);
+            return waitDone(timeout, timeUnit, tracker)
+                    .map(exit -> exit.withStats(tracker.stats()));
+        });
+    }
 
+    private Single<Exit> waitDone(long timeout, TimeUnit timeUnit, ProcessTracker tracker) {
+        AtomicBoolean timedOut = new AtomicBoolean();
         return Single.<Exit>create(emitter -> {
 
-            builder.setProcessListener(new BaseNuProcessHandler() {
+            BaseNuProcessHandler handler = new BaseNuProcessHandler(tracker) {
                 @Override
-                void onNext(ProcessChunk chunk) {
-                    stdoutStdErrSubject.onNext(chunk);
-
+                void onNextBuffer(ProcessBufferChunk chunk) {
                     if (chunk.isStdErr) {
                         synchronized (emitter) {
-                            for (byte b1 : chunk.data) {
-                                stderrBuffer.add(b1);
-                            }
+                            stderrBuffer.write(chunk.data);
                         }
                     }
+                    emitBufferChunk(chunk);
                 }
 
                 @Override
                 void onComplete(int exitValue) {
                     synchronized (emitter) {
                         if (exitValue != 0) {
-                            String err = new String(ArrayUtils.toPrimitive(stderrBuffer.toArray(new Byte[0])));
-                            stdoutStdErrSubject.onError(new ProcessException(exitValue, err));
+                            String err = new String(stderrBuffer.toByteArray());
+                            emitError(new ProcessException(exitValue, err));
                             if ((!emitter.isDisposed())) {
                                 emitter.onSuccess(new Exit(exitValue, new ProcessException(exitValue, err)));
                             }
                         } else {
-                            stdoutStdErrSubject.onComplete();
+                            emitComplete();
                             if ((!emitter.isDisposed())) {
                                 emitter.onSuccess(new Exit(0));
                             }
@@ -76,19 +89,27 @@ public class NuNonBlockingReactiveProcess extends BaseReactiveProcess<NuProcess>
                 @Override
                 void stderrClosed() {
                 }
-            });
+            };
 
-            NuProcess process = builder.start();
+            NuProcess process = NuProcesses.start(builder, handler);
 
             startedSubject.onNext(process);
             startedSubject.onComplete();
             //TODO close emitter here!
-            emitter.setCancellable(() -> process.destroy(true));
+            emitter.setCancellable(() -> {
+                tracker.cancelled();
+                //deadline cancels from callback thread, which may wait for graceful stop. Dispose may come from NuProcess thread
+                NuProcesses.destroy(process, tracker, timedOut.get()).cancel();
+            });
         }).compose(s -> {
             //TODO revision
             if (timeout == -1) return s;
             else
-                return s.timeout(timeout, timeUnit).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
+                return s.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                    timedOut.set(true);
+                    tracker.timedOut();
+                    return new TimeoutException();
+                })).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
                         ? new ProcessTimeoutException(Integer.MIN_VALUE)
                         : new ProcessException(Integer.MIN_VALUE, e.getMessage()))
                 );
@@ -0,0 +1,96 @@
+package com.github.zella.rxprocess2.impl.nuprocess;
+
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
+import com.zaxxer.nuprocess.NuProcess;
+import com.zaxxer.nuprocess.NuProcessBuilder;
+import com.zaxxer.nuprocess.NuProcessHandler;
+import io.reactivex.functions.Cancellable;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.GRACEFULL_STOP_SECONDS;
+
+final class NuProcesses {
+
+    /**
+     * NuProcessBuilder has no cwd getter
+     */
+    private static final Field CWD = cwdField();
+
+    private NuProcesses() {
+    }
+
+    private static Field cwdField() {
+        try {
+            Field field = NuProcessBuilder.class.getDeclaredField("cwd");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start process with own copy of template, so concurrent executions of one builder don't share listener.
+     * Template is only read. If cwd can't be copied, falls back to starting template under its lock.
+     */
+    static NuProcess start(NuProcessBuilder template, NuProcessHandler handler) {
+        if (CWD == null) {
+            synchronized (template) {
+                template.setProcessListener(handler);
+                return template.start();
+            }
+        }
+        NuProcessBuilder builder = new NuProcessBuilder(template.command(), template.environment());
+        try {
+            Path cwd = (Path) CWD.get(template);
+            if (cwd != null)
+                builder.setCwd(cwd);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        builder.setProcessListener(handler);
+        return builder.start();
+    }
+
+    /**
+     * @param timeout -1 for no timeout
+     * @return exit code, {@link Integer#MIN_VALUE} if timeout expired
+     */
+    static int waitFor(NuProcess process, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        //0 is infinite for NuProcess
+        return timeout == -1
+                ? process.waitFor(0, TimeUnit.SECONDS)
+                : process.waitFor(Math.max(1, timeUnit.toMillis(timeout)), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param graceful give process {@code rxprocess2.gracefullStopSeconds} to stop before killing it. Waits for exit,
+     *                 so must not be called from NuProcess thread
+     */
+    static Cancellable destroy(NuProcess process, ProcessTracker tracker, boolean graceful) {
+        //timeout and dispose may both kill, second one waits until kill is done and recorded
+        return () -> {
+            synchronized (process) {
+                if (!process.isRunning())
+                    return;
+                if (!graceful || GRACEFULL_STOP_SECONDS == -1) {
+                    process.destroy(true);
+                    tracker.killed(true);
+                } else {
+                    try {
+                        process.destroy(false);
+                        process.waitFor(GRACEFULL_STOP_SECONDS, TimeUnit.SECONDS);
+                    } finally {
+                        boolean forced = process.isRunning();
+                        if (forced)
+                            process.destroy(true);
+                        tracker.killed(forced);
+                    }
+                }
+            }
+        };
+    }
+}
@@ -1,46 +1,57 @@
 package com.github.zella.rxprocess2.impl.nuprocess;
 
+import com.github.zella.rxprocess2.common.TimeoutWheel;
 import com.github.zella.rxprocess2.errors.ProcessException;
 import com.github.zella.rxprocess2.errors.ProcessTimeoutException;
-import com.github.zella.rxprocess2.common.ArrayUtils;
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
 import com.github.zella.rxprocess2.Exit;
-import com.github.zella.rxprocess2.ProcessChunk;
+import com.github.zella.rxprocess2.ProcessBufferChunk;
 import com.github.zella.rxprocess2.BaseReactiveProcess;
+import com.github.zella.rxprocess2.metrics.RxProcessMetrics;
 import com.zaxxer.nuprocess.NuProcess;
 import com.zaxxer.nuprocess.NuProcessBuilder;
 import io.reactivex.Single;
-import io.reactivex.schedulers.Schedulers;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-import static com.github.zella.rxprocess2.RxProcessConfig.GRACEFULL_STOP_SECONDS;
 
 public class NuReactiveProcess extends BaseReactiveProcess<NuProcess> {
 
     private final NuProcessBuilder builder;
 
-    NuReactiveProcess(NuProcessBuilder builder) {
+    private final RxProcessMetrics metrics;
+
+    private final boolean processStats;
+
+    NuReactiveProcess(NuProcessBuilder builder, RxProcessMetrics metrics, boolean processStats) {
         this.builder = builder;
+        this.metrics = metrics;
+        this.processStats = processStats;
     }
 
     @Override
     public Single<Exit> waitDone(long timeout, TimeUnit timeUnit) {
+        return Single.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics, processStats);
+            return waitDone(timeout, timeUnit, tracker)
+                    .map(exit -> exit.withStats(tracker.stats()));
+        });
+    }
+
+    private Single<Exit> waitDone(long timeout, TimeUnit timeUnit, ProcessTracker tracker) {
         return Single.<Exit>create(emitter -> {
 
-            builder.setProcessListener(new BaseNuProcessHandler() {
+            BaseNuProcessHandler handler = new BaseNuProcessHandler(tracker) {
                 @Override
-                void onNext(ProcessChunk chunk) {
-                    stdoutStdErrSubject.onNext(chunk);
-
+                void onNextBuffer(ProcessBufferChunk chunk) {
                     if (chunk.isStdErr) {
                         synchronized (emitter) {
-                            for (byte b1 : chunk.data) {
-                                stderrBuffer.add(b1);
-                            }
+                            stderrBuffer.write(chunk.data);
                         }
                     }
+                    emitBufferChunk(chunk);
                 }
 
                 @Override
@@ -62,38 +73,39 @@ public class NuReactiveProcess extends BaseReactiveProcess<NuProcess> {
                 @Override
                 void stderrClosed() {
                 }
-            });
+            };
 
-            NuProcess process = builder.start();
+            NuProcess process = NuProcesses.start(builder, handler);
 
             startedSubject.onNext(process);
             startedSubject.onComplete();
 
             emitter.setCancellable(() -> {
-                if (GRACEFULL_STOP_SECONDS == -1) {
-                    process.destroy(true);
-                } else {
-                    try {
-                        process.destroy(false);
-                        process.waitFor(GRACEFULL_STOP_SECONDS, TimeUnit.SECONDS);
-                    } finally {
-                        if (process.isRunning())
-                            process.destroy(true);
-                    }
-                }
+                tracker.cancelled();
+                NuProcesses.destroy(process, tracker, true).cancel();
             });
 
-            //INFINITY
-            int exitValue = process.waitFor(0, TimeUnit.SECONDS);
+            int exitValue = NuProcesses.waitFor(process, timeout, timeUnit);
+
+            if (exitValue == Integer.MIN_VALUE && process.isRunning()) {
+                //normally deadline disposes execution first, kill before emitting so metrics are complete on timeout
+                tracker.timedOut();
+                NuProcesses.destroy(process, tracker, true).cancel();
+                synchronized (emitter) {
+                    emitError(new ProcessTimeoutException(Integer.MIN_VALUE));
+                    emitter.onSuccess(new Exit(Integer.MIN_VALUE, new ProcessTimeoutException(Integer.MIN_VALUE)));
+                }
+                return;
+            }
             synchronized (emitter) {
                 if (exitValue != 0) {
-                    String err = new String(ArrayUtils.toPrimitive(stderrBuffer.toArray(new Byte[0])));
-                    stdoutStdErrSubject.onError(new ProcessException(exitValue, err));
+                    String err = new String(stderrBuffer.toByteArray());
+                    emitError(new ProcessException(exitValue, err));
                     if ((!emitter.isDisposed())) {
                         emitter.onSuccess(new Exit(exitValue, new ProcessException(exitValue, err)));
                     }
                 } else {
-                    stdoutStdErrSubject.onComplete();
+                    emitComplete();
                     if ((!emitter.isDisposed())) {
                         emitter.onSuccess(new Exit(0));
                     }
@@ -103,7 +115,10 @@ public class NuReactiveProcess extends BaseReactiveProcess<NuProcess> {
             //TODO revision
             if (timeout == -1) return s;
             else
-                return s.timeout(timeout, timeUnit).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
+                return s.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                    tracker.timedOut();
+                    return new TimeoutException();
+                })).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
                         ? new ProcessTimeoutException(Integer.MIN_VALUE)
                         : new ProcessException(Integer.MIN_VALUE, e.getMessage()))
                 );
@@ -1,24 +1,26 @@
 package com.github.zella.rxprocess2.impl.nuprocess;
 
+import com.github.zella.rxprocess2.common.TimeoutWheel;
 import com.github.zella.rxprocess2.errors.ProcessException;
 import com.github.zella.rxprocess2.errors.ProcessTimeoutException;
-import com.github.zella.rxprocess2.common.ArrayUtils;
-import com.github.zella.rxprocess2.common.CircularFifoQueue;
+import com.github.zella.rxprocess2.metrics.ProcessTracker;
+import com.github.zella.rxprocess2.common.ByteRingBuffer;
 import com.github.zella.rxprocess2.Exit;
 import com.github.zella.rxprocess2.IReactiveProcess;
+import com.github.zella.rxprocess2.ProcessBufferChunk;
 import com.github.zella.rxprocess2.ProcessChunk;
 import com.github.zella.rxprocess2.BaseReactiveProcessBuilder;
 import com.zaxxer.nuprocess.NuProcess;
 import com.zaxxer.nuprocess.NuProcessBuilder;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
-import java.nio.ByteBuffer;
-import java.util.Collection;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-import static com.github.zella.rxprocess2.RxProcessConfig.GRACEFULL_STOP_SECONDS;
 import static com.github.zella.rxprocess2.RxProcessConfig.STDERR_BUFF_SIZE;
 
 public class NuReactiveProcessBuilder extends BaseReactiveProcessBuilder<NuProcess> {
@@ -31,18 +33,49 @@ public class NuReactiveProcessBuilder extends BaseReactiveProcessBuilder<NuProce
 
     @Override
     public Single<Exit> asWaitDone(long timeout, TimeUnit timeUnit) {
+        return waitDone(null, null, timeout, timeUnit);
+    }
+
+    @Override
+    public Single<Exit> asStdOutToFile(Path file, long timeout, TimeUnit timeUnit) {
+        return waitDone(file, null, timeout, timeUnit);
+    }
+
+    @Override
+    public Single<Exit> asStdErrToFile(Path file, long timeout, TimeUnit timeUnit) {
+        return waitDone(null, file, timeout, timeUnit);
+    }
+
+    /**
+     * @param stdoutFile if not null, stdout buffers written to it
+     * @param stderrFile if not null, stderr buffers written to it
+     */
+    private Single<Exit> waitDone(Path stdoutFile, Path stderrFile, long timeout, TimeUnit timeUnit) {
+        return Single.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics(), processStats);
+            return waitDone(stdoutFile, stderrFile, timeout, timeUnit, tracker)
+                    .map(exit -> exit.withStats(tracker.stats()));
+        });
+    }
+
+    private Single<Exit> waitDone(Path stdoutFile, Path stderrFile, long timeout, TimeUnit timeUnit, ProcessTracker tracker) {
         return Single.<Exit>create(emitter -> {
 
-            Collection<Byte> stderrBuffer = new CircularFifoQueue<>(STDERR_BUFF_SIZE);
+            ByteRingBuffer stderrBuffer = new ByteRingBuffer(STDERR_BUFF_SIZE);
 
-            builder.setProcessListener(new BaseNuProcessHandler() {
-                @Override
-                void onNext(ProcessChunk chunk) {
+            FileChannel stdoutChannel = stdoutFile == null ? null : FileOutput.open(stdoutFile);
+            FileChannel stderrChannel = stderrFile == null ? null : FileOutput.open(stderrFile);
 
+            BaseNuProcessHandler handler = new BaseNuProcessHandler(tracker) {
+                @Override
+                void onNextBuffer(ProcessBufferChunk chunk) {
                     if (chunk.isStdErr) {
-                        for (byte b1 : chunk.data) {
-                            stderrBuffer.add(b1);
-                        }
+                        stderrBuffer.write(chunk.data);
+                    }
+                    FileChannel channel = chunk.isStdErr ? stderrChannel : stdoutChannel;
+                    if (channel != null && !FileOutput.write(channel, chunk.data)) {
+                        process().destroy(true);
+                        emitter.tryOnError(new ProcessException(Integer.MIN_VALUE, "Failed to write output file"));
                     }
                 }
 
@@ -52,10 +85,7 @@ public class NuReactiveProcessBuilder extends BaseReactiveProcessBuilder<NuProce
 
                 @Override
                 void started(NuProcess nuProcess) {
-                    if (stdin.length > 0) {
-                        nuProcess.writeStdin(ByteBuffer.wrap(stdin));
-                        nuProcess.closeStdin(false);
-                    }
+                    writeStdin(nuProcess, stdinSource());
                 }
 
                 @Override
@@ -65,31 +95,32 @@ public class NuReactiveProcessBuilder extends BaseReactiveProcessBuilder<NuProce
                 @Override
                 void stderrClosed() {
                 }
-            });
+            };
 
-            NuProcess process = builder.start();
+            NuProcess process = NuProcesses.start(builder, handler);
 
             emitter.setCancellable(() -> {
-                if (GRACEFULL_STOP_SECONDS == -1) {
-                    process.destroy(true);
-                } else {
-                    try {
-                        process.destroy(false);
-                        process.waitFor(GRACEFULL_STOP_SECONDS, TimeUnit.SECONDS);
-                    } finally {
-                        if (process.isRunning())
-                            process.destroy(true);
-                    }
-                }
+                tracker.cancelled();
+                NuProcesses.destroy(process, tracker, true).cancel();
             });
 
-            //INFINITY
-            int exitValue = process.waitFor(0, TimeUnit.SECONDS);
+            int exitValue = NuProcesses.waitFor(process, timeout, timeUnit);
+
+            FileOutput.close(stdoutChannel);
+            FileOutput.close(stderrChannel);
+
+            if (exitValue == Integer.MIN_VALUE && process.isRunning()) {
+                //normally deadline disposes execution first, kill before emitting so metrics are complete on timeout
+                tracker.timedOut();
+                NuProcesses.destroy(process, tracker, true).cancel();
+                emitter.onSuccess(new Exit(Integer.MIN_VALUE, new ProcessTimeoutException(Integer.MIN_VALUE)));
+                return;
+            }
 
             if (!emitter.isDisposed()) {
                 if (exitValue != 0) {
                     synchronized (emitter) {
-                        String err = new String(ArrayUtils.toPrimitive(stderrBuffer.toArray(new Byte[0])));
+                        String err = new String(stderrBuffer.toByteArray());
                         emitter.onSuccess(new Exit(exitValue, new ProcessException(exitValue, err)));
                     }
                 } else {
@@ -101,7 +132,10 @@ public class NuReactiveProcessBuilder extends BaseReactiveProcessBuilder<NuProce
             //TODO revision
             if (timeout == -1) return s;
             else
-                return s.timeout(timeout, timeUnit).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
+                return s.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                    tracker.timedOut();
+                    return new TimeoutException();
+                })).onErrorReturn(e -> new Exit(Integer.MIN_VALUE, (e instanceof TimeoutException)
                         ? new ProcessTimeoutException(Integer.MIN_VALUE)
                         : new ProcessException(Integer.MIN_VALUE, e.getMessage()))
                 );
@@ -110,84 +144,95 @@ public class NuReactiveProcessBuilder extends BaseReactiveProcessBuilder<NuProce
 
     @Override
     public Observable<ProcessChunk> asStdErrOut(long timeout, TimeUnit timeUnit) {
-        return Observable.<ProcessChunk>create(emitter -> {
+        return coalesce(stdErrOutBuffers(timeout, timeUnit).map(ProcessBufferChunk::toProcessChunk));
+    }
 
-            Collection<Byte> stderrBuffer = new CircularFifoQueue<>(STDERR_BUFF_SIZE);
+    @Override
+    public Observable<ProcessBufferChunk> asStdErrOutBuffers(long timeout, TimeUnit timeUnit) {
+        return coalesceBuffers(stdErrOutBuffers(timeout, timeUnit));
+    }
 
-            builder.setProcessListener(new BaseNuProcessHandler() {
-                @Override
-                void onNext(ProcessChunk chunk) {
-                    emitter.onNext(chunk);
-                    if (chunk.isStdErr) {
-                        for (byte b1 : chunk.data) {
-                            stderrBuffer.add(b1);
+    private Observable<ProcessBufferChunk> stdErrOutBuffers(long timeout, TimeUnit timeUnit) {
+        return Observable.defer(() -> {
+            ProcessTracker tracker = ProcessTracker.start(metrics(), processStats);
+            return Observable.<ProcessBufferChunk>create(emitter -> {
+
+                ByteRingBuffer stderrBuffer = new ByteRingBuffer(STDERR_BUFF_SIZE);
+
+                BaseNuProcessHandler handler = new BaseNuProcessHandler(tracker) {
+                    @Override
+                    void onNextBuffer(ProcessBufferChunk chunk) {
+                        if (chunk.isStdErr) {
+                            stderrBuffer.write(chunk.data);
                         }
+                        emitter.onNext(chunk);
                     }
-                }
 
-                @Override
-                void onComplete(int code) {
-                }
+                    @Override
+                    void onComplete(int code) {
+                    }
 
-                @Override
-                void started(NuProcess nuProcess) {
-                    if (stdin.length > 0) {
-                        nuProcess.writeStdin(ByteBuffer.wrap(stdin));
-                        nuProcess.closeStdin(false);
+                    @Override
+                    void started(NuProcess nuProcess) {
+                        writeStdin(nuProcess, stdinSource());
                     }
-                }
 
-                @Override
-                void stdoutClosed() {
-                }
+                    @Override
+                    void stdoutClosed() {
+                    }
 
-                @Override
-                void stderrClosed() {
-                }
-            });
+                    @Override
+                    void stderrClosed() {
+                    }
+                };
 
-            NuProcess process = builder.start();
+                NuProcess process = NuProcesses.start(builder, handler);
 
-            emitter.setCancellable(() -> {
-                if (GRACEFULL_STOP_SECONDS == -1) {
-                    process.destroy(true);
-                } else {
-                    try {
-                        process.destroy(false);
-                        process.waitFor(GRACEFULL_STOP_SECONDS, TimeUnit.SECONDS);
-                    } finally {
-                        if (process.isRunning())
-                            process.destroy(true);
-                    }
-                }
-            });
+                emitter.setCancellable(() -> {
+                    tracker.cancelled();
+                    NuProcesses.destroy(process, tracker, true).cancel();
+                });
 
-            //INFINITY
-            int exitValue = process.waitFor(0, TimeUnit.SECONDS);
+                int exitValue = NuProcesses.waitFor(process, timeout, timeUnit);
 
-            if (!emitter.isDisposed()) {
-                if (exitValue != 0) {
-                    synchronized (emitter) {
-                        String err = new String(ArrayUtils.toPrimitive(stderrBuffer.toArray(new Byte[0])));
-                        emitter.onError(new ProcessException(exitValue, err));
+                if (exitValue == Integer.MIN_VALUE && process.isRunning()) {
+                    //normally deadline disposes execution first, kill before emitting so metrics are complete on timeout
+                    tracker.timedOut();
+                    NuProcesses.destroy(process, tracker, true).cancel();
+                    emitter.tryOnError(new ProcessTimeoutException(Integer.MIN_VALUE));
+                    return;
+                }
+
+                if (!emitter.isDisposed()) {
+                    if (exitValue != 0) {
+                        synchronized (emitter) {
+                            String err = new String(stderrBuffer.toByteArray());
+                            emitter.onError(new ProcessException(exitValue, err));
+                        }
+                    } else {
+                        emitter.onComplete();
                     }
-                } else {
-                    emitter.onComplete();
                 }
-            }
 
-        }).compose(o -> {
-            if (timeout == -1)
-                return o;
-            else return o.takeUntil(Observable.timer(timeout, timeUnit).map(bytes -> {
-                throw new ProcessTimeoutException(Integer.MIN_VALUE);
-            }));
+            }).compose(o -> {
+                if (timeout == -1)
+                    return o;
+                else return o.takeUntil(TimeoutWheel.shared().deadline(timeout, timeUnit, () -> {
+                    tracker.timedOut();
+                    return new ProcessTimeoutException(Integer.MIN_VALUE);
+                }).toObservable());
+            });
         });
     }
 
 
+    @Override
+    public Flowable<ProcessChunk> asStdErrOutFlowable(long timeout, TimeUnit timeUnit) {
+        return coalesce(NuFlowables.stdErrOut(builder, stdinSource(), metrics(), processStats, true, timeout, timeUnit));
+    }
+
     @Override
     public IReactiveProcess<NuProcess> biDirectional() {
-        return new NuReactiveProcess(builder);
+        return new NuReactiveProcess(builder, metrics(), processStats).withCoalescing(coalescing);
     }
 }
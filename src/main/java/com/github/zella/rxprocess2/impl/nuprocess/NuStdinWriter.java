@@ -0,0 +1,133 @@
+package com.github.zella.rxprocess2.impl.nuprocess;
+
+import com.zaxxer.nuprocess.NuProcess;
+import io.reactivex.schedulers.Schedulers;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes stdin source via {@link NuProcess#wantWrite()}. Only one source buffer held at time, next one requested
+ * from {@code onStdinReady} when previous copied to NuProcess stdin buffer.
+ * <p>
+ * Synchronous sources (file, input stream) emit next buffer inside {@code onStdinReady}. For asynchronous sources
+ * {@code wantWrite} is re-issued until buffer picked up, because NuProcess resets write interest with
+ * {@code onStdinReady} result, and {@code wantWrite} from another thread can be lost.
+ */
+final class NuStdinWriter implements Subscriber<ByteBuffer> {
+
+    private static final long REARM_MILLIS = 10;
+
+    private final NuProcess process;
+
+    private volatile Subscription upstream;
+
+    private ByteBuffer pending;
+
+    private boolean done;
+
+    private boolean inStdinReady;
+
+    private long written;
+
+    NuStdinWriter(NuProcess process) {
+        this.process = process;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        upstream = s;
+        s.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer buffer) {
+        boolean sync;
+        long writtenBefore;
+        synchronized (this) {
+            pending = buffer.duplicate();
+            sync = inStdinReady;
+            writtenBefore = written;
+        }
+        if (!sync)
+            wantWrite(writtenBefore);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        process.destroy(true);
+    }
+
+    @Override
+    public void onComplete() {
+        boolean close;
+        synchronized (this) {
+            done = true;
+            close = pending == null && !inStdinReady;
+        }
+        if (close)
+            process.closeStdin(false);
+    }
+
+    /**
+     * Called from {@link com.zaxxer.nuprocess.NuProcessHandler#onStdinReady(ByteBuffer)}
+     *
+     * @return true if more data ready to write
+     */
+    boolean onStdinReady(ByteBuffer buffer) {
+        boolean requestMore = false;
+        boolean close;
+        boolean more;
+        synchronized (this) {
+            inStdinReady = true;
+            if (pending != null) {
+                int count = Math.min(buffer.remaining(), pending.remaining());
+                ByteBuffer slice = pending.duplicate();
+                slice.limit(slice.position() + count);
+                buffer.put(slice);
+                pending.position(pending.position() + count);
+                written += count;
+                if (!pending.hasRemaining()) {
+                    pending = null;
+                    requestMore = !done;
+                }
+            }
+        }
+        if (requestMore)
+            upstream.request(1);
+        synchronized (this) {
+            inStdinReady = false;
+            more = pending != null;
+            close = pending == null && done;
+        }
+        buffer.flip();
+        if (close)
+            process.closeStdin(false);
+        return more;
+    }
+
+    void cancel() {
+        Subscription s = upstream;
+        if (s != null)
+            s.cancel();
+    }
+
+    private void wantWrite(long writtenBefore) {
+        try {
+            process.wantWrite();
+        } catch (IllegalStateException e) {
+            //stdin already closed
+            return;
+        }
+        Schedulers.computation().scheduleDirect(() -> {
+            boolean stuck;
+            synchronized (this) {
+                stuck = pending != null && written == writtenBefore;
+            }
+            if (stuck && process.isRunning())
+                wantWrite(writtenBefore);
+        }, REARM_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.zella.rxprocess2.metrics;
+
+import com.github.zella.rxprocess2.ProcessStats;
+
+/**
+ * Summary of single process execution
+ */
+public class ExecutionRecord {
+
+    public enum Outcome {
+        /**
+         * Process exited, see exit code
+         */
+        EXITED,
+        CANCELLED,
+        TIMED_OUT,
+        /**
+         * Process failed to start
+         */
+        FAILED
+    }
+
+    public final Outcome outcome;
+
+    /**
+     * {@link Integer#MIN_VALUE} if process not exited
+     */
+    public final int exitCode;
+
+    /**
+     * Time from subscription to finish
+     */
+    public final long wallNanos;
+
+    /**
+     * Time from subscription to process start, -1 if not started
+     */
+    public final long spawnNanos;
+
+    /**
+     * Time from process start to first stdout bytes, -1 if no stdout
+     */
+    public final long firstStdoutNanos;
+
+    public final long stdoutBytes;
+    public final long stdoutChunks;
+    public final long stderrBytes;
+    public final long stderrChunks;
+
+    /**
+     * Resources used by process, null if not collected
+     */
+    public final ProcessStats stats;
+
+    public ExecutionRecord(Outcome outcome, int exitCode, long wallNanos, long spawnNanos, long firstStdoutNanos,
+                           long stdoutBytes, long stdoutChunks, long stderrBytes, long stderrChunks) {
+        this(outcome, exitCode, wallNanos, spawnNanos, firstStdoutNanos,
+                stdoutBytes, stdoutChunks, stderrBytes, stderrChunks, null);
+    }
+
+    public ExecutionRecord(Outcome outcome, int exitCode, long wallNanos, long spawnNanos, long firstStdoutNanos,
+                           long stdoutBytes, long stdoutChunks, long stderrBytes, long stderrChunks,
+                           ProcessStats stats) {
+        this.outcome = outcome;
+        this.exitCode = exitCode;
+        this.wallNanos = wallNanos;
+        this.spawnNanos = spawnNanos;
+        this.firstStdoutNanos = firstStdoutNanos;
+        this.stdoutBytes = stdoutBytes;
+        this.stdoutChunks = stdoutChunks;
+        this.stderrBytes = stderrBytes;
+        this.stderrChunks = stderrChunks;
+        this.stats = stats;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionRecord{" +
+                "outcome=" + outcome +
+                ", exitCode=" + exitCode +
+                ", wallNanos=" + wallNanos +
+                ", spawnNanos=" + spawnNanos +
+                ", firstStdoutNanos=" + firstStdoutNanos +
+                ", stdoutBytes=" + stdoutBytes +
+                ", stdoutChunks=" + stdoutChunks +
+                ", stderrBytes=" + stderrBytes +
+                ", stderrChunks=" + stderrChunks +
+                ", stats=" + stats +
+                '}';
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.zella.rxprocess2.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects counters and latency histograms in memory. Latencies are in nanoseconds.
+ * <pre>
+ * InMemoryRxProcessMetrics metrics = new InMemoryRxProcessMetrics();
+ * RxProcessMetrics.setGlobal(metrics);
+ * ...
+ * metrics.snapshot().forEach((name, value) -&gt; ...);
+ * </pre>
+ */
+public class InMemoryRxProcessMetrics extends RxProcessMetrics {
+
+    private final LatencyHistogram spawn = new LatencyHistogram();
+    private final LatencyHistogram firstStdout = new LatencyHistogram();
+    private final LatencyHistogram wall = new LatencyHistogram();
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder exited = new LongAdder();
+    private final LongAdder nonZeroExits = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder gracefulKills = new LongAdder();
+    private final LongAdder forcedKills = new LongAdder();
+    private final LongAdder stdoutBytes = new LongAdder();
+    private final LongAdder stdoutChunks = new LongAdder();
+    private final LongAdder stderrBytes = new LongAdder();
+    private final LongAdder stderrChunks = new LongAdder();
+
+    @Override
+    public void onSpawn(long spawnNanos) {
+        started.increment();
+        spawn.record(spawnNanos);
+    }
+
+    @Override
+    public void onFirstStdout(long nanos) {
+        firstStdout.record(nanos);
+    }
+
+    @Override
+    public void onKill(boolean forced) {
+        (forced ? forcedKills : gracefulKills).increment();
+    }
+
+    @Override
+    public void onFinish(ExecutionRecord record) {
+        switch (record.outcome) {
+            case EXITED:
+                exited.increment();
+                if (record.exitCode != 0)
+                    nonZeroExits.increment();
+                break;
+            case CANCELLED:
+                cancelled.increment();
+                break;
+            case TIMED_OUT:
+                timedOut.increment();
+                break;
+            case FAILED:
+                failed.increment();
+                break;
+        }
+        wall.record(record.wallNanos);
+        stdoutBytes.add(record.stdoutBytes);
+        stdoutChunks.add(record.stdoutChunks);
+        stderrBytes.add(record.stderrBytes);
+        stderrChunks.add(record.stderrChunks);
+    }
+
+    /**
+     * @return time from subscription to process start
+     */
+    public LatencyHistogram spawn() {
+        return spawn;
+    }
+
+    /**
+     * @return time from process start to first stdout bytes
+     */
+    public LatencyHistogram firstStdout() {
+        return firstStdout;
+    }
+
+    /**
+     * @return time from subscription to finish, for all outcomes
+     */
+    public LatencyHistogram wall() {
+        return wall;
+    }
+
+    public long started() {
+        return started.sum();
+    }
+
+    public long exited() {
+        return exited.sum();
+    }
+
+    public long nonZeroExits() {
+        return nonZeroExits.sum();
+    }
+
+    public long cancelled() {
+        return cancelled.sum();
+    }
+
+    public long timedOut() {
+        return timedOut.sum();
+    }
+
+    public long failed() {
+        return failed.sum();
+    }
+
+    public long gracefulKills() {
+        return gracefulKills.sum();
+    }
+
+    public long forcedKills() {
+        return forcedKills.sum();
+    }
+
+    public long stdoutBytes() {
+        return stdoutBytes.sum();
+    }
+
+    public long stdoutChunks() {
+        return stdoutChunks.sum();
+    }
+
+    public long stderrBytes() {
+        return stderrBytes.sum();
+    }
+
+    public long stderrChunks() {
+        return stderrChunks.sum();
+    }
+
+    /**
+     * @return all counters and histogram percentiles by name, e.g. {@code started}, {@code wall.p99}
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> result = new LinkedHashMap<>();
+        result.put("started", started());
+        result.put("exited", exited());
+        result.put("nonZeroExits", nonZeroExits());
+        result.put("cancelled", cancelled());
+        result.put("timedOut", timedOut());
+        result.put("failed", failed());
+        result.put("gracefulKills", gracefulKills());
+        result.put("forcedKills", forcedKills());
+        result.put("stdoutBytes", stdoutBytes());
+        result.put("stdoutChunks", stdoutChunks());
+        result.put("stderrBytes", stderrBytes());
+        result.put("stderrChunks", stderrChunks());
+        put(result, "spawn", spawn);
+        put(result, "firstStdout", firstStdout);
+        put(result, "wall", wall);
+        return result;
+    }
+
+    private static void put(Map<String, Number> result, String name, LatencyHistogram histogram) {
+        result.put(name + ".count", histogram.count());
+        result.put(name + ".mean", histogram.mean());
+        result.put(name + ".p50", histogram.percentile(50));
+        result.put(name + ".p90", histogram.percentile(90));
+        result.put(name + ".p99", histogram.percentile(99));
+        result.put(name + ".max", histogram.max());
+    }
+
+    public void reset() {
+        spawn.reset();
+        firstStdout.reset();
+        wall.reset();
+        for (LongAdder counter : new LongAdder[]{started, exited, nonZeroExits, cancelled, timedOut, failed,
+                gracefulKills, forcedKills, stdoutBytes, stdoutChunks, stderrBytes, stderrChunks})
+            counter.reset();
+    }
+}
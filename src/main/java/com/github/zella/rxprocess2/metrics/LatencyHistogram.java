@@ -0,0 +1,94 @@
+package com.github.zella.rxprocess2.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free log-linear histogram of non negative values, in the spirit of HdrHistogram. Every power of two range
+ * is split to 32 linear buckets, so reported percentiles are within ~3% of recorded values. Fixed footprint
+ * (~15KB), recording is a few atomic increments.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value negative values are recorded as 0
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) ;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long c = count();
+        return c == 0 ? 0 : (double) sum.sum() / c;
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return highest value equivalent to recorded value at percentile, 0 if histogram is empty
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(highestEquivalent(i), max());
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int index(long v) {
+        if (v < SUB_COUNT)
+            return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exp - SUB_BITS;
+        return SUB_COUNT + shift * SUB_COUNT + (int) ((v >>> shift) - SUB_COUNT);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < SUB_COUNT)
+            return index;
+        int shift = (index - SUB_COUNT) / SUB_COUNT;
+        long lowest = (long) (SUB_COUNT + (index - SUB_COUNT) % SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
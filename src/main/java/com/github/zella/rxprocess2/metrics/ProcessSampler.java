@@ -0,0 +1,208 @@
+package com.github.zella.rxprocess2.metrics;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.PROCESS_STATS_INTERVAL_MILLIS;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Samples os counters of running process: {@code /proc/<pid>} on Linux, otherwise cpu time of
+ * {@code ProcessHandle.Info} on JDK 9+. All live samplers are refreshed by single daemon thread.
+ */
+final class ProcessSampler {
+
+    //USER_HZ, unit of /proc times, is 100 on all Linux architectures
+    private static final long NANOS_PER_TICK = 10_000_000;
+
+    private static final Path PROC = Paths.get("/proc");
+
+    private static final boolean PROCFS = Files.isReadable(PROC.resolve("self/stat"));
+
+    private static final Set<ProcessSampler> LIVE = ConcurrentHashMap.newKeySet();
+
+    private static ScheduledExecutorService ticker;
+
+    private static final class Handles {
+        static final Method OF;
+        static final Method INFO;
+        static final Method TOTAL_CPU;
+
+        static {
+            Method of = null, info = null, totalCpu = null;
+            try {
+                Class<?> handle = Class.forName("java.lang.ProcessHandle");
+                of = handle.getMethod("of", long.class);
+                info = handle.getMethod("info");
+                totalCpu = Class.forName("java.lang.ProcessHandle$Info").getMethod("totalCpuDuration");
+            } catch (ClassNotFoundException | NoSuchMethodException ignored) {
+                //JDK 8
+            }
+            OF = of;
+            INFO = info;
+            TOTAL_CPU = totalCpu;
+        }
+    }
+
+    /**
+     * @return true if counters can be sampled on this platform
+     */
+    static boolean isSupported() {
+        return PROCFS || Handles.OF != null;
+    }
+
+    /**
+     * Start sampling process
+     */
+    static ProcessSampler watch(long pid) {
+        ProcessSampler sampler = new ProcessSampler(pid);
+        sampler.sample();
+        LIVE.add(sampler);
+        startTicker();
+        return sampler;
+    }
+
+    final long pid;
+
+    //guarded by this
+    private boolean gone;
+    private long startTicks = -1;
+    private long userTicks = -1;
+    private long systemTicks = -1;
+    private long cpuNanos = -1;
+    private long maxRssKb = -1;
+    private long readBytes = -1;
+    private long writtenBytes = -1;
+
+    private ProcessSampler(long pid) {
+        this.pid = pid;
+    }
+
+    /**
+     * Take last sample, if process is not reaped yet, and stop sampling
+     */
+    ProcessSampler stop() {
+        LIVE.remove(this);
+        sample();
+        synchronized (this) {
+            gone = true;
+        }
+        return this;
+    }
+
+    synchronized long userCpuNanos() {
+        return userTicks == -1 ? -1 : userTicks * NANOS_PER_TICK;
+    }
+
+    synchronized long systemCpuNanos() {
+        return systemTicks == -1 ? -1 : systemTicks * NANOS_PER_TICK;
+    }
+
+    synchronized long cpuNanos() {
+        return cpuNanos;
+    }
+
+    synchronized long maxRssBytes() {
+        return maxRssKb == -1 ? -1 : maxRssKb * 1024;
+    }
+
+    synchronized long readBytes() {
+        return readBytes;
+    }
+
+    synchronized long writtenBytes() {
+        return writtenBytes;
+    }
+
+    synchronized void sample() {
+        if (gone)
+            return;
+        try {
+            if (PROCFS)
+                sampleProc();
+            else if (Handles.OF != null)
+                sampleHandle();
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            //process reaped
+            gone = true;
+        }
+    }
+
+    private void sampleProc() throws IOException {
+        Path dir = PROC.resolve(Long.toString(pid));
+        String stat = new String(Files.readAllBytes(dir.resolve("stat")), ISO_8859_1);
+        //command name in parentheses may contain spaces, fields after it start from 3rd one
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        long start = Long.parseLong(fields[19]);
+        if (startTicks == -1) {
+            startTicks = start;
+        } else if (start != startTicks) {
+            //pid reused by other process
+            gone = true;
+            return;
+        }
+        userTicks = Long.parseLong(fields[11]);
+        systemTicks = Long.parseLong(fields[12]);
+        cpuNanos = (userTicks + systemTicks) * NANOS_PER_TICK;
+        //exited process has no memory and may hide io counters, previous sample is kept
+        maxRssKb = Math.max(maxRssKb, fields(dir.resolve("status"), "VmHWM:")[0]);
+        long[] io = fields(dir.resolve("io"), "rchar:", "wchar:");
+        readBytes = Math.max(readBytes, io[0]);
+        writtenBytes = Math.max(writtenBytes, io[1]);
+    }
+
+    private void sampleHandle() throws ReflectiveOperationException {
+        Optional<?> handle = (Optional<?>) Handles.OF.invoke(null, pid);
+        if (!handle.isPresent()) {
+            gone = true;
+            return;
+        }
+        Optional<?> cpu = (Optional<?>) Handles.TOTAL_CPU.invoke(Handles.INFO.invoke(handle.get()));
+        if (cpu.isPresent())
+            cpuNanos = ((Duration) cpu.get()).toNanos();
+    }
+
+    /**
+     * @return numeric values of {@code name: value [unit]} lines, -1 if file or line not found
+     */
+    private static long[] fields(Path file, String... names) {
+        long[] values = new long[names.length];
+        Arrays.fill(values, -1);
+        try {
+            for (String line : Files.readAllLines(file, ISO_8859_1)) {
+                for (int i = 0; i < names.length; i++) {
+                    if (line.startsWith(names[i]))
+                        values[i] = Long.parseLong(line.substring(names[i].length()).trim().split(" ")[0]);
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+        return values;
+    }
+
+    private static synchronized void startTicker() {
+        if (ticker != null)
+            return;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "rxprocess2-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            for (ProcessSampler sampler : LIVE)
+                sampler.sample();
+        }, PROCESS_STATS_INTERVAL_MILLIS, PROCESS_STATS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        ticker = executor;
+    }
+}
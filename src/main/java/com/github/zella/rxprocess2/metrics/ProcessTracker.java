@@ -0,0 +1,134 @@
+package com.github.zella.rxprocess2.metrics;
+
+import com.github.zella.rxprocess2.ProcessStats;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures single execution and reports it to {@link RxProcessMetrics}. Used by backends, one per subscription.
+ * <p>
+ * Stdout and stderr counters are written each by single reader thread and read after readers complete.
+ */
+public final class ProcessTracker {
+
+    private static final ProcessTracker DISABLED = new ProcessTracker(RxProcessMetrics.NOOP, false, false);
+
+    private final RxProcessMetrics metrics;
+
+    private final boolean enabled;
+
+    private final boolean processStats;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private final long startNanos;
+
+    private volatile long spawnedNanos = -1;
+
+    private long firstStdoutNanos = -1;
+
+    private volatile ProcessSampler sampler;
+
+    private volatile ProcessStats stats;
+
+    private long stdoutBytes;
+    private long stdoutChunks;
+    private long stderrBytes;
+    private long stderrChunks;
+
+    private ProcessTracker(RxProcessMetrics metrics, boolean enabled, boolean processStats) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.processStats = processStats;
+        this.startNanos = enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Execution subscribed
+     *
+     * @param processStats sample resources used by process
+     */
+    public static ProcessTracker start(RxProcessMetrics metrics, boolean processStats) {
+        boolean stats = processStats && ProcessSampler.isSupported();
+        return metrics == RxProcessMetrics.NOOP && !stats ? DISABLED : new ProcessTracker(metrics, true, stats);
+    }
+
+    /**
+     * @param pid process id, -1 if unknown. Queried only if stats are collected
+     */
+    public void spawned(LongSupplier pid) {
+        if (!enabled)
+            return;
+        spawnedNanos = System.nanoTime();
+        if (processStats) {
+            long id = pid.getAsLong();
+            if (id > 0)
+                sampler = ProcessSampler.watch(id);
+        }
+        metrics.onSpawn(spawnedNanos - startNanos);
+    }
+
+    public void chunk(boolean isStdErr, int bytes) {
+        if (!enabled)
+            return;
+        if (isStdErr) {
+            stderrBytes += bytes;
+            stderrChunks++;
+        } else {
+            if (firstStdoutNanos == -1) {
+                firstStdoutNanos = System.nanoTime() - spawnedNanos;
+                metrics.onFirstStdout(firstStdoutNanos);
+            }
+            stdoutBytes += bytes;
+            stdoutChunks++;
+        }
+    }
+
+    public void exited(int exitCode) {
+        finish(ExecutionRecord.Outcome.EXITED, exitCode);
+    }
+
+    public void cancelled() {
+        finish(ExecutionRecord.Outcome.CANCELLED, Integer.MIN_VALUE);
+    }
+
+    public void timedOut() {
+        finish(ExecutionRecord.Outcome.TIMED_OUT, Integer.MIN_VALUE);
+    }
+
+    public void failed() {
+        finish(ExecutionRecord.Outcome.FAILED, Integer.MIN_VALUE);
+    }
+
+    public void killed(boolean forced) {
+        if (enabled)
+            metrics.onKill(forced);
+    }
+
+    /**
+     * @return resources used by finished process, null if not collected
+     */
+    public ProcessStats stats() {
+        return stats;
+    }
+
+    private void finish(ExecutionRecord.Outcome outcome, int exitCode) {
+        if (!enabled || !finished.compareAndSet(false, true))
+            return;
+        long now = System.nanoTime();
+        long spawned = spawnedNanos;
+        ProcessSampler sampler = this.sampler;
+        if (sampler != null) {
+            sampler.stop();
+            stats = new ProcessStats(sampler.pid, now - spawned,
+                    sampler.userCpuNanos(), sampler.systemCpuNanos(), sampler.cpuNanos(), sampler.maxRssBytes(),
+                    sampler.readBytes(), sampler.writtenBytes(), stdoutBytes, stderrBytes);
+        }
+        metrics.onFinish(new ExecutionRecord(outcome, exitCode,
+                now - startNanos,
+                spawned == -1 ? -1 : spawned - startNanos,
+                firstStdoutNanos,
+                stdoutBytes, stdoutChunks, stderrBytes, stderrChunks, stats));
+    }
+}
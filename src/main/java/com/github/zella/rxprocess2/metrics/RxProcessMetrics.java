@@ -0,0 +1,58 @@
+package com.github.zella.rxprocess2.metrics;
+
+/**
+ * Process execution listener. Registered globally via {@link #setGlobal(RxProcessMetrics)} or per builder via
+ * {@link com.github.zella.rxprocess2.IReactiveProcessBuilder#withMetrics(RxProcessMetrics)}.
+ * <p>
+ * Callbacks are invoked on io threads of the backend, they should be fast and must not throw. Per chunk
+ * counters are accumulated internally and reported once in {@link #onFinish(ExecutionRecord)}. With {@link #NOOP}
+ * nothing is measured.
+ */
+public abstract class RxProcessMetrics {
+
+    public static final RxProcessMetrics NOOP = new RxProcessMetrics() {
+    };
+
+    private static volatile RxProcessMetrics global = NOOP;
+
+    /**
+     * @param metrics listener for builders without own one
+     */
+    public static void setGlobal(RxProcessMetrics metrics) {
+        global = metrics == null ? NOOP : metrics;
+    }
+
+    public static RxProcessMetrics global() {
+        return global;
+    }
+
+    /**
+     * Process started
+     *
+     * @param spawnNanos time from subscription to process start
+     */
+    public void onSpawn(long spawnNanos) {
+    }
+
+    /**
+     * First stdout bytes read
+     *
+     * @param nanos time from process start
+     */
+    public void onFirstStdout(long nanos) {
+    }
+
+    /**
+     * Process killed by library: cancellation, timeout
+     *
+     * @param forced true if process killed forcibly, false if it stopped gracefully
+     */
+    public void onKill(boolean forced) {
+    }
+
+    /**
+     * Execution finished: process exited, or execution cancelled, timed out or failed to start
+     */
+    public void onFinish(ExecutionRecord record) {
+    }
+}
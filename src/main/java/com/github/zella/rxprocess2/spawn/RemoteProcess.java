@@ -0,0 +1,349 @@
+package com.github.zella.rxprocess2.spawn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.zella.rxprocess2.spawn.SpawnProtocol.*;
+
+/**
+ * Process spawned by {@link SpawnServer}, streams are relayed over server channel
+ */
+final class RemoteProcess extends Process {
+
+    private final SpawnServer server;
+
+    private final int id;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch exited = new CountDownLatch(1);
+
+    private final CompletableFuture<Process> exit = new CompletableFuture<>();
+
+    private volatile IOException startFailure;
+
+    private volatile int exitCode;
+
+    private final RelayOutputStream stdin;
+
+    private final RelayInputStream stdout;
+
+    private final RelayInputStream stderr;
+
+    RemoteProcess(SpawnServer server, int id, ProcessBuilder builder) {
+        this.server = server;
+        this.id = id;
+        this.stdin = new RelayOutputStream(builder.redirectInput().type() != ProcessBuilder.Redirect.Type.PIPE);
+        this.stdout = new RelayInputStream(STDOUT_STREAM,
+                builder.redirectOutput().type() != ProcessBuilder.Redirect.Type.PIPE);
+        this.stderr = new RelayInputStream(STDERR_STREAM,
+                builder.redirectErrorStream() || builder.redirectError().type() != ProcessBuilder.Redirect.Type.PIPE);
+    }
+
+    void awaitStarted() throws IOException {
+        try {
+            started.await();
+        } catch (InterruptedException e) {
+            //may be spawned anyway
+            destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while spawning process");
+        }
+        if (startFailure != null)
+            throw startFailure;
+    }
+
+    void started() {
+        started.countDown();
+    }
+
+    void failed(IOException e) {
+        startFailure = e;
+        started.countDown();
+        exited(Integer.MIN_VALUE);
+        stdout.finish();
+        stderr.finish();
+    }
+
+    void output(byte stream, byte[] data) {
+        (stream == STDERR_STREAM ? stderr : stdout).offer(data);
+    }
+
+    void eof(byte stream) {
+        if (stream == STDIN_STREAM)
+            stdin.broken();
+        else
+            (stream == STDERR_STREAM ? stderr : stdout).finish();
+    }
+
+    void stdinCredit(int bytes) {
+        stdin.credit.release(bytes);
+    }
+
+    void exited(int code) {
+        exitCode = code;
+        exited.countDown();
+        exit.complete(this);
+        stdin.broken();
+    }
+
+    /**
+     * @return true if nothing more expected from server
+     */
+    boolean finished() {
+        return exited.getCount() == 0 && stdout.finished() && stderr.finished();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stdin;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stdout;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return stderr;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        exited.await();
+        return exitCode;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return exited.await(timeout, unit);
+    }
+
+    /**
+     * Overrides {@code Process.onExit()} of JDK 9+, which waits for exit in common pool
+     */
+    public CompletableFuture<Process> onExit() {
+        return exit;
+    }
+
+    @Override
+    public int exitValue() {
+        if (isAlive())
+            throw new IllegalThreadStateException("process hasn't exited");
+        return exitCode;
+    }
+
+    @Override
+    public void destroy() {
+        kill(false);
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        kill(true);
+        return this;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return exited.getCount() > 0;
+    }
+
+    private void kill(boolean forced) {
+        if (!isAlive())
+            return;
+        try {
+            server.send(KILL, id, o -> o.writeBoolean(forced));
+        } catch (IOException ignored) {
+            //server is dead, so children are
+        }
+    }
+
+    private void credit(byte stream, int bytes) {
+        try {
+            server.send(CREDIT, id, o -> {
+                o.writeByte(stream);
+                o.writeInt(bytes);
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    private final class RelayInputStream extends InputStream {
+
+        private final byte stream;
+
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+
+        private byte[] current;
+
+        private int position;
+
+        private boolean eof;
+
+        private boolean closed;
+
+        private int consumed;
+
+        /**
+         * @param redirected stream not piped, so it's empty
+         */
+        RelayInputStream(byte stream, boolean redirected) {
+            this.stream = stream;
+            this.eof = redirected;
+        }
+
+        synchronized void offer(byte[] data) {
+            if (!closed) {
+                chunks.add(data);
+                notifyAll();
+            }
+        }
+
+        synchronized void finish() {
+            eof = true;
+            notifyAll();
+        }
+
+        synchronized boolean finished() {
+            return eof;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            int grant = 0;
+            synchronized (this) {
+                if (len == 0)
+                    return 0;
+                while (current == null) {
+                    if (closed)
+                        throw new IOException("Stream closed");
+                    if (!chunks.isEmpty()) {
+                        current = chunks.poll();
+                        position = 0;
+                    } else if (eof) {
+                        return -1;
+                    } else {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException();
+                        }
+                    }
+                }
+                read = Math.min(len, current.length - position);
+                System.arraycopy(current, position, b, off, read);
+                position += read;
+                if (position == current.length)
+                    current = null;
+                consumed += read;
+                if (consumed >= WINDOW / 4) {
+                    grant = consumed;
+                    consumed = 0;
+                }
+            }
+            //not under lock, server reader thread must not wait for consumer
+            if (grant > 0)
+                credit(stream, grant);
+            return read;
+        }
+
+        @Override
+        public synchronized int available() {
+            int available = current == null ? 0 : current.length - position;
+            for (byte[] chunk : chunks)
+                available += chunk.length;
+            return available;
+        }
+
+        @Override
+        public void close() {
+            boolean discard;
+            synchronized (this) {
+                if (closed)
+                    return;
+                closed = true;
+                discard = !eof;
+                chunks.clear();
+                current = null;
+                notifyAll();
+            }
+            if (discard)
+                credit(stream, UNLIMITED);
+        }
+    }
+
+    private final class RelayOutputStream extends OutputStream {
+
+        final Semaphore credit = new Semaphore(WINDOW);
+
+        private final boolean redirected;
+
+        private volatile boolean closed;
+
+        private volatile boolean broken;
+
+        RelayOutputStream(boolean redirected) {
+            this.redirected = redirected;
+        }
+
+        void broken() {
+            if (!broken) {
+                broken = true;
+                //wakes writers waiting for credit
+                credit.release(Integer.MAX_VALUE / 2);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (closed || redirected)
+                    throw new IOException("Stream closed");
+                int chunk = Math.min(len, MAX_CHUNK);
+                try {
+                    credit.acquire(chunk);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (broken)
+                    throw new IOException("Broken pipe");
+                int offset = off;
+                server.send(STDIN, id, o -> writeBytes(o, b, offset, chunk));
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed || redirected)
+                return;
+            closed = true;
+            if (!broken)
+                server.send(STDIN_CLOSE, id, null);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.zella.rxprocess2.spawn;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames between JVM and spawn server, over server stdin and stdout: {@code type, id, payload}.
+ * <p>
+ * Output and stdin are flow controlled by credits: sender may have at most {@link #WINDOW} unacknowledged bytes
+ * per stream, receiver returns credit as it consumes them. Only JDK classes are used, spawn server classpath
+ * contains just this library.
+ */
+final class SpawnProtocol {
+
+    //JVM -> server
+    static final byte SPAWN = 1;
+    static final byte STDIN = 2;
+    static final byte STDIN_CLOSE = 3;
+    static final byte KILL = 4;
+
+    //both directions
+    static final byte CREDIT = 5;
+
+    //server -> JVM
+    static final byte STARTED = 6;
+    static final byte FAILED = 7;
+    static final byte OUTPUT = 8;
+    static final byte EOF = 9;
+    static final byte EXIT = 10;
+
+    static final byte STDIN_STREAM = 0;
+    static final byte STDOUT_STREAM = 1;
+    static final byte STDERR_STREAM = 2;
+
+    static final int WINDOW = 256 * 1024;
+
+    static final int MAX_CHUNK = 64 * 1024;
+
+    /**
+     * Credit to stop flow control of stream, receiver discards its data
+     */
+    static final int UNLIMITED = -1;
+
+    private static final byte REDIRECT_PIPE = 0;
+    private static final byte REDIRECT_READ = 1;
+    private static final byte REDIRECT_WRITE = 2;
+    private static final byte REDIRECT_APPEND = 3;
+
+    private SpawnProtocol() {
+    }
+
+    interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes whole frames from concurrent threads
+     */
+    static final class FrameWriter {
+
+        private final DataOutputStream out;
+
+        FrameWriter(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, MAX_CHUNK + 16));
+        }
+
+        synchronized void send(byte type, int id, Payload payload) throws IOException {
+            out.writeByte(type);
+            out.writeInt(id);
+            if (payload != null)
+                payload.write(out);
+            out.flush();
+        }
+
+        void close() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8), 0, -1);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param length -1 for whole array
+     */
+    static void writeBytes(DataOutputStream out, byte[] data, int offset, int length) throws IOException {
+        int len = length == -1 ? data.length : length;
+        out.writeInt(len);
+        out.write(data, offset, len);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    /**
+     * @return false for redirects server can't reproduce (inherit)
+     */
+    static boolean supported(ProcessBuilder.Redirect redirect) {
+        return redirect.type() != ProcessBuilder.Redirect.Type.INHERIT;
+    }
+
+    static void writeRedirect(DataOutputStream out, ProcessBuilder.Redirect redirect) throws IOException {
+        switch (redirect.type()) {
+            case READ:
+                out.writeByte(REDIRECT_READ);
+                break;
+            case WRITE:
+                out.writeByte(REDIRECT_WRITE);
+                break;
+            case APPEND:
+                out.writeByte(REDIRECT_APPEND);
+                break;
+            default:
+                out.writeByte(REDIRECT_PIPE);
+                return;
+        }
+        writeString(out, redirect.file().getAbsolutePath());
+    }
+
+    static ProcessBuilder.Redirect readRedirect(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case REDIRECT_READ:
+                return ProcessBuilder.Redirect.from(new File(readString(in)));
+            case REDIRECT_WRITE:
+                return ProcessBuilder.Redirect.to(new File(readString(in)));
+            case REDIRECT_APPEND:
+                return ProcessBuilder.Redirect.appendTo(new File(readString(in)));
+            default:
+                return ProcessBuilder.Redirect.PIPE;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.zella.rxprocess2.spawn;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.zella.rxprocess2.RxProcessConfig.SPAWN_SERVER_JVM_OPTIONS;
+import static com.github.zella.rxprocess2.spawn.SpawnProtocol.*;
+
+/**
+ * Small helper JVM, started once, that spawns processes on behalf of this JVM. Spawning from large heap JVM gets
+ * slow under load, helper spawns from small heap.
+ * <p>
+ * Requests and children stdin/stdout/stderr are relayed over helper stdin and stdout pipes with per stream flow
+ * control, so spawned {@link Process} behaves as local one. Pipes are used instead of unix socket, it's not
+ * available in Java 8. Children are killed when helper exits, helper exits when this JVM does.
+ * <p>
+ * Builders with inherited redirects are started directly, helper can't inherit this JVM stdio.
+ *
+ * @see com.github.zella.rxprocess2.RxProcess#reactive(ProcessBuilder, SpawnServer)
+ */
+public final class SpawnServer implements Closeable {
+
+    private static SpawnServer shared;
+
+    /**
+     * @return shared server, started on first call and restarted if died
+     */
+    public static synchronized SpawnServer shared() throws IOException {
+        if (shared == null || !shared.isAlive())
+            shared = start();
+        return shared;
+    }
+
+    /**
+     * Start server with {@code rxprocess2.spawnServerJvmOptions}
+     */
+    public static SpawnServer start() throws IOException {
+        return start(Arrays.asList(SPAWN_SERVER_JVM_OPTIONS.trim().split("\\s+")));
+    }
+
+    /**
+     * @param jvmOptions helper JVM options, e.g. {@code -Xmx32m}
+     */
+    public static SpawnServer start(List<String> jvmOptions) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : jvmOptions) {
+            if (!option.isEmpty())
+                command.add(option);
+        }
+        command.add("-cp");
+        command.add(classpath());
+        command.add(SpawnServerMain.class.getName());
+        Process helper = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        return new SpawnServer(helper);
+    }
+
+    private final Process helper;
+
+    private final FrameWriter out;
+
+    private final DataInputStream in;
+
+    private final Map<Integer, RemoteProcess> processes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    private volatile boolean dead = false;
+
+    private SpawnServer(Process helper) {
+        this.helper = helper;
+        this.out = new FrameWriter(helper.getOutputStream());
+        this.in = new DataInputStream(new BufferedInputStream(helper.getInputStream(), MAX_CHUNK + 16));
+        Thread reader = new Thread(this::read, "rxprocess2-spawn-server-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Spawn process in helper, as {@link ProcessBuilder#start()} does
+     *
+     * @throws IOException if process can't be started or server is dead
+     */
+    public Process spawn(ProcessBuilder builder) throws IOException {
+        if (!supported(builder.redirectInput()) || !supported(builder.redirectOutput()) || !supported(builder.redirectError()))
+            return builder.start();
+
+        int id = ids.incrementAndGet();
+        RemoteProcess process = new RemoteProcess(this, id, builder);
+        processes.put(id, process);
+        try {
+            send(SPAWN, id, o -> {
+                o.writeInt(builder.command().size());
+                for (String arg : builder.command())
+                    writeString(o, arg);
+                o.writeInt(builder.environment().size());
+                for (Map.Entry<String, String> env : builder.environment().entrySet()) {
+                    writeString(o, env.getKey());
+                    writeString(o, env.getValue());
+                }
+                File directory = builder.directory();
+                writeString(o, directory == null ? "" : directory.getAbsolutePath());
+                o.writeBoolean(builder.redirectErrorStream());
+                writeRedirect(o, builder.redirectInput());
+                writeRedirect(o, builder.redirectOutput());
+                writeRedirect(o, builder.redirectError());
+            });
+        } catch (IOException e) {
+            processes.remove(id);
+            throw e;
+        }
+        process.awaitStarted();
+        return process;
+    }
+
+    public boolean isAlive() {
+        return !dead;
+    }
+
+    /**
+     * @return processes with pending exit or output
+     */
+    public int running() {
+        return processes.size();
+    }
+
+    /**
+     * Stop server, its running processes are killed
+     */
+    @Override
+    public void close() {
+        out.close();
+        helper.destroy();
+    }
+
+    void send(byte type, int id, Payload payload) throws IOException {
+        if (dead)
+            throw new IOException("Spawn server is not running");
+        out.send(type, id, payload);
+    }
+
+    private void read() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                int id = in.readInt();
+                RemoteProcess process = processes.get(id);
+                switch (type) {
+                    case STARTED:
+                        if (process != null)
+                            process.started();
+                        break;
+                    case FAILED: {
+                        String message = readString(in);
+                        if (process != null)
+                            process.failed(new IOException(message));
+                        break;
+                    }
+                    case OUTPUT: {
+                        byte stream = in.readByte();
+                        byte[] data = readBytes(in);
+                        if (process != null)
+                            process.output(stream, data);
+                        break;
+                    }
+                    case EOF: {
+                        byte stream = in.readByte();
+                        if (process != null)
+                            process.eof(stream);
+                        break;
+                    }
+                    case CREDIT: {
+                        in.readByte();
+                        int credit = in.readInt();
+                        if (process != null)
+                            process.stdinCredit(credit);
+                        break;
+                    }
+                    case EXIT: {
+                        int code = in.readInt();
+                        if (process != null)
+                            process.exited(code);
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown frame type: " + type);
+                }
+                if (process != null && process.finished())
+                    processes.remove(id);
+            }
+        } catch (IOException e) {
+            //helper exited
+        } finally {
+            dead = true;
+            helper.destroy();
+            IOException error = new IOException("Spawn server is not running");
+            for (RemoteProcess process : processes.values())
+                process.failed(error);
+            processes.clear();
+        }
+    }
+
+    private static String classpath() {
+        CodeSource source = SpawnServerMain.class.getProtectionDomain().getCodeSource();
+        if (source != null) {
+            try {
+                return Paths.get(source.getLocation().toURI()).toString();
+            } catch (URISyntaxException | IllegalArgumentException ignored) {
+            }
+        }
+        return System.getProperty("java.class.path");
+    }
+}
@@ -0,0 +1,275 @@
+package com.github.zella.rxprocess2.spawn;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import static com.github.zella.rxprocess2.spawn.SpawnProtocol.*;
+
+/**
+ * Spawn server entry point, started by {@link SpawnServer} as small JVM. Reads requests from stdin, writes
+ * children output and exit codes to stdout. When stdin closed (parent JVM exited) children are killed.
+ */
+public final class SpawnServerMain {
+
+    private static final byte[] CLOSE_STDIN = {};
+
+    private final DataInputStream in;
+
+    private final FrameWriter out;
+
+    private final Map<Integer, Child> children = new ConcurrentHashMap<>();
+
+    private final ExecutorService threads = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "rxprocess2-spawn-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    SpawnServerMain(InputStream in, OutputStream out) {
+        this.in = new DataInputStream(new BufferedInputStream(in, MAX_CHUNK + 16));
+        this.out = new FrameWriter(out);
+    }
+
+    public static void main(String[] args) {
+        FileOutputStream stdout = new FileOutputStream(FileDescriptor.out);
+        //stdout is protocol channel, nothing else may write there
+        System.setOut(System.err);
+        new SpawnServerMain(new FileInputStream(FileDescriptor.in), stdout).run();
+        System.exit(0);
+    }
+
+    void run() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                int id = in.readInt();
+                switch (type) {
+                    case SPAWN:
+                        spawn(id);
+                        break;
+                    case STDIN: {
+                        byte[] data = readBytes(in);
+                        Child child = children.get(id);
+                        if (child != null)
+                            child.stdin.add(data);
+                        break;
+                    }
+                    case STDIN_CLOSE: {
+                        Child child = children.get(id);
+                        if (child != null)
+                            child.stdin.add(CLOSE_STDIN);
+                        break;
+                    }
+                    case KILL: {
+                        boolean forced = in.readBoolean();
+                        Child child = children.get(id);
+                        if (child != null) {
+                            if (forced)
+                                child.process.destroyForcibly();
+                            else
+                                child.process.destroy();
+                        }
+                        break;
+                    }
+                    case CREDIT: {
+                        byte stream = in.readByte();
+                        int credit = in.readInt();
+                        Child child = children.get(id);
+                        if (child != null)
+                            (stream == STDERR_STREAM ? child.stderr : child.stdout).grant(credit);
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown frame type: " + type);
+                }
+            }
+        } catch (IOException e) {
+            //parent closed channel
+        } finally {
+            for (Child child : children.values())
+                child.process.destroyForcibly();
+        }
+    }
+
+    private void spawn(int id) throws IOException {
+        List<String> command = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--)
+            command.add(readString(in));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.environment().clear();
+        for (int i = in.readInt(); i > 0; i--)
+            builder.environment().put(readString(in), readString(in));
+        String directory = readString(in);
+        if (!directory.isEmpty())
+            builder.directory(new File(directory));
+        builder.redirectErrorStream(in.readBoolean());
+        builder.redirectInput(readRedirect(in));
+        builder.redirectOutput(readRedirect(in));
+        builder.redirectError(readRedirect(in));
+
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException | RuntimeException e) {
+            String message = String.valueOf(e.getMessage());
+            out.send(FAILED, id, o -> writeString(o, message));
+            return;
+        }
+        Child child = new Child(id, process);
+        children.put(id, child);
+        out.send(STARTED, id, null);
+
+        if (builder.redirectOutput().type() == ProcessBuilder.Redirect.Type.PIPE)
+            threads.execute(() -> pump(child, process.getInputStream(), STDOUT_STREAM, child.stdout));
+        if (builder.redirectError().type() == ProcessBuilder.Redirect.Type.PIPE && !builder.redirectErrorStream())
+            threads.execute(() -> pump(child, process.getErrorStream(), STDERR_STREAM, child.stderr));
+        if (builder.redirectInput().type() == ProcessBuilder.Redirect.Type.PIPE)
+            threads.execute(() -> writeStdin(child));
+        threads.execute(() -> awaitExit(child));
+    }
+
+    private void pump(Child child, InputStream stream, byte streamId, Flow flow) {
+        byte[] buffer = new byte[MAX_CHUNK];
+        try {
+            while (true) {
+                int allowed = flow.acquire(buffer.length);
+                int read = stream.read(buffer, 0, allowed);
+                flow.unused(allowed - Math.max(read, 0));
+                if (read == -1)
+                    break;
+                out.send(OUTPUT, child.id, o -> {
+                    o.writeByte(streamId);
+                    writeBytes(o, buffer, 0, read);
+                });
+            }
+        } catch (IOException | InterruptedException ignored) {
+        } finally {
+            sendQuietly(EOF, child.id, streamId);
+        }
+    }
+
+    private void writeStdin(Child child) {
+        OutputStream stdin = child.process.getOutputStream();
+        boolean broken = false;
+        try {
+            for (byte[] data = child.stdin.take(); data != CLOSE_STDIN; data = child.stdin.take()) {
+                if (!broken) {
+                    try {
+                        stdin.write(data);
+                        stdin.flush();
+                    } catch (IOException e) {
+                        //child closed stdin, parent fails further writes
+                        broken = true;
+                        sendQuietly(EOF, child.id, STDIN_STREAM);
+                    }
+                }
+                int credit = data.length;
+                out.send(CREDIT, child.id, o -> {
+                    o.writeByte(STDIN_STREAM);
+                    o.writeInt(credit);
+                });
+            }
+        } catch (IOException | InterruptedException ignored) {
+        } finally {
+            try {
+                stdin.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void awaitExit(Child child) {
+        try {
+            int code = child.process.waitFor();
+            //exited process pipes hold bounded amount of data, don't wait parent credits
+            child.stdout.grant(UNLIMITED);
+            child.stderr.grant(UNLIMITED);
+            child.stdin.add(CLOSE_STDIN);
+            out.send(EXIT, child.id, o -> o.writeInt(code));
+        } catch (IOException | InterruptedException ignored) {
+        } finally {
+            children.remove(child.id);
+        }
+    }
+
+    private void sendQuietly(byte type, int id, byte streamId) {
+        try {
+            out.send(type, id, o -> o.writeByte(streamId));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static final class Child {
+
+        final int id;
+
+        final Process process;
+
+        final Flow stdout = new Flow();
+
+        final Flow stderr = new Flow();
+
+        final BlockingQueue<byte[]> stdin = new LinkedBlockingQueue<>();
+
+        Child(int id, Process process) {
+            this.id = id;
+            this.process = process;
+        }
+    }
+
+    /**
+     * Output credit, bytes parent can accept
+     */
+    private static final class Flow {
+
+        private final Semaphore credit = new Semaphore(WINDOW);
+
+        private volatile boolean unlimited;
+
+        void grant(int bytes) {
+            if (unlimited)
+                return;
+            if (bytes == UNLIMITED) {
+                unlimited = true;
+                //wakes blocked pump
+                credit.release(1);
+            } else {
+                credit.release(bytes);
+            }
+        }
+
+        /**
+         * @return bytes allowed to send, at least one
+         */
+        int acquire(int max) throws InterruptedException {
+            if (unlimited)
+                return max;
+            credit.acquire();
+            int available = 1 + credit.drainPermits();
+            int allowed = Math.min(max, available);
+            credit.release(available - allowed);
+            return allowed;
+        }
+
+        void unused(int bytes) {
+            if (!unlimited && bytes > 0)
+                credit.release(bytes);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.zella.rxprocess2
+
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+import com.github.zella.rxprocess2.common.IoThreadPool
+import com.github.zella.rxprocess2.errors.ProcessTimeoutException
+import com.github.zella.rxprocess2.impl.javalang.{JavaReactiveProcessBuilder, PipelineProcess}
+import io.reactivex.Flowable
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class PipelineSpec extends FlatSpec with Matchers {
+
+  private def pumped(stages: Seq[String]*): IReactiveProcessBuilder[Process] = {
+    val builders = stages.map(cmd => new ProcessBuilder(cmd: _*))
+    val io = IoThreadPool.shared().scheduler()
+    new JavaReactiveProcessBuilder(builders.last, io, last =>
+      PipelineProcess.start((builders.init :+ last).asJava, io, false))
+  }
+
+  private def kernel(stages: Seq[String]*): IReactiveProcessBuilder[Process] = {
+    assume(PipelineProcess.isKernelPipeSupported, "kernel pipes require JDK 21+")
+    RxProcess.pipe(stages.map(cmd => new ProcessBuilder(cmd: _*)): _*)
+  }
+
+  for ((mode, pipe) <- Seq[(String, Seq[Seq[String]] => IReactiveProcessBuilder[Process])](
+    ("Kernel", s => kernel(s: _*)), ("Pumped", s => pumped(s: _*)))) {
+
+    s"$mode pipeline" should "chain stages and report their exits" in {
+      val process = pipe(Seq(Seq("printf", "b\\na\\nc\\n"), Seq("sort"), Seq("head", "-n", "2"))).biDirectional()
+      val stdout = process.stdOut().map[String](b => new String(b)).toList.map[String](_.asScala.mkString).toObservable.test()
+      process.waitDone().blockingGet() shouldBe new Exit(0)
+      stdout.await(5, TimeUnit.SECONDS)
+      stdout.values().get(0) shouldBe "a\nb\n"
+
+      val pipeline = process.started().blockingGet().asInstanceOf[PipelineProcess]
+      pipeline.isKernelPipe shouldBe (mode == "Kernel")
+      pipeline.exitValues().asScala shouldBe Seq(0, 0, 0)
+      pipeline.failedStage() shouldBe -1
+    }
+
+    s"$mode pipeline" should "stream large stdin through stages" in {
+      val data = new Array[Byte](8 * 1024 * 1024)
+      new Random(42).nextBytes(data)
+      val digest = MessageDigest.getInstance("MD5")
+
+      pipe(Seq(Seq("cat"), Seq("cat"), Seq("cat")))
+        .withStdin(Flowable.range(0, 128).map[ByteBuffer](i => ByteBuffer.wrap(data, i * 65536, 65536)))
+        .asStdOutFlowable()
+        .blockingForEach(bytes => digest.update(bytes))
+
+      digest.digest() shouldBe MessageDigest.getInstance("MD5").digest(data)
+    }
+
+    s"$mode pipeline with failed stage" should "be killed with stage exit code and stderr" in {
+      val start = System.currentTimeMillis()
+      val exit = pipe(Seq(Seq("sh", "-c", "echo bad >&2; exit 3"), Seq("sleep", "10"))).asWaitDone().blockingGet()
+      System.currentTimeMillis() - start should be < 5000L
+      exit.statusCode shouldBe 3
+      exit.err.get().getMessage shouldBe "bad\n"
+    }
+
+    s"$mode pipeline with early exiting stage" should "not fail on broken pipe" in {
+      new String(pipe(Seq(Seq("yes"), Seq("head", "-n", "1"))).asStdOutSingle(5, TimeUnit.SECONDS).blockingGet()) shouldBe "y\n"
+    }
+
+    s"$mode pipeline on timeout" should "kill all stages" in {
+      val process = pipe(Seq(Seq("sleep", "10"), Seq("sleep", "10"))).biDirectional()
+      process.waitDone(300, TimeUnit.MILLISECONDS).blockingGet().err.get() shouldBe a[ProcessTimeoutException]
+      val pipeline = process.started().blockingGet().asInstanceOf[PipelineProcess]
+      pipeline.waitFor(5, TimeUnit.SECONDS) shouldBe true
+      pipeline.stages().asScala.exists(_.isAlive) shouldBe false
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.github.zella.rxprocess2
+
+import java.util.concurrent.TimeUnit
+
+import com.github.zella.rxprocess2.errors.ProcessTimeoutException
+import io.reactivex.Flowable
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class ProcessBatchSpec extends FlatSpec with Matchers {
+
+  private def inputs(range: Range): Flowable[String] = Flowable.fromIterable(range.map(_.toString).asJava)
+
+  private def sh(script: String): ProcessBuilder = new ProcessBuilder("sh", "-c", script, "sh")
+
+  "Batch" should "emit results in input order" in {
+    val results = RxProcess.batch(sh("sleep 0.$(( ($1 * 7) % 5 )); echo $1"), inputs(0 until 10))
+      .parallelism(10)
+      .results()
+      .toList.blockingGet().asScala
+
+    results.map(r => new String(r.stdout).trim) shouldBe (0 until 10).map(_.toString)
+    results.map(_.args.asScala) shouldBe (0 until 10).map(i => Seq(i.toString))
+    results.foreach(_.exit shouldBe new Exit(0))
+
+    val unordered = RxProcess.batch(sh("echo $1"), inputs(0 until 10)).ordered(false).results().toList.blockingGet().asScala
+    unordered.map(r => new String(r.stdout).trim).toSet shouldBe (0 until 10).map(_.toString).toSet
+  }
+
+  "Batch" should "pack inputs by count and by size" in {
+    val byCount = RxProcess.batch(new ProcessBuilder("echo"), inputs(0 until 1000)).maxArgs(100).results().toList.blockingGet().asScala
+    byCount.size shouldBe 10
+    byCount.flatMap(r => new String(r.stdout).trim.split(" ")) shouldBe (0 until 1000).map(_.toString)
+
+    val template = new ProcessBuilder("echo")
+    template.environment().clear()
+    //"echo" and every 9 chars input take length + terminator + pointer
+    val bySize = RxProcess.batch(template, Flowable.range(0, 20).map[String](_ => "123456789"))
+      .maxArgs(1000)
+      .maxArgBytes((4 + 1 + 8) + 5 * (9 + 1 + 8))
+      .results().toList.blockingGet().asScala
+    bySize.map(_.args.size()) shouldBe Seq(5, 5, 5, 5)
+  }
+
+  "Batch" should "report failed and timed out invocations without stopping" in {
+    val results = RxProcess.batch(sh("[ $1 -gt 5 ] && sleep $1; exit $1"), Flowable.just("0", "3", "10", "1"))
+      .timeout(1, TimeUnit.SECONDS)
+      .results().toList.blockingGet().asScala
+
+    results.map(_.exit.statusCode) shouldBe Seq(0, 3, Integer.MIN_VALUE, 1)
+    results(2).exit.err.get() shouldBe a[ProcessTimeoutException]
+  }
+
+  "Batch" should "limit parallelism" in {
+    def elapsed(parallelism: Int): Long = {
+      val start = System.currentTimeMillis()
+      RxProcess.batch(new ProcessBuilder("sleep"), Flowable.just("0.3", "0.3", "0.3", "0.3"))
+        .parallelism(parallelism).results().blockingSubscribe()
+      System.currentTimeMillis() - start
+    }
+
+    elapsed(4) should be < 1000L
+    elapsed(1) should be >= 1200L
+  }
+
+  "Batch" should "fail if process can't be started" in {
+    val observer = RxProcess.batch(new ProcessBuilder("not-existing-program-rx"), inputs(0 until 3)).results().test()
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertError(classOf[java.io.IOException])
+  }
+}
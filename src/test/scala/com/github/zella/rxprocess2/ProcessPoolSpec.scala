@@ -0,0 +1,107 @@
+package com.github.zella.rxprocess2
+
+import java.util.concurrent.{RejectedExecutionException, TimeUnit}
+
+import com.github.zella.rxprocess2.common.Framing
+import com.github.zella.rxprocess2.errors.{FrameTooLongException, ProcessException, ProcessTimeoutException}
+import io.reactivex._
+import io.reactivex.observers.TestObserver
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class ProcessPoolSpec extends FlatSpec with Matchers {
+
+  private val upperWorker = "import sys\nfor l in sys.stdin:\n  if l.startswith('sleep'): import time; time.sleep(10)\n  sys.stdout.write(l.upper()); sys.stdout.flush()"
+
+  private def pool(script: String = upperWorker): ProcessPool.Builder =
+    ProcessPool.builder(RxProcess.reactive(new ProcessBuilder("python3", "-u", "-c", script)), Framing.newline())
+
+  "ProcessPool" should "route concurrent requests to bounded number of workers" in {
+    val p = pool().workers(2).build()
+    try {
+      val responses = Flowable.range(0, 200)
+        .flatMapSingle[String](new functions.Function[Integer, Single[String]] {
+          override def apply(i: Integer): Single[String] = p.request(s"req$i".getBytes).map[String](b => new String(b))
+        }, false, 200)
+        .toList
+        .blockingGet()
+      responses.asScala.toSet shouldBe (0 until 200).map(i => s"REQ$i").toSet
+      p.spawned() shouldBe 2
+      p.idle() shouldBe 2
+    } finally p.dispose()
+  }
+
+  "ProcessPool" should "recycle worker after max requests" in {
+    val p = pool().workers(1).maxRequestsPerWorker(3).build()
+    try {
+      (0 until 10).foreach(i => new String(p.request(s"r$i".getBytes).blockingGet()) shouldBe s"R$i")
+      p.spawned() shouldBe 4
+      p.recycled() shouldBe 3
+    } finally p.dispose()
+  }
+
+  "ProcessPool" should "reject requests when queue is full" in {
+    val p = pool().workers(1).maxQueued(1).build()
+    try {
+      val busy = p.request("sleep".getBytes).test()
+      val queued = p.request("a".getBytes).test()
+      Thread.sleep(200)
+      val rejected = p.request("b".getBytes).test()
+      rejected.await(5, TimeUnit.SECONDS)
+      rejected.assertError(classOf[RejectedExecutionException])
+      p.queued() shouldBe 1
+      busy.dispose()
+      queued.dispose()
+    } finally p.dispose()
+  }
+
+  "ProcessPool" should "fail request and replace worker on timeout" in {
+    val p = pool().workers(1).requestTimeout(300, TimeUnit.MILLISECONDS).build()
+    try {
+      val observer: TestObserver[Array[Byte]] = p.request("sleep".getBytes).test()
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertError(classOf[ProcessTimeoutException])
+      new String(p.request("ok".getBytes).blockingGet()) shouldBe "OK"
+      p.spawned() shouldBe 2
+    } finally p.dispose()
+  }
+
+  "ProcessPool" should "fail request and replace worker on frame longer than limit" in {
+    val worker = "import sys\nfor l in sys.stdin:\n  sys.stdout.write(('x' * 100 if l.startswith('long') else l.upper())); sys.stdout.flush()"
+    val p = ProcessPool.builder(RxProcess.reactive(new ProcessBuilder("python3", "-u", "-c", worker)), Framing.newline(16))
+      .workers(1).build()
+    try {
+      val observer: TestObserver[Array[Byte]] = p.request("long".getBytes).test()
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertError(classOf[FrameTooLongException])
+      new String(p.request("ok".getBytes).blockingGet()) shouldBe "OK"
+      p.spawned() shouldBe 2
+      p.recycled() shouldBe 1
+    } finally p.dispose()
+  }
+
+  "ProcessPool" should "fail request when worker exits" in {
+    val p = pool("import sys; sys.stdin.readline(); print('boom', file=sys.stderr); sys.exit(3)").workers(1).build()
+    try {
+      val observer: TestObserver[Array[Byte]] = p.request("a".getBytes).test()
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertError(classOf[ProcessException])
+      observer.errors().get(0).asInstanceOf[ProcessException].exitCode shouldBe 3
+      p.size() shouldBe 0
+    } finally p.dispose()
+  }
+
+  "ProcessPool" should "replace unhealthy idle worker" in {
+    val p = pool("import sys\nfor l in sys.stdin:\n  if l.startswith('ping'): continue\n  sys.stdout.write(l); sys.stdout.flush()")
+      .workers(1)
+      .healthCheck("ping".getBytes, 200, TimeUnit.MILLISECONDS)
+      .build()
+    try {
+      new String(p.request("a".getBytes).blockingGet()) shouldBe "a"
+      Thread.sleep(1000)
+      p.recycled() should be > 0L
+      new String(p.request("b".getBytes).blockingGet()) shouldBe "b"
+    } finally p.dispose()
+  }
+}
@@ -0,0 +1,148 @@
+package com.github.zella.rxprocess2
+
+import java.nio.file.{Files, Path}
+import java.util.concurrent.TimeUnit
+
+import com.github.zella.rxprocess2.errors.ProcessTimeoutException
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.{Flowable, Single, functions}
+import org.scalatest._
+
+class ResultCacheSpec extends FlatSpec with Matchers {
+
+  /**
+   * @return builder that appends line to counter file on each execution
+   */
+  private def counted(cache: ResultCache, counter: Path, script: String): IReactiveProcessBuilder[Process] =
+    cache.reactive(new ProcessBuilder("sh", "-c", s"echo run >> $counter; $script"))
+
+  private def runs(counter: Path): Int =
+    if (Files.exists(counter)) Files.readAllLines(counter).size() else 0
+
+  "ResultCache" should "memoise stdout and skip process on hit" in {
+    val cache = ResultCache.builder().build()
+    val counter = Files.createTempFile("rxprocess2", ".count")
+
+    for (_ <- 0 until 3) {
+      val stdout = counted(cache, counter, "echo hello").asStdOutSingle().blockingGet()
+      new String(stdout) shouldBe "hello\n"
+      stdout(0) = 'x'
+    }
+
+    runs(counter) shouldBe 1
+    cache.misses() shouldBe 1
+    cache.hits() shouldBe 2
+    cache.size() shouldBe 1
+    Files.delete(counter)
+  }
+
+  "ResultCache" should "key by stdin and environment subset" in {
+    val cache = ResultCache.builder().build()
+
+    def cat(stdin: String) = new String(cache.reactive(new ProcessBuilder("cat")).withStdin(stdin.getBytes).asStdOutSingle().blockingGet())
+
+    cat("a") shouldBe "a"
+    cat("b") shouldBe "b"
+    cat("a") shouldBe "a"
+    cache.hits() shouldBe 1
+
+    def env(value: String) = {
+      val pb = new ProcessBuilder("sh", "-c", "echo $RX_VALUE")
+      pb.environment().put("RX_VALUE", value)
+      pb.environment().put("RX_IGNORED", value)
+      new String(cache.reactive(pb, "RX_VALUE").asStdOutSingle().blockingGet())
+    }
+
+    env("1") shouldBe "1\n"
+    env("2") shouldBe "2\n"
+    env("1") shouldBe "1\n"
+    cache.hits() shouldBe 2
+
+    //streamed stdin is not cached
+    val streamed = cache.reactive(new ProcessBuilder("cat")).withStdin(Flowable.just(java.nio.ByteBuffer.wrap("a".getBytes)))
+    new String(streamed.asStdOutSingle().blockingGet()) shouldBe "a"
+    cache.hits() shouldBe 2
+  }
+
+  "ResultCache" should "cache non zero exit but not timeout" in {
+    val cache = ResultCache.builder().build()
+    val counter = Files.createTempFile("rxprocess2", ".count")
+
+    counted(cache, counter, "echo bad >&2; exit 3").asWaitDone().blockingGet().statusCode shouldBe 3
+    val exit = counted(cache, counter, "echo bad >&2; exit 3").asWaitDone().blockingGet()
+    exit.statusCode shouldBe 3
+    exit.err.get().getMessage shouldBe "bad\n"
+    runs(counter) shouldBe 1
+
+    for (_ <- 0 until 2) {
+      counted(cache, counter, "sleep 10").asWaitDone(200, TimeUnit.MILLISECONDS).blockingGet()
+        .err.get() shouldBe a[ProcessTimeoutException]
+    }
+    runs(counter) shouldBe 3
+    Files.delete(counter)
+  }
+
+  "ResultCache" should "evict least recently used and expire entries" in {
+    val small = ResultCache.builder().maxBytes(3 * (128 + 64 + 100)).build()
+
+    def run(cache: ResultCache, i: Int) = cache.reactive(new ProcessBuilder("head", "-c", "100", "/dev/zero"), s"IGNORED_$i")
+      .withStdin(i.toString.getBytes).asStdOutSingle().blockingGet()
+
+    for (i <- 0 until 3) run(small, i)
+    run(small, 0)
+    run(small, 3)
+    small.evictions() shouldBe 1
+    small.size() shouldBe 3
+    //1 was least recently used
+    run(small, 0)
+    run(small, 1)
+    small.hits() shouldBe 2
+    small.misses() shouldBe 5
+
+    val expiring = ResultCache.builder().ttl(200, TimeUnit.MILLISECONDS).build()
+    run(expiring, 0)
+    run(expiring, 0)
+    Thread.sleep(300)
+    run(expiring, 0)
+    expiring.hits() shouldBe 1
+    expiring.expirations() shouldBe 1
+  }
+
+  "ResultCache with directory" should "serve results after restart" in {
+    val dir = Files.createTempDirectory("rxprocess2-cache")
+    val counter = Files.createTempFile("rxprocess2", ".count")
+
+    counted(ResultCache.builder().directory(dir).build(), counter, "echo hello").asStdOutSingle().blockingGet()
+    counted(ResultCache.builder().directory(dir).build(), counter, "echo bad >&2; exit 1").asWaitDone().blockingGet()
+
+    val restarted = ResultCache.builder().directory(dir).build()
+    new String(counted(restarted, counter, "echo hello").asStdOutSingle().blockingGet()) shouldBe "hello\n"
+    counted(restarted, counter, "echo bad >&2; exit 1").asWaitDone().blockingGet().err.get().getMessage shouldBe "bad\n"
+    new String(counted(restarted, counter, "echo hello").asStdOutSingle().blockingGet()) shouldBe "hello\n"
+
+    runs(counter) shouldBe 2
+    restarted.diskHits() shouldBe 2
+    restarted.hits() shouldBe 1
+    restarted.misses() shouldBe 0
+
+    Files.list(dir).forEach(f => Files.delete(f))
+    Files.delete(dir)
+    Files.delete(counter)
+  }
+
+  "ResultCache" should "share concurrent identical executions" in {
+    val cache = ResultCache.builder().build()
+    val counter = Files.createTempFile("rxprocess2", ".count")
+
+    val results = Flowable.range(0, 10)
+      .flatMapSingle[Array[Byte]](new functions.Function[Integer, Single[Array[Byte]]] {
+        override def apply(i: Integer): Single[Array[Byte]] =
+          counted(cache, counter, "sleep 0.5; echo hello").asStdOutSingle().subscribeOn(Schedulers.io)
+      }, false, 10)
+      .toList.blockingGet()
+
+    results.size() shouldBe 10
+    runs(counter) shouldBe 1
+    Files.delete(counter)
+  }
+}
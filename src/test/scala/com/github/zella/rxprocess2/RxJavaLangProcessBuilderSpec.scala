@@ -2,17 +2,21 @@ package com.github.zella.rxprocess2
 
 
 import java.io.File
+import java.nio.ByteBuffer
 import java.nio.charset.Charset
 import java.nio.file.Files
 import java.time.Instant
 import java.util
 import java.util.Collections
-import java.util.concurrent.{Executors, TimeUnit}
+import java.util.concurrent.{ConcurrentLinkedQueue, Executors, TimeUnit}
 
 import com.github.davidmoten.rx2.{Bytes, Strings}
 import com.github.zella.rxprocess2.errors.{ProcessException, ProcessTimeoutException}
+import com.github.zella.rxprocess2.metrics.{ExecutionRecord, InMemoryRxProcessMetrics, RxProcessMetrics}
 import io.reactivex._
 import io.reactivex.observers.TestObserver
+import io.reactivex.plugins.RxJavaPlugins
+import io.reactivex.subscribers.TestSubscriber
 import io.reactivex.schedulers.Schedulers
 import org.scalatest._
 
@@ -221,7 +225,7 @@ class RxJavaLangProcessBuilderSpec extends FlatSpec with Matchers {
     stdout.assertResult("hello", "world")
   }
 
-  "Process asStdoutBuffered" should "be executed serially in single thread scheduler" in {
+  "Process asStdoutBuffered" should "not hold single thread scheduler until exit" in {
 
     def between(v: Long, min: Long, max: Long) = v > min && v < max
 
@@ -241,12 +245,25 @@ class RxJavaLangProcessBuilderSpec extends FlatSpec with Matchers {
     whatToTest.subscribe(s => test.append(s))
     whatToTest.subscribe(s => test.append(s))
     whatToTest.subscribe(s => test.append(s))
-    Thread.sleep(6000)
+    Thread.sleep(3000)
 
-    between(Math.abs(test(0).toEpochMilli - now), 1000, 1300) shouldBe true
-    between(Math.abs(test(1).toEpochMilli - now), 2000, 2300) shouldBe true
-    between(Math.abs(test(2).toEpochMilli - now), 3000, 3300) shouldBe true
-    between(Math.abs(test(3).toEpochMilli - now), 4000, 4300) shouldBe true
+    test.size shouldBe 4
+    test.foreach(t => between(Math.abs(t.toEpochMilli - now), 1000, 1300) shouldBe true)
+  }
+
+  "Process asWaitDone" should "not hold subscribing threads while processes run" in {
+
+    val sc = Schedulers.from(Executors.newSingleThreadExecutor())
+    val start = System.currentTimeMillis()
+
+    val exits = Observable.range(0, 50)
+      .flatMapSingle(new functions.Function[Integer, SingleSource[Exit]] {
+        override def apply(i: Integer): SingleSource[Exit] = init(Seq("sleep", "1")).asWaitDone().subscribeOn(sc)
+      })
+      .toList.blockingGet().asScala
+
+    exits.foreach(_ shouldBe new Exit(0))
+    System.currentTimeMillis() - start should be < 3000L
   }
 
   "Process asStdoutBuffered" should "be executed parallel in io thread scheduler" in {
@@ -310,4 +327,407 @@ class RxJavaLangProcessBuilderSpec extends FlatSpec with Matchers {
     observer.assertResult("hello worlds")
   }
 
-}
\ No newline at end of file
+  "Process asStdOutFlowable" should "not read stdout until requested" in {
+
+    val marker = File.createTempFile("rxprocess2", ".done")
+    marker.delete()
+
+    val subscriber = new TestSubscriber[Array[Byte]](1)
+
+    val src: Flowable[Array[Byte]] =
+      init(Seq("bash", "-c", s"head -c 50000000 /dev/zero && touch $marker")).asStdOutFlowable()
+
+    src.subscribe(subscriber)
+
+    Thread.sleep(1000)
+    subscriber.assertValueCount(1)
+    subscriber.assertNotComplete()
+    marker.exists() shouldBe false
+
+    subscriber.requestMore(Long.MaxValue)
+    subscriber.await(10, TimeUnit.SECONDS)
+    subscriber.assertNoErrors()
+    subscriber.assertComplete()
+    subscriber.values().asScala.map(_.length.toLong).sum shouldBe 50000000L
+    marker.exists() shouldBe true
+    marker.delete()
+  }
+
+  "Process asStdErrOutFlowable with wrong process" should "be failed with exception and captured stderr" in {
+
+    val subscriber = new TestSubscriber[ProcessChunk]
+
+    val src: Flowable[ProcessChunk] =
+      init(Seq("bash", "-c", "printf foo && printf bar >>/dev/stderr && sleep 0.1 && exit 1")).asStdErrOutFlowable()
+
+    src.subscribe(subscriber)
+
+    subscriber.await(5, TimeUnit.SECONDS)
+    subscriber.assertError(classOf[ProcessException])
+    subscriber.errors().get(0).getMessage shouldBe "bar"
+  }
+
+  "Process stdOutFlowable" should "be completed with stdout chunks" in {
+
+    val stdout = new TestSubscriber[String]
+    val done = new TestObserver[Exit]
+
+    val src: IReactiveProcess[Process] = init(Seq("cat")).biDirectional()
+
+    src.stdOutFlowable().map[String](b => new String(b)).subscribe(stdout)
+    src.waitDone()
+      .subscribeOn(Schedulers.io)
+      .subscribe(done)
+
+    src.stdIn().onNext("hello".getBytes)
+    Thread.sleep(500)
+    src.stdIn().onComplete()
+
+    done.await(5, TimeUnit.SECONDS)
+    done.assertResult(new Exit(0))
+    stdout.await(5, TimeUnit.SECONDS)
+    stdout.assertResult("hello")
+  }
+
+  "Process asStdoutBuffered with file stdin" should "stream stdin concurrently with stdout" in {
+
+    val testFile = new File(getClass.getClassLoader.getResource("long513339b.txt").getFile)
+
+    val observer = new TestObserver[Array[Byte]]
+
+    init(Seq("cat")).withStdin(testFile.toPath).asStdOutSingle()
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.assertComplete()
+    observer.values().get(0) shouldBe Files.readAllBytes(testFile.toPath)
+  }
+
+  "Process asStdout with stream stdin" should "be completed with stdout chunks" in {
+
+    val observer = new TestObserver[String]
+
+    val stdin = Flowable.just("hello ", "worlds").map[ByteBuffer](s => ByteBuffer.wrap(s.getBytes))
+
+    init(Seq("cat")).withStdin(stdin).asStdOutSingle().map[String](b => new String(b))
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.assertResult("hello worlds")
+  }
+
+  "Process asStdOutToFile" should "write stdout to file" in {
+
+    val testFile = new File(getClass.getClassLoader.getResource("long513339b.txt").getFile)
+    val out = Files.createTempFile("rxprocess2", ".out")
+
+    val observer = new TestObserver[Exit]
+
+    init(Seq("cat", testFile.getAbsolutePath)).asStdOutToFile(out)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertResult(new Exit(0))
+    Files.readAllBytes(out) shouldBe Files.readAllBytes(testFile.toPath)
+    Files.delete(out)
+  }
+
+  "Process asStdErrToFile with wrong process" should "write stderr to file and capture stderr tail" in {
+
+    val err = Files.createTempFile("rxprocess2", ".err")
+
+    val observer = new TestObserver[Exit]
+
+    init(Seq("python3", "-c", "import sys; print('out'); print('foo', end='', file=sys.stderr, flush=True); sys.exit(1)"))
+      .asStdErrToFile(err)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.values().get(0).statusCode shouldBe 1
+    observer.values().get(0).err.get().getMessage shouldBe "foo"
+    new String(Files.readAllBytes(err)) shouldBe "foo"
+    Files.delete(err)
+  }
+
+  "1000 processes" should "reuse shared io threads" in {
+
+    val pool = common.IoThreadPool.shared()
+    val createdBefore = pool.createdThreads()
+    val delayedBefore = pool.delayedTasks()
+    val threadsBefore = Thread.activeCount()
+    val maxThreads = new java.util.concurrent.atomic.AtomicInteger()
+    val sampler = Observable.interval(10, TimeUnit.MILLISECONDS)
+      .subscribe(_ => maxThreads.accumulateAndGet(Thread.activeCount(), Math.max(_, _)))
+
+    val outputs = Flowable.range(0, 1000)
+      .flatMapSingle[Array[Byte]](new functions.Function[Integer, Single[Array[Byte]]] {
+        override def apply(i: Integer): Single[Array[Byte]] = init(Seq("echo", i.toString)).asStdOutSingle().subscribeOn(Schedulers.io)
+      }, false, 16)
+      .count()
+      .blockingGet()
+
+    sampler.dispose()
+    outputs shouldBe 1000
+    //stdout and stderr reader per process, 2000 threads without reuse
+    pool.createdThreads() - createdBefore should be <= 64L
+    //no reader waited for thread
+    pool.delayedTasks() - delayedBefore shouldBe 0L
+    maxThreads.get() - threadsBefore should be < 128
+  }
+
+  "Virtual threads process" should "be completed with stdout or be unsupported on old JDK" in {
+
+    if (common.VirtualThreads.isSupported) {
+      val observer = new TestObserver[String]
+      RxProcess.reactiveVirtual(new ProcessBuilder("echo", "hello"))
+        .asStdOutSingle()
+        .map[String](b => new String(b).trim)
+        .subscribeOn(common.VirtualThreads.scheduler())
+        .subscribe(observer)
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertResult("hello")
+    } else {
+      an[UnsupportedOperationException] should be thrownBy RxProcess.reactiveVirtual(new ProcessBuilder("echo"))
+    }
+  }
+
+  "Process asStdOutLines" should "emit decoded lines" in {
+
+    val observer = new TestObserver[String]
+
+    init(Seq("python3", "-c", "import sys; sys.stdout.buffer.write('привет\\nмир\\n€'.encode('utf-8'))"))
+      .asStdOutLines(java.nio.charset.StandardCharsets.UTF_8)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertResult("привет", "мир", "€")
+  }
+
+  "Process stdOutLines" should "emit decoded lines" in {
+
+    val process = init(Seq("cat")).biDirectional()
+    val lines = process.stdOutLines().test()
+    val done = process.waitDone().subscribeOn(Schedulers.io).test()
+
+    process.stdIn().onNext("foo\nba".getBytes)
+    process.stdIn().onNext("r\n".getBytes)
+    process.stdIn().onComplete()
+
+    done.await(5, TimeUnit.SECONDS)
+    lines.await(5, TimeUnit.SECONDS)
+    lines.assertResult("foo", "bar")
+  }
+
+  "Process biDirectional with framing" should "exchange whole messages" in {
+
+    val framing = common.Framing.varint()
+    val process = init(Seq("cat")).biDirectional()
+    val messages = framing.decode(process.stdOut()).map[String](b => new String(b)).test()
+    val done = process.waitDone().subscribeOn(Schedulers.io).test()
+
+    val stdin = framing.encoder(process.stdIn())
+    stdin.onNext("hello".getBytes)
+    stdin.onNext(("x" * 100000).getBytes)
+    stdin.onNext("".getBytes)
+    stdin.onComplete()
+
+    done.await(5, TimeUnit.SECONDS)
+    messages.await(5, TimeUnit.SECONDS)
+    messages.assertResult("hello", "x" * 100000, "")
+  }
+
+  "Process with metrics" should "report execution" in {
+
+    val metrics = new InMemoryRxProcessMetrics
+    val observer = new TestObserver[ProcessChunk]
+
+    init(Seq("python3", "-c", "import sys; print('out', flush=True); print('err', file=sys.stderr); sys.exit(3)"))
+      .withMetrics(metrics)
+      .asStdErrOut()
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertError(classOf[ProcessException])
+    metrics.started() shouldBe 1
+    metrics.exited() shouldBe 1
+    metrics.nonZeroExits() shouldBe 1
+    metrics.stdoutBytes() shouldBe 4
+    metrics.stderrBytes() shouldBe 4
+    metrics.firstStdout().count() shouldBe 1
+    metrics.wall().count() shouldBe 1
+    metrics.spawn().percentile(100) should be <= metrics.wall().max()
+  }
+
+  "Timed out process with metrics" should "report timeout and kill" in {
+
+    val metrics = new InMemoryRxProcessMetrics
+
+    val exit = init(Seq("sleep", "10"))
+      .withMetrics(metrics)
+      .asWaitDone(300, TimeUnit.MILLISECONDS)
+      .subscribeOn(Schedulers.io)
+      .blockingGet()
+
+    exit.err.get() shouldBe a[ProcessTimeoutException]
+    metrics.timedOut() shouldBe 1
+    metrics.cancelled() shouldBe 0
+    metrics.exited() shouldBe 0
+    metrics.gracefulKills() + metrics.forcedKills() shouldBe 1
+  }
+
+  "Process with global metrics" should "report flowable execution and cancellation" in {
+
+    val metrics = new InMemoryRxProcessMetrics
+    RxProcessMetrics.setGlobal(metrics)
+    try {
+      init(Seq("echo", "hello")).asStdOutFlowable().blockingSubscribe()
+      val subscriber = init(Seq("sleep", "10")).asStdOutFlowable().subscribeOn(Schedulers.io).test()
+      Thread.sleep(300)
+      subscriber.dispose()
+    } finally {
+      RxProcessMetrics.setGlobal(null)
+    }
+    metrics.exited() shouldBe 1
+    metrics.stdoutBytes() shouldBe 6
+    metrics.cancelled() shouldBe 1
+    metrics.gracefulKills() + metrics.forcedKills() shouldBe 1
+  }
+
+  "Cancelled process asStdOutFlowable" should "not report undeliverable exit error" in {
+
+    val undeliverable = new ConcurrentLinkedQueue[Throwable]()
+    RxJavaPlugins.setErrorHandler(e => undeliverable.add(e))
+    try {
+      init(Seq("sh", "-c", "while true; do echo y; done")).asStdOutFlowable().take(3).blockingSubscribe()
+      val subscriber = init(Seq("sleep", "10")).asStdOutFlowable().subscribeOn(Schedulers.io).test()
+      Thread.sleep(300)
+      subscriber.dispose()
+      init(Seq("sleep", "10")).asStdOutFlowable(300, TimeUnit.MILLISECONDS).test()
+        .await().assertError(classOf[ProcessTimeoutException])
+      Thread.sleep(1500)
+    } finally {
+      RxJavaPlugins.setErrorHandler(null)
+    }
+    undeliverable.asScala shouldBe empty
+  }
+
+  "Timed out process ignoring SIGTERM" should "be killed forcibly" in {
+
+    val metrics = new InMemoryRxProcessMetrics
+
+    val exit = init(Seq("python3", "-c", "import signal, time; signal.signal(signal.SIGTERM, signal.SIG_IGN); print('ready', flush=True); time.sleep(10)"))
+      .withMetrics(metrics)
+      .asWaitDone(500, TimeUnit.MILLISECONDS)
+      .subscribeOn(Schedulers.io)
+      .blockingGet()
+
+    exit.err.get() shouldBe a[ProcessTimeoutException]
+    metrics.timedOut() shouldBe 1
+    metrics.forcedKills() shouldBe 1
+  }
+
+  "Process asStdOutSingle with expected size" should "collect stdout of any size" in {
+
+    new String(init(Seq("printf", "hello")).asStdOutSingle(5, 5, TimeUnit.SECONDS).blockingGet()) shouldBe "hello"
+    init(Seq("head", "-c", "100000", "/dev/zero")).asStdOutSingle(10, 5, TimeUnit.SECONDS).blockingGet().length shouldBe 100000
+    init(Seq("head", "-c", "10", "/dev/zero")).asStdOutSingle(100000, 5, TimeUnit.SECONDS).blockingGet().length shouldBe 10
+  }
+
+  "Process asStdOutCollected" should "keep small output in heap and spill large to file" in {
+
+    val small = init(Seq("printf", "hello")).asStdOutCollected().blockingGet()
+    small.isSpilled shouldBe false
+    new String(small.toByteArray) shouldBe "hello"
+
+    val large = init(Seq("head", "-c", "1000000", "/dev/urandom")).asStdOutCollected(0, 64 * 1024, 5, TimeUnit.SECONDS).blockingGet()
+    large.isSpilled shouldBe true
+    large.size() shouldBe 1000000
+    large.asByteBuffer().remaining() shouldBe 1000000
+    large.toByteArray shouldBe Files.readAllBytes(large.file())
+    large.close()
+    Files.exists(large.file()) shouldBe false
+
+    val failed = init(Seq("sh", "-c", "head -c 1000000 /dev/zero; exit 1")).asStdOutCollected(0, 64 * 1024, 5, TimeUnit.SECONDS).test()
+    failed.await(5, TimeUnit.SECONDS)
+    failed.assertError(classOf[ProcessException])
+  }
+
+  "Process with coalescing" should "merge tiny writes and split large ones" in {
+
+    val merged = init(Seq("python3", "-c", "import sys\nfor i in range(200):\n    sys.stdout.write('x')\n    sys.stdout.flush()"))
+      .withCoalescing(ChunkCoalescing.of(1024, 1, TimeUnit.SECONDS))
+      .asStdErrOut()
+      .toList.blockingGet().asScala
+    merged.map(_.data.length).sum shouldBe 200
+    merged.size shouldBe 1
+
+    val split = init(Seq("head", "-c", "100000", "/dev/zero"))
+      .withCoalescing(ChunkCoalescing.split(1000))
+      .asStdOutFlowable()
+      .toList.blockingGet().asScala
+    split.map(_.length).sum shouldBe 100000
+    split.foreach(_.length should be <= 1000)
+
+    val process = init(Seq("python3", "-c", "import sys\nfor i in range(200):\n    sys.stdout.write('x')\n    sys.stdout.flush()")).withCoalescing(ChunkCoalescing.of(1024, 1, TimeUnit.SECONDS))
+      .biDirectional()
+    val stdout = process.stdOut().test()
+    process.waitDone().subscribeOn(Schedulers.io).blockingGet().err.isPresent shouldBe false
+    stdout.awaitTerminalEvent(5, TimeUnit.SECONDS)
+    stdout.assertValueCount(1)
+  }
+
+  "Process with stats" should "report cpu, memory and io" in {
+
+    val records = new util.concurrent.LinkedBlockingQueue[ExecutionRecord]
+    val metrics = new RxProcessMetrics {
+      override def onFinish(record: ExecutionRecord): Unit = records.add(record)
+    }
+    val exit = init(Seq("sh", "-c", "printf '%100000s' x >&2; i=0; while [ $i -lt 200000 ]; do i=$((i+1)); done"))
+      .withProcessStats(true)
+      .withMetrics(metrics)
+      .asWaitDone(5, TimeUnit.SECONDS)
+      .blockingGet()
+
+    exit shouldBe new Exit(0)
+    val stats = exit.stats.get()
+    stats.pid should be > 0L
+    stats.cpuNanos should be >= TimeUnit.MILLISECONDS.toNanos(200)
+    stats.userCpuNanos + stats.systemCpuNanos shouldBe stats.cpuNanos
+    stats.wallNanos should be >= stats.cpuNanos
+    stats.maxRssBytes should be > 0L
+    stats.writtenBytes should be >= 100000L
+    stats.stderrBytes shouldBe 100000
+    records.poll(5, TimeUnit.SECONDS).stats shouldBe stats
+  }
+
+  "Process with stats" should "report them for timed out process" in {
+
+    val exit = init(Seq("sleep", "10"))
+      .withProcessStats(true)
+      .asWaitDone(300, TimeUnit.MILLISECONDS)
+      .blockingGet()
+
+    exit.err.get() shouldBe a[ProcessTimeoutException]
+    exit.stats.get().wallNanos should be >= TimeUnit.MILLISECONDS.toNanos(200)
+    exit.stats.get().maxRssBytes should be > 0L
+  }
+
+  "Process without stats" should "not collect them" in {
+
+    val records = new util.concurrent.LinkedBlockingQueue[ExecutionRecord]
+    val metrics = new RxProcessMetrics {
+      override def onFinish(record: ExecutionRecord): Unit = records.add(record)
+    }
+    val exit = init(Seq("echo", "hello")).withMetrics(metrics).asWaitDone().blockingGet()
+    exit.stats.isPresent shouldBe false
+    records.poll(5, TimeUnit.SECONDS).stats shouldBe null
+
+    val pipeline = RxProcess.pipe(new ProcessBuilder("echo", "hello"), new ProcessBuilder("cat"))
+      .withProcessStats(true).asWaitDone().blockingGet()
+    pipeline shouldBe new Exit(0)
+    pipeline.stats.isPresent shouldBe false
+  }
+}
@@ -1,8 +1,11 @@
 package com.github.zella.rxprocess2
 
 import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteBuffer
 import java.nio.charset.Charset
 import java.nio.file.Files
+import java.security.MessageDigest
 import java.time.Instant
 import java.util
 import java.util.Collections
@@ -10,9 +13,12 @@ import java.util.concurrent.{Executors, TimeUnit}
 
 import com.github.davidmoten.rx2.Strings
 import com.github.zella.rxprocess2.errors.{ProcessException, ProcessTimeoutException}
+import com.github.zella.rxprocess2.metrics.{InMemoryRxProcessMetrics, RxProcessMetrics}
 import com.zaxxer.nuprocess.{NuProcess, NuProcessBuilder}
 import io.reactivex._
+import io.reactivex.exceptions.MissingBackpressureException
 import io.reactivex.observers.TestObserver
+import io.reactivex.subscribers.TestSubscriber
 import io.reactivex.schedulers.Schedulers
 import org.scalatest._
 
@@ -25,6 +31,11 @@ class RxNuProcessBuilderSpec extends FlatSpec with Matchers {
     RxProcess.reactive(pb)
   }
 
+  private def initNonBlocking(cmd: Seq[String]): IReactiveProcessBuilder[NuProcess] = {
+    val pb = new NuProcessBuilder(cmd: _*)
+    RxProcess.reactiveNonBlocking(pb)
+  }
+
   "NuProcess asWaitDone" should "be completed" in {
 
     val observer = new TestObserver[Exit]
@@ -311,4 +322,407 @@ class RxNuProcessBuilderSpec extends FlatSpec with Matchers {
     observer.assertResult("hello worlds")
   }
 
-}
\ No newline at end of file
+  "NuProcess asStdOutFlowable" should "buffer output of slow subscriber without holding NuProcess thread" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      val subscriber = new TestSubscriber[Array[Byte]](1)
+      builder(Seq("head", "-c", "1000000", "/dev/zero")).asStdOutFlowable().subscribe(subscriber)
+
+      Thread.sleep(300)
+      subscriber.assertValueCount(1)
+      //NuProcess thread is shared, other processes go on
+      builder(Seq("echo", "hello")).asStdOutSingle().blockingGet() shouldBe "hello\n".getBytes
+
+      subscriber.requestMore(Long.MaxValue)
+      subscriber.await(5, TimeUnit.SECONDS)
+      subscriber.assertComplete()
+      subscriber.values().asScala.map(_.length.toLong).sum shouldBe 1000000L
+    }
+  }
+
+  "NuProcess biDirectional stdOutFlowable" should "buffer output of slow subscriber without holding NuProcess thread" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      val bi = builder(Seq("head", "-c", "1000000", "/dev/zero")).biDirectional()
+      val subscriber = new TestSubscriber[Array[Byte]](1)
+      bi.stdOutFlowable().subscribe(subscriber)
+
+      bi.waitDone().timeout(5, TimeUnit.SECONDS).blockingGet() shouldBe new Exit(0)
+      subscriber.assertValueCount(1)
+
+      subscriber.requestMore(Long.MaxValue)
+      subscriber.await(5, TimeUnit.SECONDS)
+      subscriber.assertComplete()
+      subscriber.values().asScala.map(_.length.toLong).sum shouldBe 1000000L
+    }
+  }
+
+  "NuProcess asStdOutFlowable" should "fail subscriber behind buffer with MissingBackpressureException and kill process" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      val marker = File.createTempFile("rxprocess2", ".done")
+      marker.delete()
+
+      val subscriber = new TestSubscriber[Array[Byte]](1)
+      builder(Seq("bash", "-c", s"head -c 500000000 /dev/zero && touch $marker")).asStdOutFlowable().subscribe(subscriber)
+
+      subscriber.await(10, TimeUnit.SECONDS)
+      subscriber.assertError(classOf[MissingBackpressureException])
+      Thread.sleep(500)
+      marker.exists() shouldBe false
+    }
+  }
+
+  "NuProcess asStdErrOutFlowable with wrong process" should "be failed with exception and captured stderr" in {
+
+    val subscriber = new TestSubscriber[ProcessChunk]
+
+    val src: Flowable[ProcessChunk] =
+      init(Seq("bash", "-c", "printf foo && printf bar >>/dev/stderr && sleep 0.1 && exit 1")).asStdErrOutFlowable()
+
+    src.subscribe(subscriber)
+
+    subscriber.await(5, TimeUnit.SECONDS)
+    subscriber.assertError(classOf[ProcessException])
+    subscriber.errors().get(0).getMessage shouldBe "bar"
+  }
+
+  "NuProcess asStdOutFlowable" should "complete without waiting graceful stop of exited process" in {
+
+    for (_ <- 1 to 3) {
+      val start = System.currentTimeMillis()
+      val out = init(Seq("printf", "hello")).asStdOutFlowable().toList.blockingGet()
+      new String(out.asScala.flatten.toArray) shouldBe "hello"
+      (System.currentTimeMillis() - start) should be < 700L
+    }
+  }
+
+  "NuProcess non blocking asStdErrOutFlowable with wrong process" should "be failed with exception and captured stderr" in {
+
+    val subscriber = new TestSubscriber[ProcessChunk]
+
+    val src: Flowable[ProcessChunk] =
+      initNonBlocking(Seq("bash", "-c", "printf foo && printf bar >>/dev/stderr && sleep 0.1 && exit 1")).asStdErrOutFlowable()
+
+    src.subscribe(subscriber)
+
+    subscriber.await(5, TimeUnit.SECONDS)
+    subscriber.assertError(classOf[ProcessException])
+    subscriber.errors().get(0).getMessage shouldBe "bar"
+  }
+
+  "NuProcess asStdErrOutBuffers" should "pass output without copying" in {
+
+    val testFile = new File(getClass.getClassLoader.getResource("long513339b.txt").getFile)
+
+    val digest = MessageDigest.getInstance("SHA-256")
+
+    val src: Observable[ProcessBufferChunk] = init(Seq("cat", testFile.getAbsolutePath)).asStdErrOutBuffers()
+
+    val observer = new TestObserver[ProcessBufferChunk]
+
+    src.doOnNext(c => digest.update(c.data)).subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.assertComplete()
+    digest.digest() shouldBe MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(testFile.toPath))
+  }
+
+  "NuProcess asStdoutBuffered with file stdin" should "stream stdin concurrently with stdout" in {
+
+    val testFile = new File(getClass.getClassLoader.getResource("long513339b.txt").getFile)
+
+    val observer = new TestObserver[Array[Byte]]
+
+    init(Seq("cat")).withStdin(testFile.toPath).asStdOutSingle()
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.assertComplete()
+    observer.values().get(0) shouldBe Files.readAllBytes(testFile.toPath)
+  }
+
+  "NuProcess asStdout with stream stdin" should "be completed with stdout chunks" in {
+
+    val observer = new TestObserver[String]
+
+    val stdin = Flowable.just("hello ", "worlds").map[ByteBuffer](s => ByteBuffer.wrap(s.getBytes))
+
+    init(Seq("cat")).withStdin(stdin).asStdOutSingle().map[String](b => new String(b))
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.assertResult("hello worlds")
+  }
+
+  "NuProcess non blocking asStdoutBuffered with file stdin" should "stream stdin concurrently with stdout" in {
+
+    val testFile = new File(getClass.getClassLoader.getResource("long513339b.txt").getFile)
+
+    val observer = new TestObserver[Array[Byte]]
+
+    initNonBlocking(Seq("cat")).withStdin(testFile.toPath).asStdOutSingle()
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.assertComplete()
+    observer.values().get(0) shouldBe Files.readAllBytes(testFile.toPath)
+  }
+
+  "NuProcess non blocking asStdout with stream stdin" should "be completed with stdout chunks" in {
+
+    val observer = new TestObserver[String]
+
+    val stdin = Flowable.just("hello ", "worlds").map[ByteBuffer](s => ByteBuffer.wrap(s.getBytes))
+
+    initNonBlocking(Seq("cat")).withStdin(stdin).asStdOutSingle().map[String](b => new String(b))
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.assertResult("hello worlds")
+  }
+
+  "NuProcess asStdOutToFile" should "write stdout to file" in {
+
+    val testFile = new File(getClass.getClassLoader.getResource("long513339b.txt").getFile)
+    val out = Files.createTempFile("rxprocess2", ".out")
+
+    val observer = new TestObserver[Exit]
+
+    init(Seq("cat", testFile.getAbsolutePath)).asStdOutToFile(out)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertResult(new Exit(0))
+    Files.readAllBytes(out) shouldBe Files.readAllBytes(testFile.toPath)
+    Files.delete(out)
+  }
+
+  "NuProcess asStdErrToFile with wrong process" should "write stderr to file and capture stderr tail" in {
+
+    val err = Files.createTempFile("rxprocess2", ".err")
+
+    val observer = new TestObserver[Exit]
+
+    init(Seq("python3", "-c", "import sys; print('out'); print('foo', end='', file=sys.stderr, flush=True); sys.exit(1)"))
+      .asStdErrToFile(err)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.values().get(0).statusCode shouldBe 1
+    observer.values().get(0).err.get().getMessage shouldBe "foo"
+    new String(Files.readAllBytes(err)) shouldBe "foo"
+    Files.delete(err)
+  }
+
+  "NuProcess non blocking asStdOutToFile" should "write stdout to file" in {
+
+    val testFile = new File(getClass.getClassLoader.getResource("long513339b.txt").getFile)
+    val out = Files.createTempFile("rxprocess2", ".out")
+
+    val observer = new TestObserver[Exit]
+
+    initNonBlocking(Seq("cat", testFile.getAbsolutePath)).asStdOutToFile(out)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertResult(new Exit(0))
+    Files.readAllBytes(out) shouldBe Files.readAllBytes(testFile.toPath)
+    Files.delete(out)
+  }
+
+  "NuProcess non blocking asStdErrToFile with wrong process" should "write stderr to file and capture stderr tail" in {
+
+    val err = Files.createTempFile("rxprocess2", ".err")
+
+    val observer = new TestObserver[Exit]
+
+    initNonBlocking(Seq("python3", "-c", "import sys; print('out'); print('foo', end='', file=sys.stderr, flush=True); sys.exit(1)"))
+      .asStdErrToFile(err)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertNoErrors()
+    observer.values().get(0).statusCode shouldBe 1
+    observer.values().get(0).err.get().getMessage shouldBe "foo"
+    new String(Files.readAllBytes(err)) shouldBe "foo"
+    Files.delete(err)
+  }
+
+  "NuProcess asStdOutLines" should "emit decoded lines" in {
+
+    val observer = new TestObserver[String]
+
+    init(Seq("python3", "-c", "import sys; sys.stdout.buffer.write('привет\\nмир\\n€'.encode('utf-8'))"))
+      .asStdOutLines(java.nio.charset.StandardCharsets.UTF_8)
+      .subscribeOn(Schedulers.io).subscribe(observer)
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertResult("привет", "мир", "€")
+  }
+
+  "NuProcess with metrics" should "report execution" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      val metrics = new InMemoryRxProcessMetrics
+      val observer = new TestObserver[ProcessChunk]
+
+      builder(Seq("python3", "-c", "import sys; print('out', flush=True); print('err', file=sys.stderr); sys.exit(3)"))
+        .withMetrics(metrics)
+        .asStdErrOut()
+        .subscribeOn(Schedulers.io).subscribe(observer)
+
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertError(classOf[ProcessException])
+      metrics.started() shouldBe 1
+      metrics.exited() shouldBe 1
+      metrics.nonZeroExits() shouldBe 1
+      metrics.stdoutBytes() shouldBe 4
+      metrics.stderrBytes() shouldBe 4
+      metrics.firstStdout().count() shouldBe 1
+    }
+  }
+
+  "Timed out NuProcess with metrics" should "report timeout and kill" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      val metrics = new InMemoryRxProcessMetrics
+
+      val exit = builder(Seq("sleep", "10"))
+        .withMetrics(metrics)
+        .asWaitDone(300, TimeUnit.MILLISECONDS)
+        .subscribeOn(Schedulers.io)
+        .blockingGet()
+
+      exit.err.get() shouldBe a[ProcessTimeoutException]
+      metrics.timedOut() shouldBe 1
+      metrics.cancelled() shouldBe 0
+      metrics.gracefulKills() shouldBe 1
+
+      val observer = builder(Seq("sleep", "10"))
+        .withMetrics(metrics)
+        .asStdOut(300, TimeUnit.MILLISECONDS)
+        .subscribeOn(Schedulers.io)
+        .test()
+
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertError(classOf[ProcessTimeoutException])
+      metrics.timedOut() shouldBe 2
+      metrics.gracefulKills() shouldBe 2
+      metrics.forcedKills() shouldBe 0
+    }
+  }
+
+  "NuProcess flowable with metrics" should "report cancellation" in {
+
+    val metrics = new InMemoryRxProcessMetrics
+
+    val subscriber = init(Seq("sleep", "10")).withMetrics(metrics).asStdOutFlowable().subscribeOn(Schedulers.io).test()
+    Thread.sleep(300)
+    subscriber.dispose()
+
+    metrics.started() shouldBe 1
+    metrics.cancelled() shouldBe 1
+    metrics.gracefulKills() shouldBe 1
+  }
+
+  "One NuProcess builder" should "isolate output of concurrent executions" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      //every line of execution output is its pid
+      val shared = builder(Seq("sh", "-c", "echo $$; echo $$; echo $$"))
+
+      val outputs = Flowable.range(0, 1000)
+        .flatMapSingle[String](new functions.Function[Integer, Single[String]] {
+          override def apply(i: Integer): Single[String] = shared.asStdOutSingle().map[String](b => new String(b)).subscribeOn(Schedulers.io)
+        }, false, 128)
+        .toList
+        .blockingGet()
+        .asScala
+
+      outputs.size shouldBe 1000
+      outputs.foreach { out =>
+        val lines = out.split("\n").toSeq
+        lines.size shouldBe 3
+        lines.distinct.size shouldBe 1
+      }
+    }
+  }
+
+  "NuProcess builder" should "not be modified by executions and keep its cwd" in {
+
+    for (reactive <- Seq((pb: NuProcessBuilder) => RxProcess.reactive(pb), (pb: NuProcessBuilder) => RxProcess.reactiveNonBlocking(pb))) {
+      val pb = new NuProcessBuilder("pwd")
+      pb.setCwd(new File("/").toPath)
+
+      new String(reactive(pb).asStdOutSingle().subscribeOn(Schedulers.io).blockingGet()).trim shouldBe "/"
+      //listener is set only on per execution copy
+      an[IllegalArgumentException] should be thrownBy pb.start()
+    }
+  }
+
+  "Timed out NuProcess ignoring SIGTERM" should "be killed forcibly" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      val metrics = new InMemoryRxProcessMetrics
+
+      val observer = builder(Seq("python3", "-c", "import signal, time; signal.signal(signal.SIGTERM, signal.SIG_IGN); print('ready', flush=True); time.sleep(10)"))
+        .withMetrics(metrics)
+        .asStdOut(500, TimeUnit.MILLISECONDS)
+        .subscribeOn(Schedulers.io)
+        .test()
+
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertError(classOf[ProcessTimeoutException])
+      metrics.timedOut() shouldBe 1
+      metrics.forcedKills() shouldBe 1
+    }
+  }
+
+  "Process with coalescing" should "merge tiny writes and split large ones" in {
+    for (builder <- Seq(init _, initNonBlocking _)) {
+
+      val merged = builder(Seq("python3", "-c", "import sys\nfor i in range(200):\n    sys.stdout.write('x')\n    sys.stdout.flush()"))
+        .withCoalescing(ChunkCoalescing.of(1024, 1, TimeUnit.SECONDS))
+        .asStdErrOut()
+        .toList.blockingGet().asScala
+      merged.map(_.data.length).sum shouldBe 200
+      merged.size shouldBe 1
+
+      val split = builder(Seq("head", "-c", "100000", "/dev/zero"))
+        .withCoalescing(ChunkCoalescing.split(1000))
+        .asStdErrOutBuffers()
+        .toList.blockingGet().asScala
+      split.map(_.data.remaining()).sum shouldBe 100000
+      split.foreach(_.data.remaining() should be <= 1000)
+
+      val flowable = builder(Seq("python3", "-c", "import sys\nfor i in range(200):\n    sys.stdout.write('x')\n    sys.stdout.flush()"))
+        .withCoalescing(ChunkCoalescing.of(1024, 1, TimeUnit.SECONDS))
+        .asStdOutFlowable()
+        .toList.blockingGet().asScala
+      flowable.map(_.length).sum shouldBe 200
+      flowable.size shouldBe 1
+    }
+  }
+
+  "Process with stats" should "report cpu and memory" in {
+
+    for (builder <- Seq(init _, initNonBlocking _)) {
+      val exit = builder(Seq("sh", "-c", "i=0; while [ $i -lt 200000 ]; do i=$((i+1)); done"))
+        .withProcessStats(true)
+        .asWaitDone(5, TimeUnit.SECONDS)
+        .blockingGet()
+
+      exit shouldBe new Exit(0)
+      exit.stats.get().cpuNanos should be >= TimeUnit.MILLISECONDS.toNanos(200)
+      exit.stats.get().maxRssBytes should be > 0L
+    }
+  }
+}
+
@@ -0,0 +1,87 @@
+package com.github.zella.rxprocess2
+
+import java.util.concurrent.{RejectedExecutionException, TimeUnit}
+import java.util.concurrent.atomic.AtomicInteger
+
+import io.reactivex._
+import io.reactivex.schedulers.Schedulers
+import org.scalatest._
+
+class RxProcessExecutorSpec extends FlatSpec with Matchers {
+
+  private def sleep(seconds: Double): IReactiveProcessBuilder[Process] =
+    RxProcess.reactive(new ProcessBuilder("sleep", seconds.toString))
+
+  "RxProcessExecutor" should "limit number of running processes" in {
+    val executor = new RxProcessExecutor(2, 100)
+    val maxRunning = new AtomicInteger()
+    val sampler = Observable.interval(10, TimeUnit.MILLISECONDS)
+      .subscribe(_ => maxRunning.accumulateAndGet(executor.running(), Math.max(_, _)))
+
+    val exits = Flowable.range(0, 6)
+      .flatMapSingle[Exit](new functions.Function[Integer, Single[Exit]] {
+        override def apply(i: Integer): Single[Exit] = executor.wrap(sleep(0.3)).asWaitDone().subscribeOn(Schedulers.io())
+      })
+      .toList
+      .blockingGet()
+
+    sampler.dispose()
+    exits.size() shouldBe 6
+    maxRunning.get() shouldBe 2
+    executor.admitted() shouldBe 6
+    executor.running() shouldBe 0
+    executor.queued() shouldBe 0
+  }
+
+  "RxProcessExecutor" should "free slot before result is delivered" in {
+    val executor = new RxProcessExecutor(1, 100)
+    val process = executor.wrap(sleep(0))
+
+    process.asWaitDone().map[Int](_ => executor.running()).blockingGet() shouldBe 0
+    process.asStdOut().toList.map[Int](_ => executor.running()).blockingGet() shouldBe 0
+    process.asStdOutFlowable().toList.map[Int](_ => executor.running()).blockingGet() shouldBe 0
+    executor.admitted() shouldBe 3
+  }
+
+  "RxProcessExecutor" should "reject execution when queue is full" in {
+    val executor = new RxProcessExecutor(1, 1)
+    val first = executor.wrap(sleep(1)).asWaitDone().subscribeOn(Schedulers.io()).test()
+    Thread.sleep(100)
+    val second = executor.wrap(sleep(0)).asWaitDone().test()
+    val third = executor.wrap(sleep(0)).asWaitDone().test()
+
+    third.assertError(classOf[RejectedExecutionException])
+    executor.rejected() shouldBe 1
+    executor.queued() shouldBe 1
+
+    first.await(5, TimeUnit.SECONDS)
+    second.await(5, TimeUnit.SECONDS)
+    second.assertResult(new Exit(0))
+  }
+
+  "RxProcessExecutor" should "reject execution after queue timeout" in {
+    val executor = new RxProcessExecutor(1, 10, 200, TimeUnit.MILLISECONDS)
+    val first = executor.wrap(sleep(1)).asStdOutFlowable().subscribeOn(Schedulers.io()).test()
+    Thread.sleep(100)
+    val second = executor.wrap(sleep(0)).asStdOutFlowable().test()
+
+    second.await(5, TimeUnit.SECONDS)
+    second.assertError(classOf[RejectedExecutionException])
+    executor.timedOut() shouldBe 1
+    first.await(5, TimeUnit.SECONDS)
+    first.assertComplete()
+  }
+
+  "RxProcessExecutor" should "remove cancelled execution from queue" in {
+    val executor = new RxProcessExecutor(1, 10)
+    val first = executor.wrap(sleep(10)).asStdOut().subscribeOn(Schedulers.io()).test()
+    Thread.sleep(100)
+    val second = executor.wrap(sleep(0)).asStdOut().test()
+    executor.queued() shouldBe 1
+    second.dispose()
+    executor.queued() shouldBe 0
+    first.dispose()
+    Thread.sleep(100)
+    executor.running() shouldBe 0
+  }
+}
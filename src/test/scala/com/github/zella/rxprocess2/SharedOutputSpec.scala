@@ -0,0 +1,98 @@
+package com.github.zella.rxprocess2
+
+import java.nio.file.Files
+import java.util.concurrent.{CancellationException, TimeUnit}
+
+import com.github.zella.rxprocess2.SharedOutput.LagPolicy
+import io.reactivex.Flowable
+import io.reactivex.exceptions.MissingBackpressureException
+import io.reactivex.schedulers.Schedulers
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class SharedOutputSpec extends FlatSpec with Matchers {
+
+  private def numbers(count: Int): Flowable[ProcessChunk] =
+    Flowable.range(0, count).map[ProcessChunk](i => new ProcessChunk(i.toString.getBytes, false))
+
+  private def values(chunks: java.util.List[ProcessChunk]): Seq[String] = chunks.asScala.map(c => new String(c.data))
+
+  "Shared output" should "run process once for all subscribers" in {
+    val counter = Files.createTempFile("rxprocess2", ".count")
+    val shared = SharedOutput.builder().autoConnect(3).build(
+      RxProcess.reactive(new ProcessBuilder("sh", "-c", s"echo run >> $counter; seq 1 20000")).asStdErrOutFlowable())
+
+    val subscribers = (0 until 3).map(_ => shared.stdOut(LagPolicy.BLOCK)
+      .observeOn(Schedulers.computation())
+      .map[String](b => new String(b)).reduce("", (a: String, b: String) => a + b).test())
+    subscribers.foreach(_.await(10, TimeUnit.SECONDS))
+
+    val expected = (1 to 20000).mkString("", "\n", "\n")
+    subscribers.foreach(_.values().get(0) shouldBe expected)
+    Files.readAllLines(counter).size() shouldBe 1
+    Files.delete(counter)
+  }
+
+  "Late subscriber" should "get bounded replay window" in {
+    val byChunks = SharedOutput.builder().replayChunks(3).build(numbers(10))
+    byChunks.connect()
+    val late = byChunks.chunks(LagPolicy.BLOCK).test()
+    late.assertComplete()
+    values(late.values()) shouldBe Seq("7", "8", "9")
+
+    val byBytes = SharedOutput.builder().replayBytes(6).build(numbers(20))
+    byBytes.connect()
+    values(byBytes.chunks(LagPolicy.BLOCK).test().values()) shouldBe Seq("17", "18", "19")
+
+    val none = SharedOutput.builder().replayChunks(0).build(numbers(10))
+    none.connect()
+    none.chunks(LagPolicy.BLOCK).test().assertNoValues().assertComplete()
+  }
+
+  "Blocking subscriber" should "throttle source and other subscribers" in {
+    val shared = SharedOutput.builder().bufferChunks(4).replayChunks(0).autoConnect(2).build(numbers(100))
+    val slow = shared.chunks(LagPolicy.BLOCK).test(0)
+    val fast = shared.chunks(LagPolicy.DROP).test()
+
+    fast.values().size() shouldBe 4
+    slow.request(2)
+    fast.values().size() shouldBe 6
+    values(slow.values()) shouldBe Seq("0", "1")
+
+    slow.request(Long.MaxValue)
+    slow.assertComplete().values().size() shouldBe 100
+    fast.assertComplete().values().size() shouldBe 100
+    shared.dropped() shouldBe 0
+  }
+
+  "Dropping and failing subscribers" should "not throttle source" in {
+    val shared = SharedOutput.builder().bufferChunks(4).replayChunks(0).autoConnect(0).build(numbers(100))
+    val dropping = shared.chunks(LagPolicy.DROP).test(0)
+    val failing = shared.chunks(LagPolicy.ERROR).test(0)
+    val fast = shared.chunks(LagPolicy.ERROR).test()
+    fast.assertNoValues()
+    shared.connect()
+
+    fast.assertComplete().values().size() shouldBe 100
+    failing.assertError(classOf[MissingBackpressureException]).assertNoValues()
+    dropping.assertNotTerminated()
+    dropping.request(Long.MaxValue)
+    values(dropping.assertComplete().values()) shouldBe Seq("0", "1", "2", "3")
+    shared.dropped() shouldBe 96
+  }
+
+  "Disposed shared output" should "kill process and fail subscribers" in {
+    val shared = SharedOutput.builder().build(
+      RxProcess.reactive(new ProcessBuilder("sh", "-c", "echo started; sleep 10")).asStdErrOutFlowable())
+    val subscriber = shared.stdOut(LagPolicy.BLOCK).test()
+    subscriber.awaitCount(1)
+    shared.subscribers() shouldBe 1
+
+    shared.dispose()
+    subscriber.await(5, TimeUnit.SECONDS)
+    subscriber.assertError(classOf[CancellationException])
+    shared.stdOut(LagPolicy.BLOCK).test().assertError(classOf[CancellationException])
+    shared.subscribers() shouldBe 0
+  }
+}
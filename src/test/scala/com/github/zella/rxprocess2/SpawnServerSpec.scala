@@ -0,0 +1,121 @@
+package com.github.zella.rxprocess2
+
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+import com.github.zella.rxprocess2.errors.{ProcessException, ProcessTimeoutException}
+import com.github.zella.rxprocess2.spawn.SpawnServer
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.{Flowable, Single, functions}
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class SpawnServerSpec extends FlatSpec with Matchers {
+
+  private lazy val server = SpawnServer.start()
+
+  private def init(cmd: Seq[String]): IReactiveProcessBuilder[Process] =
+    RxProcess.reactive(new ProcessBuilder(cmd: _*), server)
+
+  "Spawn server process" should "relay stdout, stderr and exit code" in {
+
+    new String(init(Seq("echo", "hello")).asStdOutSingle().blockingGet()) shouldBe "hello\n"
+
+    val observer = init(Seq("sh", "-c", "echo out; echo err >&2; exit 3")).asStdErrOut().test()
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertError(classOf[ProcessException])
+    observer.errors().get(0).asInstanceOf[ProcessException].exitCode shouldBe 3
+    observer.errors().get(0).getMessage shouldBe "err\n"
+    observer.values().asScala.map(c => (c.isStdErr, new String(c.data))).toSet shouldBe Set((false, "out\n"), (true, "err\n"))
+  }
+
+  "Spawn server process" should "stream large stdin and stdout with flow control" in {
+
+    val data = new Array[Byte](16 * 1024 * 1024)
+    new Random(42).nextBytes(data)
+    val digest = MessageDigest.getInstance("MD5")
+
+    init(Seq("cat"))
+      .withStdin(Flowable.range(0, 256).map[ByteBuffer](i => ByteBuffer.wrap(data, i * 65536, 65536)))
+      .asStdOutFlowable()
+      //slow consumer, stdout must not be buffered unbounded
+      .observeOn(Schedulers.single(), false, 1)
+      .blockingForEach(bytes => digest.update(bytes))
+
+    digest.digest() shouldBe MessageDigest.getInstance("MD5").digest(data)
+  }
+
+  "Spawn server process" should "use environment, directory and redirects" in {
+
+    val dir = Files.createTempDirectory("rxprocess2")
+    val out = dir.resolve("out.txt")
+    val pb = new ProcessBuilder("sh", "-c", "echo $RX_VALUE; pwd").directory(dir.toFile)
+    pb.environment().put("RX_VALUE", "value")
+
+    RxProcess.reactive(pb, server).asStdOutToFile(out).blockingGet() shouldBe new Exit(0)
+
+    new String(Files.readAllBytes(out)) shouldBe "value\n" + dir.toFile.getCanonicalPath + "\n"
+    Files.delete(out)
+    Files.delete(dir)
+  }
+
+  "Spawn server process" should "be killed on timeout and fail to start unknown program" in {
+
+    val exit = init(Seq("sleep", "10")).asWaitDone(300, TimeUnit.MILLISECONDS).blockingGet()
+    exit.err.get() shouldBe a[ProcessTimeoutException]
+
+    val failed = init(Seq("not-existing-program-rx")).asWaitDone().test()
+    failed.await(5, TimeUnit.SECONDS)
+    failed.assertError(classOf[IOException])
+
+    Thread.sleep(200)
+    server.running() shouldBe 0
+  }
+
+  "Spawn server" should "run concurrent processes" in {
+
+    val outputs = Flowable.range(0, 300)
+      .flatMapSingle[String](new functions.Function[Integer, Single[String]] {
+        override def apply(i: Integer): Single[String] = init(Seq("echo", i.toString)).asStdOutSingle()
+          .map[String](b => new String(b).trim).subscribeOn(Schedulers.io)
+      }, false, 32)
+      .toList.blockingGet().asScala
+
+    outputs.map(_.toInt).sorted shouldBe (0 until 300)
+  }
+
+  "Virtual threads process" should "be spawned by server or be unsupported on old JDK" in {
+
+    if (common.VirtualThreads.isSupported) {
+      val observer = RxProcess.reactiveVirtual(new ProcessBuilder("sh", "-c", "sleep 0.5; echo hello"), server)
+        .asStdOutSingle()
+        .map[String](b => new String(b).trim)
+        .test()
+      Thread.sleep(200)
+      server.running() shouldBe 1
+      observer.await(5, TimeUnit.SECONDS)
+      observer.assertResult("hello")
+    } else {
+      an[UnsupportedOperationException] should be thrownBy RxProcess.reactiveVirtual(new ProcessBuilder("echo"), server)
+    }
+  }
+
+  "Closed spawn server" should "fail running and new processes" in {
+
+    val closing = SpawnServer.start()
+    val observer = RxProcess.reactive(new ProcessBuilder("sleep", "10"), closing).asStdOut()
+      .subscribeOn(Schedulers.io()).test()
+    Thread.sleep(1000)
+    closing.close()
+
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertError(classOf[ProcessException])
+    closing.isAlive shouldBe false
+    an[IOException] should be thrownBy closing.spawn(new ProcessBuilder("echo"))
+  }
+}
@@ -0,0 +1,48 @@
+package com.github.zella.rxprocess2.common
+
+import java.io.ByteArrayInputStream
+
+import org.scalatest._
+
+class BufferPoolSpec extends FlatSpec with Matchers {
+
+  "BufferPool" should "reuse released buffer" in {
+    val pool = new BufferPool(16, 4, 1)
+    val first = pool.acquire()
+    val array = first.array()
+    first.release()
+    first.release()
+    pool.acquire().array() should be theSameInstanceAs array
+    pool.acquire().array() should not be theSameInstanceAs(array)
+  }
+
+  "Released PooledBytes" should "not be accessible" in {
+    val bytes = new BufferPool(16, 4, 1).acquire()
+    bytes.release()
+    an[IllegalStateException] should be thrownBy bytes.array()
+  }
+
+  "RxUtils pooledBytes" should "read stream into pooled buffers" in {
+    val pool = new BufferPool(4, 4, 1)
+    val read = RxUtils.pooledBytes(new ByteArrayInputStream("hello world".getBytes), pool)
+      .map[String](b => try new String(b.toByteArray) finally b.release())
+      .toList
+      .blockingGet()
+    String.join("", read) shouldBe "hello world"
+  }
+
+  "PooledBytes takeByteArray" should "hand off full buffer and copy partial one" in {
+    val pool = new BufferPool(4, 4, 1)
+    val full = pool.acquire()
+    val array = full.array()
+    full.length(4)
+    full.takeByteArray() should be theSameInstanceAs array
+    pool.acquire().array() should not be theSameInstanceAs(array)
+
+    val partial = pool.acquire()
+    val reused = partial.array()
+    partial.length(2)
+    partial.takeByteArray().length shouldBe 2
+    pool.acquire().array() should be theSameInstanceAs reused
+  }
+}
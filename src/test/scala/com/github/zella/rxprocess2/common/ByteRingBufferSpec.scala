@@ -0,0 +1,34 @@
+package com.github.zella.rxprocess2.common
+
+import org.scalatest._
+
+class ByteRingBufferSpec extends FlatSpec with Matchers {
+
+  "ByteRingBuffer" should "hold all bytes until capacity reached" in {
+    val buffer = new ByteRingBuffer(8)
+    buffer.write("foo".getBytes)
+    buffer.write("bar".getBytes)
+    new String(buffer.toByteArray) shouldBe "foobar"
+    buffer.size() shouldBe 6
+  }
+
+  "ByteRingBuffer" should "keep last bytes on wrap around" in {
+    val buffer = new ByteRingBuffer(8)
+    buffer.write("hello".getBytes)
+    buffer.write("world".getBytes)
+    new String(buffer.toByteArray) shouldBe "lloworld"
+    buffer.write("!!".getBytes)
+    new String(buffer.toByteArray) shouldBe "oworld!!"
+  }
+
+  "ByteRingBuffer" should "keep tail of write larger than capacity" in {
+    val buffer = new ByteRingBuffer(4)
+    buffer.write("ab".getBytes)
+    buffer.write("0123456789".getBytes, 1, 8)
+    new String(buffer.toByteArray) shouldBe "5678"
+  }
+
+  "Empty ByteRingBuffer" should "return empty array" in {
+    new ByteRingBuffer(4).toByteArray shouldBe empty
+  }
+}
@@ -0,0 +1,66 @@
+package com.github.zella.rxprocess2.common
+
+import java.nio.file.Files
+
+import org.scalatest._
+
+class ChunkAccumulatorSpec extends FlatSpec with Matchers {
+
+  "ChunkAccumulator" should "return presized array without copy when hint is exact" in {
+    val accumulator = new ChunkAccumulator(6, -1, null)
+    accumulator.add("foo".getBytes)
+    accumulator.add("bar".getBytes)
+    val first = accumulator.toByteArray
+    new String(first) shouldBe "foobar"
+    accumulator.toByteArray should be theSameInstanceAs first
+  }
+
+  "ChunkAccumulator" should "collect chunks when hint is wrong or unknown" in {
+    val single = "foo".getBytes
+    val unknown = new ChunkAccumulator(0, -1, null)
+    unknown.add(single)
+    unknown.toByteArray should be theSameInstanceAs single
+    unknown.add("bar".getBytes)
+    new String(unknown.toByteArray) shouldBe "foobar"
+
+    val small = new ChunkAccumulator(4, -1, null)
+    Seq("foo", "bar", "baz").foreach(s => small.add(s.getBytes))
+    new String(small.toByteArray) shouldBe "foobarbaz"
+
+    val large = new ChunkAccumulator(100, -1, null)
+    large.add("foo".getBytes)
+    new String(large.toByteArray) shouldBe "foo"
+  }
+
+  "ChunkAccumulator" should "spill to file past threshold" in {
+    val dir = Files.createTempDirectory("rxprocess2")
+    val accumulator = new ChunkAccumulator(4, 5, dir)
+    accumulator.add("foo".getBytes)
+    accumulator.isSpilled shouldBe false
+    accumulator.add("bar".getBytes)
+    accumulator.add("baz".getBytes)
+    accumulator.isSpilled shouldBe true
+    accumulator.size() shouldBe 9
+    an[IllegalStateException] should be thrownBy accumulator.toByteArray
+
+    accumulator.finish()
+    accumulator.discard()
+    new String(Files.readAllBytes(accumulator.file())) shouldBe "foobarbaz"
+    Files.delete(accumulator.file())
+    Files.delete(dir)
+  }
+
+  "Discarded ChunkAccumulator" should "delete spill file and ignore next chunks" in {
+    val dir = Files.createTempDirectory("rxprocess2")
+    val accumulator = new ChunkAccumulator(0, 2, dir)
+    accumulator.add("foo".getBytes)
+    val file = accumulator.file()
+    Files.exists(file) shouldBe true
+    accumulator.discard()
+    accumulator.add("bar".getBytes)
+    Files.exists(file) shouldBe false
+    Files.delete(dir)
+
+    an[java.io.IOException] should be thrownBy new ChunkAccumulator(0, 2, null).add("foo".getBytes)
+  }
+}
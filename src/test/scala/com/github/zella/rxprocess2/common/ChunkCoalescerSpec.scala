@@ -0,0 +1,117 @@
+package com.github.zella.rxprocess2.common
+
+import java.nio.ByteBuffer
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+
+import com.github.zella.rxprocess2.{ProcessBufferChunk, ProcessChunk}
+import io.reactivex.{Flowable, Observable}
+import io.reactivex.processors.PublishProcessor
+import io.reactivex.subjects.PublishSubject
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class ChunkCoalescerSpec extends FlatSpec with Matchers {
+
+  private def out(s: String) = new ProcessChunk(s.getBytes, false)
+
+  private def err(s: String) = new ProcessChunk(s.getBytes, true)
+
+  private def show(chunks: java.util.List[ProcessChunk]) =
+    chunks.asScala.map(c => (if (c.isStdErr) "e:" else "o:") + new String(c.data)).toList
+
+  "ChunkCoalescer" should "merge same stream chunks up to max bytes and split on stream switch" in {
+    val chunks = ChunkCoalescer.coalesce(Observable.just(out("a"), out("b"), out("c"), err("x"), err("y"), out("d")),
+      2, 1, TimeUnit.SECONDS).toList.blockingGet()
+    show(chunks) shouldBe List("o:ab", "o:c", "e:xy", "o:d")
+  }
+
+  "ChunkCoalescer" should "split large chunks" in {
+    val chunks = ChunkCoalescer.coalesce(Observable.just(out("a"), out("bcdefgh"), out("i")),
+      3, 0, TimeUnit.SECONDS).toList.blockingGet()
+    show(chunks) shouldBe List("o:a", "o:bcd", "o:efg", "o:h", "o:i")
+  }
+
+  "ChunkCoalescer" should "flush pending chunk after max delay" in {
+    val source = PublishSubject.create[ProcessChunk]()
+    val observer = ChunkCoalescer.coalesce(source, 1024, 50, TimeUnit.MILLISECONDS).test()
+    source.onNext(out("a"))
+    source.onNext(out("b"))
+    observer.assertValueCount(0)
+    observer.awaitCount(1, () => (), 5000)
+    show(observer.values()) shouldBe List("o:ab")
+    source.onNext(out("c"))
+    source.onComplete()
+    observer.assertComplete()
+    show(observer.values()) shouldBe List("o:ab", "o:c")
+  }
+
+  "ChunkCoalescer" should "flush pending bytes before error" in {
+    val error = new RuntimeException()
+    ChunkCoalescer.coalesce(Observable.just(out("a"), out("b")).concatWith(Observable.error(error)),
+      1024, 1, TimeUnit.SECONDS)
+      .test()
+      .assertValueCount(1)
+      .assertError(error)
+  }
+
+  "ChunkCoalescer" should "slice zero copy buffers in split only mode" in {
+    val backing = ByteBuffer.wrap("abcdefg".getBytes)
+    val chunks = ChunkCoalescer.coalesceBuffers(Observable.just(new ProcessBufferChunk(backing, false)),
+      3, 0, TimeUnit.SECONDS).toList.blockingGet().asScala
+    chunks.map(c => new String(c.toProcessChunk.data)) shouldBe List("abc", "def", "g")
+    chunks.foreach(c => c.data.hasArray shouldBe true)
+    chunks.foreach(c => c.data.array() should be theSameInstanceAs backing.array())
+  }
+
+  "ChunkCoalescer" should "respect downstream backpressure" in {
+    var emitted = 0
+    val source = Flowable.range(0, 1000).map[ProcessChunk](i => out(i.toString.takeRight(1)))
+      .doOnNext(_ => emitted += 1)
+    val subscriber = ChunkCoalescer.coalesce(source, 10, 1, TimeUnit.SECONDS).test(0)
+    subscriber.assertValueCount(0)
+    emitted shouldBe 0
+    subscriber.request(2)
+    subscriber.assertValueCount(2)
+    //upstream is not read ahead of demand
+    emitted shouldBe 20
+    subscriber.request(Long.MaxValue)
+    subscriber.assertComplete()
+    subscriber.values().asScala.map(_.data.length).sum shouldBe 1000
+    subscriber.values().size() shouldBe 100
+  }
+
+  "ChunkCoalescer" should "not block upstream while downstream handles timer flush" in {
+    val executor = Executors.newSingleThreadExecutor()
+    try {
+      for (observable <- Seq(true, false)) {
+        val entered = new CountDownLatch(1)
+        val release = new CountDownLatch(1)
+        val subject = PublishSubject.create[ProcessChunk]()
+        val processor = PublishProcessor.create[ProcessChunk]()
+        val blocking: ProcessChunk => Unit = _ => {
+          entered.countDown()
+          release.await()
+        }
+        val test =
+          if (observable) ChunkCoalescer.coalesce(subject, 1024, 50, TimeUnit.MILLISECONDS).doOnNext(c => blocking(c)).test()
+          else ChunkCoalescer.coalesce(processor.onBackpressureBuffer(), 1024, 50, TimeUnit.MILLISECONDS).doOnNext(c => blocking(c)).test()
+        val onNext: ProcessChunk => Unit = c => if (observable) subject.onNext(c) else processor.onNext(c)
+
+        onNext(out("a"))
+        //timer thread is inside downstream onNext
+        entered.await(5, TimeUnit.SECONDS) shouldBe true
+        executor.submit(new Runnable {
+          override def run(): Unit = onNext(out("b"))
+        }).get(5, TimeUnit.SECONDS)
+        release.countDown()
+        if (observable) subject.onComplete() else processor.onComplete()
+        test.await(5, TimeUnit.SECONDS)
+        test.assertComplete()
+        show(test.values()) shouldBe List("o:a", "o:b")
+      }
+    } finally {
+      executor.shutdown()
+    }
+  }
+}
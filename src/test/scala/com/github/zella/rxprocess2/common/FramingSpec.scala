@@ -0,0 +1,83 @@
+package com.github.zella.rxprocess2.common
+
+import com.github.zella.rxprocess2.errors.FrameTooLongException
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class FramingSpec extends FlatSpec with Matchers {
+
+  private def decodeBytewise(framing: Framing, stream: Array[Byte]): Seq[String] = {
+    val decoder = framing.newDecoder()
+    stream.toSeq.flatMap(b => decoder.decode(Array(b)).asScala).map(new String(_))
+  }
+
+  "Newline framing" should "decode messages split across chunks" in {
+    val framing = Framing.newline()
+    val stream = framing.encode("foo".getBytes) ++ framing.encode("".getBytes) ++ framing.encode("bar".getBytes)
+    decodeBytewise(framing, stream) shouldBe Seq("foo", "", "bar")
+    framing.newDecoder().decode(stream).asScala.map(new String(_)) shouldBe Seq("foo", "", "bar")
+  }
+
+  "Newline framing" should "reject message with newline" in {
+    an[IllegalArgumentException] should be thrownBy Framing.newline().encode("a\nb".getBytes)
+  }
+
+  "Sentinel framing" should "decode multi byte sentinel split across chunks" in {
+    val framing = Framing.sentinel("<END>".getBytes)
+    val stream = framing.encode("foo".getBytes) ++ framing.encode("<EN".getBytes)
+    decodeBytewise(framing, stream) shouldBe Seq("foo", "<EN")
+  }
+
+  "Length prefixed framing" should "decode large messages" in {
+    val framing = Framing.lengthPrefixed()
+    val big = Array.fill[Byte](100000)('x')
+    val stream = framing.encode(big) ++ framing.encode("\n".getBytes)
+    val decoder = framing.newDecoder()
+    val frames = stream.grouped(777).flatMap(c => decoder.decode(c).asScala).toList
+    frames.map(_.length) shouldBe Seq(100000, 1)
+    frames.head shouldBe big
+  }
+
+  "Varint framing" should "decode messages of different length split across chunks" in {
+    val framing = Framing.varint()
+    val messages = Seq(0, 1, 127, 128, 300, 20000, 3000000).map(n => Array.fill[Byte](n)('v'))
+    val stream = messages.map(framing.encode).reduce(_ ++ _)
+    framing.encode(Array.fill[Byte](300)('v')).take(2) shouldBe Array(0xAC.toByte, 0x02.toByte)
+    val decoder = framing.newDecoder()
+    stream.grouped(1000).flatMap(c => decoder.decode(c).asScala).map(_.length).toList shouldBe messages.map(_.length)
+  }
+
+  "Framing decoder" should "take whole frames from chunk and buffer incomplete tail" in {
+    Seq(Framing.newline(), Framing.sentinel("--".getBytes), Framing.lengthPrefixed(), Framing.varint()).foreach { framing =>
+      val stream = Seq("a", "bb", "ccc").map(m => framing.encode(m.getBytes)).reduce(_ ++ _)
+      val decoder = framing.newDecoder()
+      val (first, second) = stream.splitAt(stream.length - 2)
+      decoder.decode(first).asScala.map(new String(_)) shouldBe Seq("a", "bb")
+      decoder.decode(second).asScala.map(new String(_)) shouldBe Seq("ccc")
+    }
+  }
+
+  "Framing decoder" should "decode Flowable of chunks" in {
+    val framing = Framing.lengthPrefixed()
+    val stream = framing.encode("foo".getBytes) ++ framing.encode("bar".getBytes)
+    io.reactivex.Flowable.fromIterable(stream.grouped(3).toSeq.asJava)
+      .compose[Array[Byte]](framing.decoder())
+      .map[String](new String(_))
+      .toList.blockingGet().asScala shouldBe Seq("foo", "bar")
+  }
+
+  "Framing decoder" should "fail on frame longer than max length before buffering it" in {
+    //corrupt header announces 2GB frame
+    an[FrameTooLongException] should be thrownBy Framing.lengthPrefixed(1024).newDecoder().decode(Array(0x7F, 0xFF, 0xFF, 0xFF).map(_.toByte))
+    an[FrameTooLongException] should be thrownBy Framing.varint(1024).newDecoder().decode(Framing.varint().encode(new Array[Byte](1025)).take(2))
+    Framing.varint(1024).newDecoder().decode(Framing.varint().encode(new Array[Byte](1024))).asScala.map(_.length) shouldBe Seq(1024)
+
+    val sentinel = Framing.sentinel("--".getBytes, 4)
+    sentinel.newDecoder().decode("abcd-".getBytes).asScala shouldBe empty
+    an[FrameTooLongException] should be thrownBy sentinel.newDecoder().decode("abcde--".getBytes)
+    val decoder = sentinel.newDecoder()
+    decoder.decode("ab".getBytes).asScala shouldBe empty
+    an[FrameTooLongException] should be thrownBy decoder.decode("cdef".getBytes)
+  }
+}
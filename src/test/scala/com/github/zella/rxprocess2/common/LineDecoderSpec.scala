@@ -0,0 +1,47 @@
+package com.github.zella.rxprocess2.common
+
+import java.nio.charset.StandardCharsets
+
+import com.github.zella.rxprocess2.errors.LineTooLongException
+import io.reactivex.Observable
+import org.scalatest._
+
+import scala.collection.JavaConverters._
+
+class LineDecoderSpec extends FlatSpec with Matchers {
+
+  private def decodeBytewise(decoder: LineDecoder, bytes: Array[Byte]): Seq[String] =
+    bytes.toSeq.flatMap(b => decoder.decode(Array(b)).asScala) ++ decoder.finish().asScala
+
+  "LineDecoder" should "decode multi byte characters split between chunks" in {
+    val text = "привет\r\nмир €\n\nlast"
+    decodeBytewise(new LineDecoder(StandardCharsets.UTF_8, 100), text.getBytes(StandardCharsets.UTF_8)) shouldBe
+      Seq("привет", "мир €", "", "last")
+  }
+
+  "LineDecoder" should "decode utf-16" in {
+    val text = "foo\nбар\n"
+    decodeBytewise(new LineDecoder(StandardCharsets.UTF_16BE, 100), text.getBytes(StandardCharsets.UTF_16BE)) shouldBe
+      Seq("foo", "бар")
+  }
+
+  "LineDecoder" should "decode chunk larger than buffer" in {
+    val line = "x" * 5000
+    val decoder = new LineDecoder(StandardCharsets.UTF_8, 10000)
+    decoder.decode(s"$line\n$line\n$line".getBytes).asScala shouldBe Seq(line, line)
+    decoder.finish().asScala shouldBe Seq(line)
+  }
+
+  "LineDecoder" should "fail on too long line" in {
+    val decoder = new LineDecoder(StandardCharsets.UTF_8, 10)
+    decoder.decode("0123456789\n".getBytes).asScala shouldBe Seq("0123456789")
+    an[LineTooLongException] should be thrownBy decoder.decode(("x" * 100).getBytes)
+  }
+
+  "LineFramer" should "split observable chunks to lines" in {
+    Observable.just("a\nb", "c\n", "d")
+      .map[Array[Byte]](_.getBytes)
+      .compose[String](LineFramer.lines(StandardCharsets.UTF_8))
+      .toList.blockingGet().asScala shouldBe Seq("a", "bc", "d")
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.zella.rxprocess2.common
+
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong, AtomicReference}
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+
+import io.reactivex.Observable
+import org.scalatest._
+
+class TimeoutWheelSpec extends FlatSpec with Matchers {
+
+  private def wheel() = new TimeoutWheel(5, TimeUnit.MILLISECONDS, 8, Executors.newCachedThreadPool())
+
+  "TimeoutWheel" should "fire not early and at most tick late" in {
+    val timer = wheel()
+    for (delay <- Seq(0L, 3L, 20L, 100L)) {
+      val start = System.nanoTime()
+      val fired = new AtomicLong()
+      val latch = new CountDownLatch(1)
+      timer.schedule(() => {
+        fired.set(System.nanoTime())
+        latch.countDown()
+      }, delay, TimeUnit.MILLISECONDS)
+      latch.await(5, TimeUnit.SECONDS) shouldBe true
+      val elapsed = TimeUnit.NANOSECONDS.toMillis(fired.get() - start)
+      elapsed should be >= delay
+      elapsed should be < delay + 50
+    }
+  }
+
+  "TimeoutWheel" should "fire deadlines longer than wheel" in {
+    val timer = wheel()
+    val latch = new CountDownLatch(1)
+    val start = System.nanoTime()
+    //8 buckets * 5ms, so few rounds
+    timer.schedule(() => latch.countDown(), 130, TimeUnit.MILLISECONDS)
+    latch.await(5, TimeUnit.SECONDS) shouldBe true
+    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) should be >= 130L
+  }
+
+  "TimeoutWheel" should "not fire cancelled tasks" in {
+    val timer = wheel()
+    val fired = new AtomicInteger()
+    val deadline = timer.schedule(() => fired.incrementAndGet(), 20, TimeUnit.MILLISECONDS)
+    timer.pending() shouldBe 1
+    deadline.dispose()
+    deadline.isDisposed shouldBe true
+    timer.pending() shouldBe 0
+    Thread.sleep(100)
+    fired.get() shouldBe 0
+  }
+
+  "TimeoutWheel" should "fire tens of thousands of deadlines" in {
+    val timer = wheel()
+    val count = 50000
+    val latch = new CountDownLatch(count)
+    val cancelledFired = new AtomicInteger()
+    val cancelled = (0 until count).map { i =>
+      timer.schedule(() => latch.countDown(), i % 200, TimeUnit.MILLISECONDS)
+      timer.schedule(() => cancelledFired.incrementAndGet(), 1000 + i % 200, TimeUnit.MILLISECONDS)
+    }
+    cancelled.foreach(_.dispose())
+    latch.await(10, TimeUnit.SECONDS) shouldBe true
+    timer.pending() shouldBe 0
+    Thread.sleep(1300)
+    cancelledFired.get() shouldBe 0
+  }
+
+  "TimeoutWheel deadline" should "fail stream" in {
+    val timer = wheel()
+    val observer = Observable.never[Integer]()
+      .takeUntil(timer.deadline(20, TimeUnit.MILLISECONDS, () => new IllegalStateException("late")).toObservable[Integer])
+      .test()
+    observer.await(5, TimeUnit.SECONDS)
+    observer.assertError(classOf[IllegalStateException])
+  }
+
+  "Shared TimeoutWheel" should "run expired tasks apart from io pool" in {
+    val thread = new AtomicReference[String]()
+    val latch = new CountDownLatch(1)
+    TimeoutWheel.shared().schedule(() => {
+      thread.set(Thread.currentThread().getName)
+      latch.countDown()
+    }, 1, TimeUnit.MILLISECONDS)
+    latch.await(5, TimeUnit.SECONDS) shouldBe true
+    thread.get() should startWith("rxprocess2-callback-")
+  }
+}
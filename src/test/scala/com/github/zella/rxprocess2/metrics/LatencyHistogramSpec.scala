@@ -0,0 +1,47 @@
+package com.github.zella.rxprocess2.metrics
+
+import org.scalatest._
+
+class LatencyHistogramSpec extends FlatSpec with Matchers {
+
+  "LatencyHistogram" should "report exact small values" in {
+    val histogram = new LatencyHistogram
+    (1 to 10).foreach(v => histogram.record(v))
+    histogram.count() shouldBe 10
+    histogram.percentile(50) shouldBe 5
+    histogram.percentile(100) shouldBe 10
+    histogram.max() shouldBe 10
+    histogram.mean() shouldBe 5.5
+  }
+
+  "LatencyHistogram" should "report percentiles within 1/32 of recorded values" in {
+    val histogram = new LatencyHistogram
+    (1 to 100000).foreach(v => histogram.record(v * 1000L))
+    for (p <- Seq(1.0, 50.0, 90.0, 99.0, 99.9)) {
+      val expected = (p * 1000).toLong * 1000
+      histogram.percentile(p).toDouble should be >= expected.toDouble
+      histogram.percentile(p).toDouble should be <= expected * (1 + 1.0 / 32)
+    }
+    histogram.percentile(100) shouldBe 100000000L
+  }
+
+  "LatencyHistogram" should "map every bucket to its own values" in {
+    for (v <- Seq(0L, 31L, 32L, 33L, 63L, 64L, 1000L, 123456789L, Long.MaxValue)) {
+      val index = LatencyHistogram.index(v)
+      LatencyHistogram.highestEquivalent(index) should be >= v
+      if (index > 0)
+        LatencyHistogram.highestEquivalent(index - 1) should be < v
+    }
+  }
+
+  "LatencyHistogram" should "be empty after reset" in {
+    val histogram = new LatencyHistogram
+    histogram.record(-5)
+    histogram.record(42)
+    histogram.percentile(0) shouldBe 0
+    histogram.reset()
+    histogram.count() shouldBe 0
+    histogram.percentile(99) shouldBe 0
+    histogram.max() shouldBe 0
+  }
+}